@@ -149,7 +149,7 @@ cat > .env << 'EOF'
 # Ce fichier sert uniquement de référence
 
 # Base de données
-SPRING_DATASOURCE_URL=jdbc:mysql://localhost:3306/law_batch?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true
+SPRING_DATASOURCE_URL=jdbc:mysql://localhost:3306/law_batch?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true
 SPRING_DATASOURCE_USERNAME=law_user
 SPRING_DATASOURCE_PASSWORD=law_password_2024
 
@@ -199,7 +199,7 @@ Requires=mariadb.service
 Type=simple
 User=pi
 WorkingDirectory=/home/pi/law-spring-batch
-Environment="SPRING_DATASOURCE_URL=jdbc:mysql://localhost:3306/law_batch?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true"
+Environment="SPRING_DATASOURCE_URL=jdbc:mysql://localhost:3306/law_batch?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true"
 Environment="SPRING_DATASOURCE_USERNAME=law_user"
 Environment="SPRING_DATASOURCE_PASSWORD=law_password_2024"
 Environment="SPRING_JPA_PROPERTIES_HIBERNATE_DIALECT=org.hibernate.dialect.MariaDBDialect"
@@ -1,32 +1,46 @@
 package bj.gouv.sgg.batch.config;
 
 import bj.gouv.sgg.batch.listener.TelegramJobExecutionListener;
+import bj.gouv.sgg.batch.listener.UpstreamCircuitBreakerListener;
 import bj.gouv.sgg.batch.processor.ArticleExtractionProcessor;
+import bj.gouv.sgg.batch.processor.AsyncFetchProcessor;
 import bj.gouv.sgg.batch.processor.ConsolidationProcessor;
 import bj.gouv.sgg.batch.processor.DownloadProcessor;
 import bj.gouv.sgg.batch.processor.ExtractionProcessor;
 import bj.gouv.sgg.batch.processor.FetchProcessor;
+import bj.gouv.sgg.batch.processor.RevalidationProcessor;
 import bj.gouv.sgg.batch.reader.ConsolidationReader;
 import bj.gouv.sgg.batch.reader.CurrentYearLawDocumentReader;
+import bj.gouv.sgg.batch.reader.DeferredProbeReader;
 import bj.gouv.sgg.batch.reader.DownloadedDocumentReader;
 import bj.gouv.sgg.batch.reader.FetchedDocumentReader;
 import bj.gouv.sgg.batch.reader.LawDocumentReader;
+import bj.gouv.sgg.batch.reader.ListingDocumentReader;
 import bj.gouv.sgg.batch.reader.FilePdfReader;
 import bj.gouv.sgg.batch.reader.OcrFileReader;
 import bj.gouv.sgg.batch.reader.PreviousYearsLawDocumentReader;
+import bj.gouv.sgg.batch.reader.RevalidationReader;
 import bj.gouv.sgg.batch.reader.SingleDocumentReaderFactory;
 import bj.gouv.sgg.batch.writer.ArticleExtractionWriter;
+import bj.gouv.sgg.batch.writer.AsyncFetchWriter;
 import bj.gouv.sgg.batch.writer.ConsolidationWriter;
+import bj.gouv.sgg.batch.writer.DeferredProbeWriter;
 import bj.gouv.sgg.batch.writer.FileDownloadWriter;
 import bj.gouv.sgg.batch.writer.ExtractionWriter;
 import bj.gouv.sgg.batch.writer.FetchWriter;
 import bj.gouv.sgg.model.ArticleExtraction;
+import bj.gouv.sgg.service.BulkImportService;
+import bj.gouv.sgg.service.CurrentYearFrontierService;
 import bj.gouv.sgg.service.NotFoundRangeService;
 import bj.gouv.sgg.batch.writer.ForceAwareWriter;
+import bj.gouv.sgg.batch.writer.RevalidationWriter;
 import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.model.FetchResult;
 import bj.gouv.sgg.model.LawDocument;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ChunkListener;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.ExitStatus;
@@ -36,12 +50,16 @@ import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 
+import java.nio.file.Path;
+import java.util.concurrent.Future;
+
 /**
  * Configuration des jobs Spring Batch
  */
@@ -54,6 +72,7 @@ public class BatchJobConfiguration {
     private final JobRepository jobRepository;
     private final PlatformTransactionManager transactionManager;
     private final TelegramJobExecutionListener telegramJobExecutionListener;
+    private final UpstreamCircuitBreakerListener upstreamCircuitBreakerListener;
     
     // ========================================================================
     // FETCH CURRENT YEAR JOB - Scan complet de l'année en cours
@@ -71,14 +90,16 @@ public class BatchJobConfiguration {
     @Bean
     public Step fetchCurrentStep(CurrentYearLawDocumentReader currentYearReader, 
                                  FetchProcessor processor,
-                                 FetchWriter fetchWriter,
-                                 NotFoundRangeService notFoundRangeService) {
+                                 AsyncFetchProcessor asyncFetchProcessor,
+                                 AsyncFetchWriter asyncFetchWriter,
+                                 NotFoundRangeService notFoundRangeService,
+                                 CurrentYearFrontierService frontierService) {
+        // Sondes asynchrones : la concurrence vient du moteur HTTP, pas des threads batch
         return new StepBuilder("fetchCurrentStep", jobRepository)
-            .<LawDocument, LawDocument>chunk(properties.getBatch().getChunkSize(), transactionManager)
+            .<LawDocument, Future<LawDocument>>chunk(asyncFetchChunkSize(), transactionManager)
             .reader(currentYearReader)
-            .processor(processor)
-            .writer(fetchWriter)
-            .taskExecutor(taskExecutor())
+            .processor(asyncFetchProcessor)
+            .writer(asyncFetchWriter)
             .listener(new StepExecutionListener() {
                 @Override
                 public void beforeStep(StepExecution stepExecution) {
@@ -91,10 +112,16 @@ public class BatchJobConfiguration {
                     int year = java.util.Calendar.getInstance().get(java.util.Calendar.YEAR);
                     int merged = notFoundRangeService.consolidateRanges("loi", year);
                     log.info("Post-step consolidation: merged={} year={}", merged, year);
+                    // Mise à jour de la frontière et du planning de vérification de la queue
+                    if (currentYearReader.getPlan() != null && stepExecution.getStatus() == BatchStatus.COMPLETED) {
+                        frontierService.recordRun("loi", currentYearReader.getCurrentYear(), currentYearReader.getPlan());
+                    }
                     log.info("FetchProcessor stats: {}", processor.statsSummary());
                     return stepExecution.getExitStatus();
                 }
             })
+            .listener((ChunkListener) upstreamCircuitBreakerListener)
+            .listener((StepExecutionListener) upstreamCircuitBreakerListener)
             .build();
     }
     
@@ -114,19 +141,27 @@ public class BatchJobConfiguration {
     @Bean
     public Step fetchPreviousStep(PreviousYearsLawDocumentReader previousYearsReader, 
                                   FetchProcessor processor,
-                                  FetchWriter fetchWriter) {
+                                  AsyncFetchProcessor asyncFetchProcessor,
+                                  AsyncFetchWriter asyncFetchWriter) {
         return new StepBuilder("fetchPreviousStep", jobRepository)
-            .<LawDocument, LawDocument>chunk(properties.getBatch().getChunkSize(), transactionManager)
+            .<LawDocument, Future<LawDocument>>chunk(asyncFetchChunkSize(), transactionManager)
             .reader(previousYearsReader)
-            .processor(processor)
-            .writer(fetchWriter)
-            .taskExecutor(taskExecutor())
+            .processor(asyncFetchProcessor)
+            .writer(asyncFetchWriter)
             .listener(new StepExecutionListener() {
                 @Override
                 public void beforeStep(StepExecution stepExecution) {
                     previousYearsReader.reset();
+                    processor.resetStats();
+                }
+                @Override
+                public ExitStatus afterStep(StepExecution stepExecution) {
+                    log.info("FetchProcessor stats: {}", processor.statsSummary());
+                    return stepExecution.getExitStatus();
                 }
             })
+            .listener((ChunkListener) upstreamCircuitBreakerListener)
+            .listener((StepExecutionListener) upstreamCircuitBreakerListener)
             .build();
     }
     
@@ -168,6 +203,62 @@ public class BatchJobConfiguration {
             .processor(processor)
             .writer(fetchWriter)
             .taskExecutor(taskExecutor())
+            .listener((ChunkListener) upstreamCircuitBreakerListener)
+            .listener((StepExecutionListener) upstreamCircuitBreakerListener)
+            .build();
+    }
+    
+    // ========================================================================
+    // DEFERRED PROBE JOB - Rejoue les sondes en échec (429, erreurs réseau)
+    // ========================================================================
+    
+    @Bean
+    public Job deferredProbeJob(Step deferredProbeStep) {
+        return new JobBuilder("deferredProbeJob", jobRepository)
+            .incrementer(new RunIdIncrementer())
+            .start(deferredProbeStep)
+            .listener(telegramJobExecutionListener)
+            .build();
+    }
+    
+    @Bean
+    public Step deferredProbeStep(DeferredProbeReader deferredProbeReader,
+                                  FetchProcessor processor,
+                                  DeferredProbeWriter deferredProbeWriter) {
+        // Basse priorité : une sonde à la fois, mono-thread, sous le rate limiter partagé
+        return new StepBuilder("deferredProbeStep", jobRepository)
+            .<LawDocument, LawDocument>chunk(1, transactionManager)
+            .reader(deferredProbeReader)
+            .processor(processor)
+            .writer(deferredProbeWriter)
+            .listener((ChunkListener) upstreamCircuitBreakerListener)
+            .listener((StepExecutionListener) upstreamCircuitBreakerListener)
+            .build();
+    }
+    
+    // ========================================================================
+    // LISTING DISCOVERY JOB - Découverte via les pages de liste du site
+    // ========================================================================
+    
+    @Bean
+    public Job listingDiscoveryJob(Step listingDiscoveryStep) {
+        return new JobBuilder("listingDiscoveryJob", jobRepository)
+            .incrementer(new RunIdIncrementer())
+            .start(listingDiscoveryStep)
+            .listener(telegramJobExecutionListener)
+            .build();
+    }
+    
+    @Bean
+    public Step listingDiscoveryStep(ListingDocumentReader listingDocumentReader,
+                                     FetchWriter writer) {
+        // Pas de processor : les documents listés sont déjà FETCHED, aucune sonde nécessaire
+        return new StepBuilder("listingDiscoveryStep", jobRepository)
+            .<LawDocument, LawDocument>chunk(properties.getBatch().getChunkSize(), transactionManager)
+            .reader(listingDocumentReader)
+            .writer(writer)
+            .listener((ChunkListener) upstreamCircuitBreakerListener)
+            .listener((StepExecutionListener) upstreamCircuitBreakerListener)
             .build();
     }
     
@@ -185,19 +276,82 @@ public class BatchJobConfiguration {
     }
     
     @Bean
+    @SuppressWarnings("removal") // throttleLimit : seul moyen en Spring Batch 5.0 de dépasser 4 threads par step
     public Step downloadStep(FetchedDocumentReader reader,
                              DownloadProcessor downloadProcessor,
                              FileDownloadWriter downloadWriter) {
         
         // Le reader ne retourne que les documents FETCHED, donc pas besoin de FetchProcessor
-        // On télécharge directement en mono-thread pour éviter les duplicates
-        // Le processor télécharge le PDF et le writer le sauvegarde en base
+        // Plusieurs téléchargements en parallèle : le reader réserve chaque document
+        // (FETCHED → DOWNLOADING) avant de le distribuer, aucun doublon possible
+        // Le processor télécharge le PDF et le writer le publie sur disque
+        int concurrency = downloadConcurrency();
         return new StepBuilder("downloadStep", jobRepository)
-            .<LawDocument, LawDocument>chunk(1, transactionManager) // Process one document at a time
+            .<LawDocument, LawDocument>chunk(1, transactionManager) // Un document par transaction
             .reader(reader)
             .processor(downloadProcessor)
-            .writer(downloadWriter) // Sauvegarde dans download_results
-            // Pas de taskExecutor = exécution synchrone en mono-thread
+            .writer(downloadWriter)
+            .taskExecutor(downloadTaskExecutor(concurrency))
+            .throttleLimit(concurrency)
+            .listener((ChunkListener) upstreamCircuitBreakerListener)
+            .listener((StepExecutionListener) upstreamCircuitBreakerListener)
+            .build();
+    }
+    
+    // ========================================================================
+    // REVALIDATION JOB - Détecte les PDFs remplacés sur le site
+    // ========================================================================
+    
+    @Bean
+    public Job revalidationJob(Step revalidationStep) {
+        return new JobBuilder("revalidationJob", jobRepository)
+            .incrementer(new RunIdIncrementer())
+            .start(revalidationStep)
+            .listener(telegramJobExecutionListener)
+            .build();
+    }
+    
+    @Bean
+    public Step revalidationStep(RevalidationReader reader,
+                                 RevalidationProcessor processor,
+                                 RevalidationWriter writer) {
+        // Basse priorité : mono-thread, bucket DOWNLOAD, un document par transaction
+        // (un PDF modifié est republié et ses articles supprimés dans la même transaction)
+        return new StepBuilder("revalidationStep", jobRepository)
+            .<FetchResult, FetchResult>chunk(1, transactionManager)
+            .reader(reader)
+            .processor(processor)
+            .writer(writer)
+            .listener((ChunkListener) upstreamCircuitBreakerListener)
+            .listener((StepExecutionListener) upstreamCircuitBreakerListener)
+            .build();
+    }
+    
+    // ========================================================================
+    // BULK IMPORT JOB - Import hors ligne de PDFs (répertoire ou archive)
+    // ========================================================================
+    
+    @Bean
+    public Job bulkImportJob(Step bulkImportStep) {
+        return new JobBuilder("bulkImportJob", jobRepository)
+            .start(bulkImportStep)
+            .listener(telegramJobExecutionListener)
+            .build();
+    }
+    
+    @Bean
+    public Step bulkImportStep(BulkImportService bulkImportService) {
+        // Tasklet : la parallélisation est interne au service, chaque lot de fetch_results
+        // est validé dans sa propre transaction
+        return new StepBuilder("bulkImportStep", jobRepository)
+            .tasklet((contribution, chunkContext) -> {
+                StepExecution stepExecution = chunkContext.getStepContext().getStepExecution();
+                String source = stepExecution.getJobParameters().getString("source");
+                BulkImportService.ImportReport report = bulkImportService.importFrom(Path.of(source));
+                contribution.incrementWriteCount(report.getImported().get());
+                stepExecution.getExecutionContext().putString("importReport", report.toString());
+                return RepeatStatus.FINISHED;
+            }, transactionManager)
             .build();
     }
     
@@ -339,6 +493,32 @@ public class BatchJobConfiguration {
     // Task Executor
     // ========================================================================
     
+    /**
+     * Taille de chunk des steps de fetch asynchrones : au moins max-in-flight
+     * pour que le moteur de sondes reste saturé pendant un chunk
+     */
+    private int asyncFetchChunkSize() {
+        return Math.max(properties.getBatch().getChunkSize(), properties.getHttp().getMaxInFlight());
+    }
+    
+    /**
+     * Téléchargements simultanés : limités par la configuration et par le nombre
+     * de connexions autorisées vers un même hôte (pas par le nombre de CPU, le travail est réseau)
+     */
+    private int downloadConcurrency() {
+        int concurrency = Math.max(1, Math.min(properties.getDownload().getConcurrency(),
+                                               properties.getHttp().getMaxConnectionsPerRoute()));
+        log.info("Download concurrency: configured={} maxConnectionsPerRoute={} effective={}",
+                 properties.getDownload().getConcurrency(), properties.getHttp().getMaxConnectionsPerRoute(), concurrency);
+        return concurrency;
+    }
+    
+    private TaskExecutor downloadTaskExecutor(int concurrency) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("law-download-");
+        executor.setConcurrencyLimit(concurrency);
+        return executor;
+    }
+    
     @Bean
     public TaskExecutor taskExecutor() {
         SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("law-batch-");
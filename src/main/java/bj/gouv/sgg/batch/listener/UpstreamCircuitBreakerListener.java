@@ -0,0 +1,53 @@
+package bj.gouv.sgg.batch.listener;
+
+import bj.gouv.sgg.util.UpstreamCircuitBreaker;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Listener des steps qui appellent le site (fetch, download, découverte)
+ * - Après chaque chunk : si le circuit est ouvert, le step est arrêté (terminateOnly)
+ *   au lieu d'épuiser les candidats restants un par un
+ * - En fin de step : exit status UPSTREAM_UNAVAILABLE si le site était indisponible
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UpstreamCircuitBreakerListener implements ChunkListener, StepExecutionListener {
+    
+    public static final String UPSTREAM_UNAVAILABLE = "UPSTREAM_UNAVAILABLE";
+    
+    private final UpstreamCircuitBreaker circuitBreaker;
+    
+    @Override
+    public void afterChunk(ChunkContext context) {
+        stopIfUnavailable(context.getStepContext().getStepExecution());
+    }
+    
+    @Override
+    public void afterChunkError(ChunkContext context) {
+        stopIfUnavailable(context.getStepContext().getStepExecution());
+    }
+    
+    private void stopIfUnavailable(StepExecution stepExecution) {
+        if (!circuitBreaker.isAvailable() && !stepExecution.isTerminateOnly()) {
+            log.warn("Upstream circuit open, stopping step {} after {} items read",
+                stepExecution.getStepName(), stepExecution.getReadCount());
+            stepExecution.setTerminateOnly();
+        }
+    }
+    
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (stepExecution.isTerminateOnly() || circuitBreaker.getState() == UpstreamCircuitBreaker.State.OPEN) {
+            return new ExitStatus(UPSTREAM_UNAVAILABLE, "Upstream circuit " + circuitBreaker.getState());
+        }
+        return null;
+    }
+}
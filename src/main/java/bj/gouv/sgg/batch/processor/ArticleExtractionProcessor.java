@@ -2,7 +2,9 @@ package bj.gouv.sgg.batch.processor;
 
 import bj.gouv.sgg.config.LawProperties;
 import bj.gouv.sgg.model.*;
+import bj.gouv.sgg.service.ArticleExtractionFactory;
 import bj.gouv.sgg.service.ArticleExtractorService;
+import bj.gouv.sgg.service.ContentDeduplicationService;
 import bj.gouv.sgg.service.FileStorageService;
 import com.google.gson.Gson;
 import lombok.RequiredArgsConstructor;
@@ -11,13 +13,14 @@ import org.springframework.batch.item.ItemProcessor;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.io.FileReader;
 import java.io.FileWriter;
-import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Processor qui extrait les articles depuis un fichier OCR et les exporte en JSON sur disque
+ * Si un document de même contenu PDF a déjà son JSON, celui-ci est repris sans ré-extraction.
  */
 @Slf4j
 @Component
@@ -27,6 +30,8 @@ public class ArticleExtractionProcessor implements ItemProcessor<LawDocument, La
     private final LawProperties properties;
     private final ArticleExtractorService extractorService;
     private final FileStorageService fileStorageService;
+    private final ContentDeduplicationService deduplicationService;
+    private final ArticleExtractionFactory extractionFactory;
     private final Gson gson;
 
     @Override
@@ -42,6 +47,14 @@ public class ArticleExtractionProcessor implements ItemProcessor<LawDocument, La
             return document;
         }
 
+        // Même contenu PDF déjà exporté sous un autre identifiant
+        List<ArticleExtraction> reused = reuseSiblingArticles(document, articlesDir);
+        if (reused != null) {
+            writeJson(document, jsonFile, articlesDir, reused);
+            document.setStatus(LawDocument.ProcessingStatus.EXTRACTED);
+            return document;
+        }
+
         // Lire le fichier OCR
         String ocrText;
         try {
@@ -64,28 +77,44 @@ public class ArticleExtractionProcessor implements ItemProcessor<LawDocument, La
         log.info("Extracted {} articles from: {} (confidence: {:.2f})", articles.size(), document.getDocumentId(), confidence);
 
         // Préparer les données d'extraction pour export JSON
-        List<ArticleExtraction> extractions = new ArrayList<>();
-        for (Article article : articles) {
-            ArticleExtraction extraction = ArticleExtraction.builder()
-                    .documentId(document.getDocumentId())
-                    .articleIndex(article.getIndex())
-                    .title(String.format("%s article-%d", document.getDocumentId(), article.getIndex()))
-                    .content(article.getContent())
-                    .confidence(confidence)
-                    .documentType(document.getType())
-                    .documentYear(document.getYear())
-                    .documentNumber(document.getNumber())
-                    .sourceUrl(String.format("%s/%s/download", properties.getBaseUrl(), document.getDocumentId()))
-                    .lawTitle(metadata.getLawTitle())
-                    .promulgationDate(metadata.getPromulgationDate())
-                    .promulgationCity(metadata.getPromulgationCity())
-                    .signatories(metadata.getSignatories())
-                    .extractedAt(LocalDateTime.now())
-                    .build();
-            extractions.add(extraction);
-        }
+        List<ArticleExtraction> extractions = articles.stream()
+                .map(article -> extractionFactory.create(document, article, metadata, confidence))
+                .toList();
 
         // Exporter en JSON sur disque
+        writeJson(document, jsonFile, articlesDir, extractions);
+
+        document.setStatus(LawDocument.ProcessingStatus.EXTRACTED);
+        return document;
+    }
+
+    /**
+     * Articles du JSON d'un document jumeau (même SHA-256), rattachés au document ; null si aucun
+     */
+    private List<ArticleExtraction> reuseSiblingArticles(LawDocument document, File articlesDir) {
+        String sha256 = deduplicationService.sha256Of(document);
+        for (String sibling : deduplicationService.siblingsOf(document.getDocumentId(), sha256)) {
+            File siblingFile = new File(articlesDir, sibling + ".json");
+            if (!siblingFile.exists()) {
+                continue;
+            }
+            try (FileReader reader = new FileReader(siblingFile)) {
+                ArticleExtraction[] articles = gson.fromJson(reader, ArticleExtraction[].class);
+                if (articles != null && articles.length > 0) {
+                    log.info("Reused {} articles from {} for: {}", articles.length, sibling, document.getDocumentId());
+                    return Arrays.stream(articles)
+                            .map(article -> extractionFactory.rebind(article, document))
+                            .toList();
+                }
+            } catch (Exception e) {
+                log.warn("Failed to read sibling JSON {} for {}: {}", sibling, document.getDocumentId(), e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private void writeJson(LawDocument document, File jsonFile, File articlesDir,
+                           List<ArticleExtraction> extractions) throws Exception {
         if (!articlesDir.exists()) {
             articlesDir.mkdirs();
         }
@@ -97,8 +126,5 @@ public class ArticleExtractionProcessor implements ItemProcessor<LawDocument, La
             log.error("Failed to write JSON file for {}: {}", document.getDocumentId(), e.getMessage());
             throw e;
         }
-
-        document.setStatus(LawDocument.ProcessingStatus.EXTRACTED);
-        return document;
     }
 }
@@ -0,0 +1,43 @@
+package bj.gouv.sgg.batch.processor;
+
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.model.LawDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Processor asynchrone pour les steps de fetch.
+ * Retourne immédiatement un Future par document : jusqu'à law.http.max-in-flight sondes
+ * sont en vol simultanément, quel que soit le nombre de threads batch.
+ * Le résultat est résolu par {@link bj.gouv.sgg.batch.writer.AsyncFetchWriter}.
+ */
+@Slf4j
+@Component
+public class AsyncFetchProcessor implements ItemProcessor<LawDocument, Future<LawDocument>> {
+
+    private final FetchProcessor fetchProcessor;
+    private final Semaphore inFlight;
+
+    public AsyncFetchProcessor(FetchProcessor fetchProcessor, LawProperties properties) {
+        this.fetchProcessor = fetchProcessor;
+        this.inFlight = new Semaphore(properties.getHttp().getMaxInFlight());
+    }
+
+    @Override
+    public Future<LawDocument> process(LawDocument document) throws Exception {
+        // Backpressure : attendre qu'une sonde se termine si la limite est atteinte
+        inFlight.acquire();
+        try {
+            CompletableFuture<LawDocument> result = fetchProcessor.processAsync(document);
+            return result.whenComplete((doc, error) -> inFlight.release());
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+}
@@ -1,21 +1,23 @@
 package bj.gouv.sgg.batch.processor;
 
 import bj.gouv.sgg.model.LawDocument;
+import bj.gouv.sgg.service.DownloadClaimService;
 import bj.gouv.sgg.service.FileStorageService;
+import bj.gouv.sgg.service.PdfDownloadService.StreamedPdf;
+import bj.gouv.sgg.service.ResumableDownloadService;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker.Permit;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.hc.client5.http.classic.methods.HttpGet;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.stereotype.Component;
 
-import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
-import java.security.MessageDigest;
+import java.io.IOException;
 
 /**
- * Processor qui télécharge le PDF d'un document
+ * Processor qui télécharge le PDF d'un document dans un fichier temporaire (voir {@link ResumableDownloadService})
+ * Erreur réseau ou circuit vers le site ouvert : le document est ignoré (il reste FETCHED
+ * et sera repris au prochain run), le step est arrêté par {@code UpstreamCircuitBreakerListener}.
  */
 @Slf4j
 @Component
@@ -23,60 +25,71 @@ import java.security.MessageDigest;
 public class DownloadProcessor implements ItemProcessor<LawDocument, LawDocument> {
     
     private final FileStorageService fileStorageService;
+    private final ResumableDownloadService resumableDownloadService;
+    private final DownloadClaimService downloadClaimService;
+    private final UpstreamCircuitBreaker circuitBreaker;
     
     @Override
     public LawDocument process(LawDocument document) throws Exception {
         // Skip si déjà présent sur disque
         if (fileStorageService.pdfExists(document.getType(), document.getDocumentId())) {
             log.debug("PDF already present on disk, skipping: {}", document.getDocumentId());
+            downloadClaimService.markDownloaded(document.getDocumentId());
             return null;
         }
         
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
-            HttpGet request = new HttpGet(document.getUrl());
-            request.setHeader("User-Agent", "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36");
-
-            try (var response = client.executeOpen(null, request, null)) {
-                if (response.getCode() == 200) {
-                    try (InputStream is = response.getEntity().getContent();
-                         ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-
-                        byte[] buffer = new byte[8192];
-                        int bytesRead;
-                        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-
-                        while ((bytesRead = is.read(buffer)) != -1) {
-                            baos.write(buffer, 0, bytesRead);
-                            digest.update(buffer, 0, bytesRead);
-                        }
-
-                        byte[] pdfBytes = baos.toByteArray();
-                        byte[] hashBytes = digest.digest();
-                        StringBuilder sb = new StringBuilder();
-                        for (byte b : hashBytes) {
-                            sb.append(String.format("%02x", b));
-                        }
-
-                        String sha256Hash = sb.toString();
-
-                        document.setSha256(sha256Hash);
-                        document.setPdfPath(document.getDocumentId()); // Virtual id (utilisé pour nommage fichier)
-                        document.setStatus(LawDocument.ProcessingStatus.DOWNLOADED);
-                        document.setPdfContent(pdfBytes); // Stocker le contenu pour le writer
-
-                        log.debug("Downloaded: {} ({} bytes)", document.getDocumentId(), pdfBytes.length);
-
-                        return document;
-                    }
-                } else {
-                    log.error("Download failed for {}: HTTP {}",
-                            document.getDocumentId(), response.getCode());
-                    return null;
-                }
-            }
+        // Téléchargement non abouti : la réservation est libérée pour le prochain run
+        LawDocument downloaded;
+        try {
+            downloaded = download(document);
         } catch (Exception e) {
-            log.error("Error downloading {}: {}", document.getDocumentId(), e.getMessage());
+            downloadClaimService.release(document.getDocumentId());
             throw e;
         }
+        if (downloaded == null) {
+            downloadClaimService.release(document.getDocumentId());
+        }
+        return downloaded;
+    }
+    
+    private LawDocument download(LawDocument document) throws Exception {
+        Permit permit = circuitBreaker.tryAcquire();
+        if (permit == null) {
+            log.debug("Circuit open, skipping download: {}", document.getDocumentId());
+            return null;
+        }
+        
+        try {
+            // Streaming vers {documentId}.pdf.part (repris là où il s'était arrêté) : seuls le chemin et le hash restent en mémoire
+            StreamedPdf pdf = resumableDownloadService.download(document, permit);
+            if (pdf == null) {
+                return null;
+            }
+            if (pdf.getSize() == 0) {
+                fileStorageService.deleteQuietly(pdf.getPartialFile());
+                log.error("Download failed for {}: empty body", document.getDocumentId());
+                return null;
+            }
+            
+            document.setSha256(pdf.getSha256());
+            document.setEtag(pdf.getEtag());
+            document.setLastModified(pdf.getLastModified());
+            document.setPdfPath(pdf.getPartialFile().toString()); // Publié par le writer (renommage atomique)
+            document.setStatus(LawDocument.ProcessingStatus.DOWNLOADED);
+            
+            log.debug("Downloaded: {} ({} bytes)", document.getDocumentId(), pdf.getSize());
+            
+            return document;
+        } catch (IOException e) {
+            // Erreur réseau : le fichier partiel est conservé, le document reste FETCHED pour le prochain run
+            log.error("Network error downloading {}: {}", document.getDocumentId(), e.getMessage());
+            return null;
+        } catch (RuntimeException e) {
+            // Réponse inexploitable (en-tête invalide...) : ce document est ignoré, le step continue
+            log.error("Unexpected error downloading {}: {}", document.getDocumentId(), e.getMessage(), e);
+            return null;
+        } finally {
+            circuitBreaker.release(permit);
+        }
     }
 }
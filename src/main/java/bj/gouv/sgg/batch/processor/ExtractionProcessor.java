@@ -1,9 +1,10 @@
 package bj.gouv.sgg.batch.processor;
 
-import bj.gouv.sgg.config.LawProperties;
 import bj.gouv.sgg.model.*;
 import bj.gouv.sgg.repository.ArticleExtractionRepository;
+import bj.gouv.sgg.service.ArticleExtractionFactory;
 import bj.gouv.sgg.service.ArticleExtractorService;
+import bj.gouv.sgg.service.ContentDeduplicationService;
 import bj.gouv.sgg.service.FileStorageService;
 import bj.gouv.sgg.service.TesseractOcrService;
 import lombok.RequiredArgsConstructor;
@@ -11,23 +12,24 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Processor qui extrait les articles depuis un PDF stocké sur disque
+ * Un document dont le PDF a le même contenu qu'un document déjà traité reprend
+ * ses articles et son OCR (voir {@link ContentDeduplicationService}).
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class ExtractionProcessor implements ItemProcessor<LawDocument, LawDocument> {
 
-    private final LawProperties properties;
     private final TesseractOcrService ocrService;
     private final ArticleExtractorService extractorService;
     private final ArticleExtractionRepository articleExtractionRepository;
     private final FileStorageService fileStorageService;
+    private final ContentDeduplicationService deduplicationService;
+    private final ArticleExtractionFactory extractionFactory;
 
     @Override
     public LawDocument process(LawDocument document) throws Exception {
@@ -37,15 +39,31 @@ public class ExtractionProcessor implements ItemProcessor<LawDocument, LawDocume
             return document;
         }
 
+        // Même contenu PDF déjà extrait sous un autre identifiant : copie des articles
+        String sha256 = deduplicationService.sha256Of(document);
+        for (String sibling : deduplicationService.siblingsOf(document.getDocumentId(), sha256)) {
+            List<ArticleExtraction> siblingArticles = articleExtractionRepository.findByDocumentId(sibling);
+            if (!siblingArticles.isEmpty()) {
+                List<ArticleExtraction> extractions = siblingArticles.stream()
+                        .map(article -> extractionFactory.rebind(article, document))
+                        .toList();
+                articleExtractionRepository.saveAll(extractions);
+                log.info("Reused {} articles from {} for: {}", extractions.size(), sibling, document.getDocumentId());
+                document.setStatus(LawDocument.ProcessingStatus.EXTRACTED);
+                return document;
+            }
+        }
+
         // OCR
         String ocrText;
-        if (fileStorageService.ocrExists(document.getType(), document.getDocumentId())) {
+        if (fileStorageService.ocrExists(document.getType(), document.getDocumentId())
+                || fileStorageService.reuseOcr(document.getType(), document.getDocumentId(), sha256)) {
             ocrText = fileStorageService.readOcr(document.getType(), document.getDocumentId());
             log.debug("Loaded existing OCR ({}) for {}", ocrText.length(), document.getDocumentId());
         } else {
             byte[] pdfBytes = fileStorageService.readPdf(document.getType(), document.getDocumentId());
             ocrText = ocrService.extractText(pdfBytes);
-            fileStorageService.saveOcr(document.getType(), document.getDocumentId(), ocrText);
+            fileStorageService.saveOcr(document.getType(), document.getDocumentId(), ocrText, sha256);
             log.info("OCR extracted and saved: {} ({} chars)", document.getDocumentId(), ocrText.length());
         }
 
@@ -59,26 +77,9 @@ public class ExtractionProcessor implements ItemProcessor<LawDocument, LawDocume
         double confidence = extractorService.calculateConfidence(ocrText, articles);
         log.info("Extracted {} articles from: {} (confidence: {:.2f})", articles.size(), document.getDocumentId(), confidence);
 
-        List<ArticleExtraction> extractions = new ArrayList<>();
-        for (Article article : articles) {
-            ArticleExtraction extraction = ArticleExtraction.builder()
-                    .documentId(document.getDocumentId())
-                    .articleIndex(article.getIndex())
-                    .title(String.format("%s article-%d", document.getDocumentId(), article.getIndex()))
-                    .content(article.getContent())
-                    .confidence(confidence)
-                    .documentType(document.getType())
-                    .documentYear(document.getYear())
-                    .documentNumber(document.getNumber())
-                    .sourceUrl(String.format("%s/%s/download", properties.getBaseUrl(), document.getDocumentId()))
-                    .lawTitle(metadata.getLawTitle())
-                    .promulgationDate(metadata.getPromulgationDate())
-                    .promulgationCity(metadata.getPromulgationCity())
-                    .signatories(metadata.getSignatories())
-                    .extractedAt(LocalDateTime.now())
-                    .build();
-            extractions.add(extraction);
-        }
+        List<ArticleExtraction> extractions = articles.stream()
+                .map(article -> extractionFactory.create(document, article, metadata, confidence))
+                .toList();
         articleExtractionRepository.saveAll(extractions);
         log.info("Saved {} articles to database for: {}", extractions.size(), document.getDocumentId());
 
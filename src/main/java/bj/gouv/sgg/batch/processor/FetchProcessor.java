@@ -1,22 +1,27 @@
 package bj.gouv.sgg.batch.processor;
 
+import bj.gouv.sgg.batch.util.LawDocumentFactory;
 import bj.gouv.sgg.config.LawProperties;
 import bj.gouv.sgg.model.LawDocument;
-import bj.gouv.sgg.util.RateLimitHandler;
+import bj.gouv.sgg.service.AsyncProbeService;
+import bj.gouv.sgg.service.PaddingConventionService;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.hc.client5.http.classic.methods.HttpHead;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Processor qui vérifie l'existence d'un document via HTTP HEAD
- * Gère automatiquement le padding pour les numéros 1-9
- * Gère les rate limits (429) avec retry automatique
+ * Gère automatiquement le padding pour les numéros 1-99 (variante choisie par un modèle appris)
+ * Gère les rate limits (429) avec retry automatique ; les échecs persistants sont marqués FAILED
+ * Les sondes passent par le moteur asynchrone : {@link #processAsync} est utilisé
+ * par les steps de fetch, {@link #process} reste disponible pour les steps synchrones.
+ * Mode fusionné (law.download.fused-probe) : la sonde est un GET qui télécharge le PDF
+ * d'un document trouvé, publié ensuite par {@code FetchWriter} (FETCHED et DOWNLOADED en une fois).
  */
 @Slf4j
 @Component
@@ -24,7 +29,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class FetchProcessor implements ItemProcessor<LawDocument, LawDocument> {
 
     private final LawProperties properties;
-    private final RateLimitHandler rateLimitHandler;
+    private final AsyncProbeService asyncProbeService;
+    private final PaddingConventionService paddingConventionService;
+    private final LawDocumentFactory documentFactory;
 
     // Statistiques locales pour le step courant
     private final AtomicInteger totalProcessed = new AtomicInteger(0);
@@ -32,122 +39,155 @@ public class FetchProcessor implements ItemProcessor<LawDocument, LawDocument> {
     private final AtomicInteger paddedFound2Count = new AtomicInteger(0);
     private final AtomicInteger paddedFound3Count = new AtomicInteger(0);
     private final AtomicInteger notFoundCount = new AtomicInteger(0);
+    private final AtomicInteger secondProbeCount = new AtomicInteger(0);
+    private final AtomicInteger racedCount = new AtomicInteger(0);
     private final AtomicInteger rateLimitedCount = new AtomicInteger(0);
+    private final AtomicInteger rejectedCount = new AtomicInteger(0);
     private final AtomicInteger errorCount = new AtomicInteger(0);
+    private final AtomicInteger fusedDownloadCount = new AtomicInteger(0);
 
     @Override
     public LawDocument process(LawDocument document) throws Exception {
+        return processAsync(document).join();
+    }
+
+    /**
+     * Sonde un document sans bloquer le thread appelant
+     * Pour les numéros 1-99, la variante (paddée ou non) la plus probable selon
+     * {@link PaddingConventionService} est sondée en premier ; si le modèle hésite,
+     * les deux variantes sont sondées en parallèle.
+     * @return le document (FETCHED, PENDING si 404, FAILED si rate limit / erreur réseau)
+     */
+    public CompletableFuture<LawDocument> processAsync(LawDocument document) {
+        return processAsync(document, properties.getDownload().isFusedProbe());
+    }
+
+    /**
+     * @param fused sonde par GET avec téléchargement du PDF (le résultat doit alors être écrit par
+     *              {@code FetchWriter}, qui publie le fichier temporaire) ; false = HEAD seul
+     */
+    public CompletableFuture<LawDocument> processAsync(LawDocument document, boolean fused) {
         totalProcessed.incrementAndGet();
 
-        int statusCode = rateLimitHandler.executeWithRetry(document.getUrl(), this::tryFetch);
+        // Padding 2 chiffres (1-9) ou 3 chiffres (10-99)
+        int digits = LawDocumentFactory.paddingDigits(document.getNumber());
+        if (digits == 0) {
+            return probe(document, document.getUrl(), fused)
+                .thenApply(statusCode -> resolve(document, 0, null, statusCode));
+        }
+
+        String unpaddedUrl = document.getUrl();
+        String paddedUrl = documentFactory.paddedUrl(document.getType(), document.getYear(), document.getNumber());
+        PaddingConventionService.Plan plan =
+            paddingConventionService.plan(document.getType(), document.getYear(), digits);
+
+        // Pas de course en mode fusionné : les deux GET écriraient le même fichier temporaire
+        if (plan.isRace() && !fused) {
+            racedCount.incrementAndGet();
+            CompletableFuture<Integer> unpadded = asyncProbeService.probe(unpaddedUrl);
+            CompletableFuture<Integer> padded = asyncProbeService.probe(paddedUrl);
+            return unpadded.thenCombine(padded,
+                (unpaddedStatus, paddedStatus) -> resolveRace(document, digits, paddedUrl, unpaddedStatus, paddedStatus));
+        }
 
+        String firstUrl = plan.isPaddedFirst() ? paddedUrl : unpaddedUrl;
+        String secondUrl = plan.isPaddedFirst() ? unpaddedUrl : paddedUrl;
+        return probe(document, firstUrl, fused)
+            .thenCompose(statusCode -> {
+                if (statusCode != 404) {
+                    return CompletableFuture.completedFuture(resolve(document, digits, firstUrl, statusCode));
+                }
+                secondProbeCount.incrementAndGet();
+                return probe(document, secondUrl, fused)
+                    .thenApply(secondStatus -> resolve(document, digits, secondUrl, secondStatus));
+            });
+    }
+
+    private CompletableFuture<Integer> probe(LawDocument document, String url, boolean fused) {
+        return fused ? asyncProbeService.probeAndDownload(document, url) : asyncProbeService.probe(url);
+    }
+
+    /**
+     * Combine les résultats des deux variantes sondées en parallèle
+     */
+    private LawDocument resolveRace(LawDocument document, int digits, String paddedUrl,
+                                    int unpaddedStatus, int paddedStatus) {
+        if (unpaddedStatus == 200 || (paddedStatus != 200 && unpaddedStatus != 404)) {
+            return resolve(document, digits, document.getUrl(), unpaddedStatus);
+        }
+        return resolve(document, digits, paddedUrl, paddedStatus);
+    }
+
+    /**
+     * @param digits classe de padding (0 si le numéro n'est pas concerné)
+     * @param url variante sondée (null pour un numéro sans padding)
+     */
+    private LawDocument resolve(LawDocument document, int digits, String url, int statusCode) {
         if (statusCode == 200) {
+            boolean padded = url != null && !url.equals(document.getUrl());
+            if (padded) {
+                document.setUrl(url);
+                (digits == 2 ? paddedFound2Count : paddedFound3Count).incrementAndGet();
+                log.debug("Found with {}-digit padding: {} -> {}", digits, document.getDocumentId(), url);
+            } else {
+                log.debug("Found: {}", document.getDocumentId());
+            }
+            if (digits > 0) {
+                paddingConventionService.record(document.getType(), document.getYear(), digits, padded);
+            }
             document.setExists(true);
             document.setStatus(LawDocument.ProcessingStatus.FETCHED);
             foundCount.incrementAndGet();
-            log.debug("Found: {}", document.getDocumentId());
+            if (document.getPdfPath() != null) {
+                fusedDownloadCount.incrementAndGet();
+            }
             return document;
         }
 
         if (statusCode == 429) {
             rateLimitedCount.incrementAndGet();
-            log.warn("Rate limited (429) after retries, skipping: {}", document.getDocumentId());
-            return null;
+            log.warn("Rate limited (429) after retries, deferring: {}", document.getDocumentId());
+            return markFailed(document, "HTTP 429 after retries");
+        }
+
+        if (statusCode == UpstreamCircuitBreaker.REJECTED) { // Circuit ouvert : aucune connexion tentée
+            rejectedCount.incrementAndGet();
+            log.debug("Circuit open, deferring: {}", document.getDocumentId());
+            return markFailed(document, "Upstream circuit open");
         }
 
         if (statusCode < 0) { // Erreur réseau
             errorCount.incrementAndGet();
             log.warn("Network/error status {} for {}", statusCode, document.getDocumentId());
-            return null;
+            return markFailed(document, "Network error");
         }
 
-        // Padding 2 chiffres (1-9)
-        if (statusCode == 404 && document.getNumber() >= 1 && document.getNumber() <= 9) {
-            String paddedUrl = buildPaddedUrl(document, 2);
-            int paddedStatus = rateLimitHandler.executeWithRetry(paddedUrl, this::tryFetch);
-            if (paddedStatus == 200) {
-                document.setUrl(paddedUrl);
-                document.setExists(true);
-                document.setStatus(LawDocument.ProcessingStatus.FETCHED);
-                paddedFound2Count.incrementAndGet();
-                foundCount.incrementAndGet();
-                log.debug("Found with 2-digit padding: {} -> {}", document.getDocumentId(), paddedUrl);
-                return document;
-            } else if (paddedStatus == 429) {
-                rateLimitedCount.incrementAndGet();
-                log.warn("Rate limited (429) on padded (2) URL, skipping: {}", document.getDocumentId());
-                return null;
-            }
-            // 404 confirmé même avec padding 2
-            document.setExists(false);
-            document.setStatus(LawDocument.ProcessingStatus.PENDING);
-            notFoundCount.incrementAndGet();
-            log.trace("Not found (404) with or without 2-digit padding: {}", document.getDocumentId());
-            return document;
-        }
-
-        // Padding 3 chiffres (10-99)
-        if (statusCode == 404 && document.getNumber() >= 10 && document.getNumber() <= 99) {
-            String paddedUrl = buildPaddedUrl(document, 3);
-            int paddedStatus = rateLimitHandler.executeWithRetry(paddedUrl, this::tryFetch);
-            if (paddedStatus == 200) {
-                document.setUrl(paddedUrl);
-                document.setExists(true);
-                document.setStatus(LawDocument.ProcessingStatus.FETCHED);
-                paddedFound3Count.incrementAndGet();
-                foundCount.incrementAndGet();
-                log.debug("Found with 3-digit padding: {} -> {}", document.getDocumentId(), paddedUrl);
-                return document;
-            } else if (paddedStatus == 429) {
-                rateLimitedCount.incrementAndGet();
-                log.warn("Rate limited (429) on padded (3) URL, skipping: {}", document.getDocumentId());
-                return null;
-            }
-            // 404 confirmé même avec padding 3
-            document.setExists(false);
-            document.setStatus(LawDocument.ProcessingStatus.PENDING);
-            notFoundCount.incrementAndGet();
-            log.trace("Not found (404) with or without 3-digit padding: {}", document.getDocumentId());
-            return document;
-        }
-
-        // 404 sans padding possible (>=100)
+        // 404 confirmé (sur toutes les variantes pour les numéros 1-99)
         if (statusCode == 404) {
-            document.setExists(false);
-            document.setStatus(LawDocument.ProcessingStatus.PENDING);
-            notFoundCount.incrementAndGet();
-            log.trace("Not found (404): {}", document.getDocumentId());
-            return document;
+            return markNotFound(document);
         }
 
+        errorCount.incrementAndGet();
         log.warn("Unexpected status {} for: {}", statusCode, document.getDocumentId());
-        return null;
+        return markFailed(document, "HTTP " + statusCode);
     }
-    
-    private int tryFetch(String url) {
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
-            HttpHead request = new HttpHead(url);
-            request.setHeader("User-Agent", properties.getUserAgent());
-            
-            var response = client.executeOpen(null, request, null);
-            try {
-                int statusCode = response.getCode();
-                EntityUtils.consume(response.getEntity());
-                return statusCode;
-            } finally {
-                response.close();
-            }
-        } catch (Exception e) {
-            log.error("Error fetching {}: {}", url, e.getMessage());
-            return -1;
-        }
+
+    /**
+     * Sonde non concluante : le document sera placé dans la file des sondes différées
+     */
+    private LawDocument markFailed(LawDocument document, String errorMessage) {
+        document.setExists(false);
+        document.setStatus(LawDocument.ProcessingStatus.FAILED);
+        document.setErrorMessage(errorMessage);
+        return document;
     }
-    
-    private String buildPaddedUrl(LawDocument document, int digits) {
-        String format = "%0" + digits + "d";
-        String paddedNumber = String.format(format, document.getNumber());
-        return String.format("%s/%s-%d-%s/download", 
-            properties.getBaseUrl(), document.getType(), document.getYear(), paddedNumber);
+
+    private LawDocument markNotFound(LawDocument document) {
+        document.setExists(false);
+        document.setStatus(LawDocument.ProcessingStatus.PENDING);
+        notFoundCount.incrementAndGet();
+        log.trace("Not found (404): {}", document.getDocumentId());
+        return document;
     }
 
     public void resetStats() {
@@ -156,13 +196,18 @@ public class FetchProcessor implements ItemProcessor<LawDocument, LawDocument> {
         paddedFound2Count.set(0);
         paddedFound3Count.set(0);
         notFoundCount.set(0);
+        secondProbeCount.set(0);
+        racedCount.set(0);
         rateLimitedCount.set(0);
+        rejectedCount.set(0);
         errorCount.set(0);
+        fusedDownloadCount.set(0);
     }
 
     public String statsSummary() {
-        return String.format("processed=%d found=%d notFound=%d pad2=%d pad3=%d rateLimited=%d errors=%d", 
+        return String.format("processed=%d found=%d notFound=%d pad2=%d pad3=%d secondProbes=%d raced=%d rateLimited=%d circuitOpen=%d errors=%d fusedDownloads=%d", 
             totalProcessed.get(), foundCount.get(), notFoundCount.get(), paddedFound2Count.get(), 
-            paddedFound3Count.get(), rateLimitedCount.get(), errorCount.get());
+            paddedFound3Count.get(), secondProbeCount.get(), racedCount.get(), rateLimitedCount.get(),
+            rejectedCount.get(), errorCount.get(), fusedDownloadCount.get());
     }
 }
@@ -0,0 +1,58 @@
+package bj.gouv.sgg.batch.processor;
+
+import bj.gouv.sgg.model.FetchResult;
+import bj.gouv.sgg.repository.ArticleExtractionRepository;
+import bj.gouv.sgg.service.RevalidationService;
+import bj.gouv.sgg.service.RevalidationService.Outcome;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker.Permit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Processor qui revérifie qu'un PDF téléchargé n'a pas été remplacé sur le site (voir {@link RevalidationService})
+ * Un PDF modifié perd ses articles en base (dans la transaction du chunk) et repasse au statut DOWNLOADED
+ * pour être ré-OCRisé, ré-extrait puis reconsolidé.
+ * Erreur réseau ou circuit ouvert : le document est ignoré et sera revérifié au prochain run.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RevalidationProcessor implements ItemProcessor<FetchResult, FetchResult> {
+    
+    private final RevalidationService revalidationService;
+    private final ArticleExtractionRepository articleExtractionRepository;
+    private final UpstreamCircuitBreaker circuitBreaker;
+    
+    @Override
+    public FetchResult process(FetchResult fetchResult) {
+        Permit permit = circuitBreaker.tryAcquire();
+        if (permit == null) {
+            log.debug("Circuit open, skipping revalidation: {}", fetchResult.getDocumentId());
+            return null;
+        }
+        
+        Outcome outcome;
+        try {
+            outcome = revalidationService.revalidate(fetchResult, permit);
+        } catch (IOException e) {
+            log.error("Network error revalidating {}: {}", fetchResult.getDocumentId(), e.getMessage());
+            return null;
+        } finally {
+            circuitBreaker.release(permit);
+        }
+        
+        if (outcome == Outcome.FAILED) {
+            return null;
+        }
+        if (outcome == Outcome.CHANGED) {
+            articleExtractionRepository.deleteByDocumentId(fetchResult.getDocumentId());
+        }
+        log.debug("Revalidated {}: {}", fetchResult.getDocumentId(), outcome);
+        return fetchResult;
+    }
+}
@@ -0,0 +1,168 @@
+package bj.gouv.sgg.batch.reader;
+
+import bj.gouv.sgg.model.LawDocument;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base des readers de fetch : génère les candidats à la demande au lieu de matérialiser
+ * toute la liste en mémoire.
+ * - Chaque candidat correspond à un ordinal (0..size-1) décodé en (type, année, numéro)
+ * - Lecture sans verrou : un AtomicLong distribue les ordinaux entre les threads
+ * - La position suivante (type, année, numéro) est sauvegardée dans l'ExecutionContext
+ *   à chaque chunk : un job redémarré reprend exactement là où il s'est arrêté
+ * La limite maxItems peut être dépassée d'au plus un item par thread concurrent.
+ * Avec un step multi-threadé, les items encore en vol dans d'autres threads au moment
+ * d'un checkpoint ne sont pas rejoués au redémarrage (limite propre à Spring Batch).
+ */
+public abstract class AbstractCandidateReader implements ItemStreamReader<LawDocument> {
+
+    private static final String TYPE_KEY = "candidate.type";
+    private static final String YEAR_KEY = "candidate.year";
+    private static final String NUMBER_KEY = "candidate.number";
+    private static final String EMITTED_KEY = "candidate.emitted";
+
+    private final AtomicLong nextOrdinal = new AtomicLong();
+    private final AtomicInteger emitted = new AtomicInteger();
+    private volatile boolean initialized;
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        initialize();
+        if (executionContext.containsKey(YEAR_KEY)) {
+            Position restored = new Position(executionContext.getString(TYPE_KEY),
+                executionContext.getInt(YEAR_KEY), executionContext.getInt(NUMBER_KEY));
+            nextOrdinal.set(Math.max(0, ordinal(restored)));
+            emitted.set(executionContext.getInt(EMITTED_KEY, 0));
+        } else {
+            nextOrdinal.set(startOrdinal());
+            emitted.set(0);
+        }
+        initialized = true;
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) {
+        Position next = nextPosition();
+        if (next != null) {
+            executionContext.putString(TYPE_KEY, next.getType());
+            executionContext.putInt(YEAR_KEY, next.getYear());
+            executionContext.putInt(NUMBER_KEY, next.getNumber());
+            executionContext.putInt(EMITTED_KEY, emitted.get());
+        }
+        onCheckpoint(next);
+    }
+
+    @Override
+    public void close() {
+        initialized = false;
+    }
+
+    @Override
+    public LawDocument read() {
+        ensureInitialized();
+        long size = size();
+        while (emitted.get() < maxItems()) {
+            long ordinal = nextOrdinal.getAndIncrement();
+            if (ordinal >= size) {
+                return null; // End of data
+            }
+            Position position = position(ordinal);
+            if (accept(position)) {
+                emitted.incrementAndGet();
+                return createDocument(position);
+            }
+        }
+        return null; // Limite d'items atteinte
+    }
+
+    /**
+     * Réinitialise le reader (nouvel appel à {@link #open} ou initialisation paresseuse à la prochaine lecture)
+     */
+    public void reset() {
+        initialized = false;
+    }
+
+    private void ensureInitialized() {
+        if (!initialized) {
+            // Verrou limité à l'initialisation (reader utilisé sans open(), ex. tests)
+            synchronized (this) {
+                if (!initialized) {
+                    initialize();
+                    nextOrdinal.set(startOrdinal());
+                    emitted.set(0);
+                    initialized = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Position du prochain candidat non encore distribué, null si la génération est terminée
+     */
+    protected Position nextPosition() {
+        long ordinal = nextOrdinal.get();
+        return ordinal < size() ? position(ordinal) : null;
+    }
+
+    protected int emittedCount() {
+        return emitted.get();
+    }
+
+    /**
+     * Charge l'état nécessaire à la génération (index, bornes...)
+     */
+    protected abstract void initialize();
+
+    /**
+     * Nombre total d'ordinaux de l'espace de génération
+     */
+    protected abstract long size();
+
+    protected abstract Position position(long ordinal);
+
+    protected abstract long ordinal(Position position);
+
+    protected abstract LawDocument createDocument(Position position);
+
+    /**
+     * @return false si le candidat doit être ignoré (déjà vérifié, hors borne...)
+     */
+    protected boolean accept(Position position) {
+        return true;
+    }
+
+    /**
+     * Ordinal de départ quand l'ExecutionContext est vide (nouvelle exécution)
+     */
+    protected long startOrdinal() {
+        return 0;
+    }
+
+    protected int maxItems() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Appelé à chaque checkpoint (fin de chunk)
+     * @param next position suivante, null si la génération est terminée
+     */
+    protected void onCheckpoint(Position next) {
+    }
+
+    /**
+     * Position d'un candidat dans l'espace de génération
+     */
+    @Getter
+    @AllArgsConstructor
+    protected static class Position {
+        private final String type;
+        private final int year;
+        private final int number;
+    }
+}
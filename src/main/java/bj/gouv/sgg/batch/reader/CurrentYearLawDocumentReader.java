@@ -3,90 +3,92 @@ package bj.gouv.sgg.batch.reader;
 import bj.gouv.sgg.batch.util.LawDocumentFactory;
 import bj.gouv.sgg.config.LawProperties;
 import bj.gouv.sgg.model.LawDocument;
-import bj.gouv.sgg.repository.FetchResultRepository;
+import bj.gouv.sgg.service.CurrentYearFrontierService;
+import bj.gouv.sgg.service.VerifiedDocumentIndexService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.batch.item.ItemReader;
 import org.springframework.stereotype.Component;
 
-import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Calendar;
 
 /**
  * Reader pour l'année courante.
  * Parcourt systématiquement toutes les combinaisons (1..maxNumberPerYear) pour l'année courante
  * en excluant uniquement les documents déjà TROUVÉS (présents dans fetch_results).
  * Les numéros NOT_FOUND sont donc retestés à chaque exécution pour détecter l'apparition tardive.
+ * Mode frontière ({@link CurrentYearFrontierService}) : le scan s'arrête à une fenêtre au-dessus
+ * du plus grand numéro trouvé (trous inclus), la queue complète n'étant vérifiée que selon un planning.
+ * Les candidats sont générés à la demande (aucune liste pré-calculée).
  */
 @Slf4j
 @Component
-public class CurrentYearLawDocumentReader implements ItemReader<LawDocument> {
+public class CurrentYearLawDocumentReader extends AbstractCandidateReader {
+    
+    private static final String TYPE = "loi";
     
     private final LawProperties properties;
-    private final FetchResultRepository fetchResultRepository;
+    private final VerifiedDocumentIndexService verifiedDocumentIndexService;
     private final LawDocumentFactory documentFactory;
-    private List<LawDocument> documents;
-    private final AtomicInteger currentIndex = new AtomicInteger(0);
+    private final CurrentYearFrontierService frontierService;
+    private VerifiedDocumentIndexService.Index index;
+    private CurrentYearFrontierService.Plan plan;
+    private int currentYear;
     
     public CurrentYearLawDocumentReader(LawProperties properties,
-                                       FetchResultRepository fetchResultRepository,
-                                       LawDocumentFactory documentFactory) {
+                                       VerifiedDocumentIndexService verifiedDocumentIndexService,
+                                       LawDocumentFactory documentFactory,
+                                       CurrentYearFrontierService frontierService) {
         this.properties = properties;
-        this.fetchResultRepository = fetchResultRepository;
+        this.verifiedDocumentIndexService = verifiedDocumentIndexService;
         this.documentFactory = documentFactory;
+        this.frontierService = frontierService;
     }
     
     @Override
-    public synchronized LawDocument read() {
-        if (documents == null) {
-            documents = generateDocuments();
-            log.info("Generated {} documents for current year (full scan, no cache)", documents.size());
-        }
-        
-        int index = currentIndex.getAndIncrement();
-        if (index < documents.size()) {
-            return documents.get(index);
-        }
-        
-        return null; // End of data
+    protected void initialize() {
+        currentYear = Calendar.getInstance().get(Calendar.YEAR);
+
+        // Charger uniquement les documents TROUVÉS (FetchResult) pour exclusion
+        index = verifiedDocumentIndexService.loadFound(TYPE);
+        int foundCount = index.foundCount(currentYear);
+        plan = frontierService.plan(TYPE, currentYear, index.highestFound(currentYear));
+        log.info("Scanning current year {} up to {}: {} already FOUND (will skip these)", 
+            currentYear, plan.getScanLimit(), foundCount);
     }
     
-    private List<LawDocument> generateDocuments() {
-        List<LawDocument> docs = new ArrayList<>();
-
-        int currentYear = Calendar.getInstance().get(Calendar.YEAR);
-        int maxNumber = properties.getMaxNumberPerYear();
-
-        // Charger uniquement les documentIds TROUVÉS (FetchResult) pour exclusion
-        Set<String> foundDocuments = new HashSet<>(fetchResultRepository.findAllDocumentIds());
-        log.info("Loaded {} FOUND documents (will skip these)", foundDocuments.size());
-
-        for (int number = 1; number <= maxNumber; number++) {
-            String loiDocId = String.format("loi-%d-%d", currentYear, number);
-            if (!foundDocuments.contains(loiDocId)) {
-                docs.add(documentFactory.create("loi", currentYear, number));
-            }
-        }
-
-        log.info("Generated {} candidate documents for current year {} ({} were already FOUND)", 
-            docs.size(), currentYear, foundDocuments.size());
-
-        if (!docs.isEmpty()) {
-            LawDocument first = docs.get(0);
-            LawDocument last = docs.get(docs.size() - 1);
-            log.info("Scan range: {} → {}", first.getUrl(), last.getUrl());
-        }
-
-        return docs;
+    @Override
+    protected long size() {
+        return Math.min(plan.getScanLimit(), properties.getMaxNumberPerYear());
     }
     
     /**
-     * Charge le cursor depuis la BD
-     * @return [year, number] - position de départ
+     * Plan de l'exécution en cours (null si le reader n'a pas été ouvert)
      */
-    // Cursor logic removed: current-year scan now ignores persisted cursor
+    public CurrentYearFrontierService.Plan getPlan() {
+        return plan;
+    }
+    
+    public int getCurrentYear() {
+        return currentYear;
+    }
+    
+    @Override
+    protected Position position(long ordinal) {
+        return new Position(TYPE, currentYear, (int) ordinal + 1);
+    }
     
-    public void reset() {
-        currentIndex.set(0);
-        documents = null;
+    @Override
+    protected long ordinal(Position position) {
+        // Position d'une autre année (redémarrage après le changement d'année) : on repart du début
+        return position.getYear() == currentYear ? position.getNumber() - 1L : 0;
+    }
+    
+    @Override
+    protected boolean accept(Position position) {
+        return !index.isFound(position.getYear(), position.getNumber());
+    }
+    
+    @Override
+    protected LawDocument createDocument(Position position) {
+        return documentFactory.create(position.getType(), position.getYear(), position.getNumber());
     }
 }
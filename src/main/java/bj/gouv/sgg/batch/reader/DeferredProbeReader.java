@@ -0,0 +1,45 @@
+package bj.gouv.sgg.batch.reader;
+
+import bj.gouv.sgg.batch.util.LawDocumentFactory;
+import bj.gouv.sgg.model.DeferredProbe;
+import bj.gouv.sgg.model.LawDocument;
+import bj.gouv.sgg.service.DeferredProbeService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ItemReader;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Reader des sondes différées éligibles (nextAttemptAt échue), limitées à drainBatchSize par exécution
+ */
+@Slf4j
+@Component
+@StepScope
+@RequiredArgsConstructor
+public class DeferredProbeReader implements ItemReader<LawDocument> {
+    
+    private final DeferredProbeService deferredProbeService;
+    private final LawDocumentFactory documentFactory;
+    private Iterator<DeferredProbe> iterator;
+    
+    @Override
+    public LawDocument read() {
+        if (iterator == null) {
+            List<DeferredProbe> due = deferredProbeService.findDue();
+            log.info("Draining {} deferred probes ({} due in total, {} abandoned)",
+                     due.size(), deferredProbeService.countDue(), deferredProbeService.countAbandoned());
+            iterator = due.iterator();
+        }
+        
+        if (iterator.hasNext()) {
+            DeferredProbe probe = iterator.next();
+            return documentFactory.create(probe.getDocumentType(), probe.getYear(), probe.getNumber());
+        }
+        
+        return null;
+    }
+}
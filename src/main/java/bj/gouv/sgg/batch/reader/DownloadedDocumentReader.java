@@ -74,6 +74,7 @@ public class DownloadedDocumentReader implements ItemReader<LawDocument> {
             .year(fetchResult.getYear())
             .number(fetchResult.getNumber())
             .url(fetchResult.getUrl())
+            .sha256(fetchResult.getSha256())
             .exists(true)
             .status(LawDocument.ProcessingStatus.DOWNLOADED)
             .build();
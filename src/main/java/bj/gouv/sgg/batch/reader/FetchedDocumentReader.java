@@ -2,19 +2,22 @@ package bj.gouv.sgg.batch.reader;
 
 import bj.gouv.sgg.model.FetchResult;
 import bj.gouv.sgg.model.LawDocument;
-import bj.gouv.sgg.repository.FetchResultRepository;
+import bj.gouv.sgg.service.DownloadClaimService;
 import bj.gouv.sgg.service.FileStorageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
 /**
  * Reader qui lit les documents fetchés avec succès (status=FETCHED, exists=true)
  * et qui n'ont pas encore été téléchargés
+ * Thread-safe : chaque document est réservé (FETCHED → DOWNLOADING) avant d'être retourné,
+ * un document déjà réservé par un autre thread ou une autre instance est ignoré.
  */
 @Slf4j
 @Component
@@ -22,7 +25,7 @@ import java.util.List;
 @org.springframework.batch.core.configuration.annotation.StepScope
 public class FetchedDocumentReader implements ItemReader<LawDocument> {
     
-    private final FetchResultRepository fetchResultRepository;
+    private final DownloadClaimService downloadClaimService;
     private final FileStorageService fileStorageService;
     private Iterator<FetchResult> iterator;
     
@@ -32,31 +35,27 @@ public class FetchedDocumentReader implements ItemReader<LawDocument> {
             initialize();
         }
         
-        if (iterator.hasNext()) {
+        while (iterator.hasNext()) {
             FetchResult fetchResult = iterator.next();
-            return convertToLawDocument(fetchResult);
+            if (downloadClaimService.claim(fetchResult)) {
+                return convertToLawDocument(fetchResult);
+            }
         }
         
         return null;
     }
     
-    private synchronized void initialize() {
-        // Récupérer tous les documents fetchés avec succès (status=FETCHED ou FOUND)
-        List<FetchResult> fetchedDocuments = fetchResultRepository
-            .findByStatus("FETCHED");
-        
-        // Filtrer ceux qui n'ont pas encore été téléchargés avec succès (OK ou DUPLICATE)
-        // Conformément à la logique de CrawlerService qui exclut les statuses OK/DUPLICATE
-        List<FetchResult> toDownload = fetchedDocuments.stream()
-            .filter(fetch -> !fileStorageService.pdfExists(fetch.getDocumentType(), fetch.getDocumentId()))
-            // Trier du plus récent au plus ancien: year DESC, number DESC
-            // Conformément à CrawlerService.run() lignes 168-177
-            .sorted((a, b) -> {
-                int yearCompare = Integer.compare(b.getYear(), a.getYear());
-                if (yearCompare != 0) return yearCompare;
-                return Integer.compare(b.getNumber(), a.getNumber());
-            })
-            .toList();
+    private void initialize() {
+        // Documents FETCHED (ou réservation expirée), triés year DESC, number DESC
+        List<FetchResult> toDownload = new ArrayList<>();
+        for (FetchResult fetch : downloadClaimService.findCandidates()) {
+            if (fileStorageService.pdfExists(fetch.getDocumentType(), fetch.getDocumentId())) {
+                // PDF déjà sur disque (import, run interrompu) : seul le statut manquait
+                downloadClaimService.markDownloaded(fetch.getDocumentId());
+            } else {
+                toDownload.add(fetch);
+            }
+        }
         
         log.info("Found {} documents ready to download (fetched but not yet downloaded), sorted by year DESC, number DESC", 
             toDownload.size());
@@ -3,77 +3,70 @@ package bj.gouv.sgg.batch.reader;
 import bj.gouv.sgg.config.LawProperties;
 import bj.gouv.sgg.model.LawDocument;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.batch.item.ItemReader;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Thread-safe reader qui génère tous les documents possibles (loi et decret) depuis START_YEAR jusqu'à maintenant
+ * Les documents sont générés à la demande (ordre : année, numéro, loi puis décret)
  */
 @Slf4j
 @Component
-public class LawDocumentReader implements ItemReader<LawDocument> {
+public class LawDocumentReader extends AbstractCandidateReader {
+    
+    private static final String[] TYPES = {"loi", "decret"};
     
     private final LawProperties properties;
-    private List<LawDocument> documents;
-    private final AtomicInteger currentIndex = new AtomicInteger(0);
+    private int firstYear;
+    private int lastYear;
     
     public LawDocumentReader(LawProperties properties) {
         this.properties = properties;
     }
     
     @Override
-    public synchronized LawDocument read() {
-        if (documents == null) {
-            documents = generateDocuments();
-            log.info("Generated {} potential documents to fetch", documents.size());
-        }
-        
-        int index = currentIndex.getAndIncrement();
-        if (index < documents.size()) {
-            return documents.get(index);
-        }
-        
-        return null; // End of data
+    protected void initialize() {
+        firstYear = properties.getEndYear();
+        lastYear = Calendar.getInstance().get(Calendar.YEAR);
+        log.info("Generating up to {} potential documents to fetch ({} → {})", size(), firstYear, lastYear);
     }
     
-    private List<LawDocument> generateDocuments() {
-        List<LawDocument> docs = new ArrayList<>();
-        int currentYear = Calendar.getInstance().get(Calendar.YEAR);
-        
-        // Générer tous les documents possibles (lois et décrets)
-        for (int year = properties.getEndYear(); year <= currentYear; year++) {
-            for (int number = 1; number <= properties.getMaxNumberPerYear(); number++) {
-                // Loi
-                docs.add(createDocument("loi", year, number));
-                // Décret
-                docs.add(createDocument("decret", year, number));
-            }
-        }
-        
-        return docs;
+    @Override
+    protected long size() {
+        return (long) (lastYear - firstYear + 1) * perYear();
     }
     
-    private LawDocument createDocument(String type, int year, int number) {
+    @Override
+    protected Position position(long ordinal) {
+        int year = firstYear + (int) (ordinal / perYear());
+        int rem = (int) (ordinal % perYear());
+        return new Position(TYPES[rem % TYPES.length], year, rem / TYPES.length + 1);
+    }
+    
+    @Override
+    protected long ordinal(Position position) {
+        int typeIndex = "decret".equals(position.getType()) ? 1 : 0;
+        return (long) (position.getYear() - firstYear) * perYear()
+            + (long) (position.getNumber() - 1) * TYPES.length + typeIndex;
+    }
+    
+    @Override
+    protected LawDocument createDocument(Position position) {
         // Générer l'URL sans padding initialement (ex: loi-2025-1)
         String url = String.format("%s/%s-%d-%d/download", 
-            properties.getBaseUrl(), type, year, number);
+            properties.getBaseUrl(), position.getType(), position.getYear(), position.getNumber());
         
         return LawDocument.builder()
-            .type(type)
-            .year(year)
-            .number(number)
+            .type(position.getType())
+            .year(position.getYear())
+            .number(position.getNumber())
             .url(url)
             .status(LawDocument.ProcessingStatus.PENDING)
             .build();
     }
     
-    public void reset() {
-        currentIndex.set(0);
-        documents = null;
+    private long perYear() {
+        return (long) properties.getMaxNumberPerYear() * TYPES.length;
     }
 }
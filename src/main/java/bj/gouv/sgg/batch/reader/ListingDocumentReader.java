@@ -0,0 +1,76 @@
+package bj.gouv.sgg.batch.reader;
+
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.model.LawDocument;
+import bj.gouv.sgg.service.ListingCrawlerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ItemReader;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reader qui parcourt les pages de liste du site page par page
+ * et retourne chaque document référencé une seule fois (status FETCHED)
+ * Arrêt sur page absente, après maxPages, ou après emptyPagesBeforeStop pages sans nouveau document
+ */
+@Slf4j
+@Component
+@StepScope
+@RequiredArgsConstructor
+public class ListingDocumentReader implements ItemReader<LawDocument> {
+    
+    private final LawProperties properties;
+    private final ListingCrawlerService listingCrawlerService;
+    private final Deque<LawDocument> buffer = new ArrayDeque<>();
+    private final Set<String> seen = new HashSet<>();
+    private int nextPage = 1;
+    private int emptyPages = 0;
+    private boolean finished;
+    
+    @Override
+    public LawDocument read() throws Exception {
+        LawProperties.Listing listing = properties.getListing();
+        if (!listing.isEnabled()) {
+            return null;
+        }
+        
+        while (buffer.isEmpty() && !finished) {
+            if (nextPage > listing.getMaxPages()) {
+                log.info("Listing crawl stopped at max pages: {}", listing.getMaxPages());
+                finished = true;
+                break;
+            }
+            
+            List<LawDocument> documents = listingCrawlerService.fetchPage(nextPage);
+            if (documents == null) {
+                log.info("Listing crawl finished: page {} does not exist ({} documents seen)", nextPage, seen.size());
+                finished = true;
+                break;
+            }
+            
+            int added = 0;
+            for (LawDocument document : documents) {
+                if (seen.add(document.getDocumentId())) {
+                    buffer.add(document);
+                    added++;
+                }
+            }
+            
+            emptyPages = added == 0 ? emptyPages + 1 : 0;
+            if (emptyPages >= listing.getEmptyPagesBeforeStop()) {
+                log.info("Listing crawl finished: {} pages without new documents ({} documents seen)", emptyPages, seen.size());
+                finished = true;
+            }
+            nextPage++;
+        }
+        
+        return buffer.poll();
+    }
+}
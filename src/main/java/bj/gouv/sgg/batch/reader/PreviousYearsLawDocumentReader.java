@@ -5,149 +5,114 @@ import bj.gouv.sgg.config.LawProperties;
 import bj.gouv.sgg.model.FetchCursor;
 import bj.gouv.sgg.model.LawDocument;
 import bj.gouv.sgg.repository.FetchCursorRepository;
-import bj.gouv.sgg.repository.FetchResultRepository;
+import bj.gouv.sgg.service.UpperBoundDiscoveryService;
+import bj.gouv.sgg.service.VerifiedDocumentIndexService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.batch.item.ItemReader;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
-import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Reader pour les années précédentes (1960 à année-1)
  * Utilise le cache BD pour éviter les URLs déjà vérifiées
+ * Ne scanne que sous la borne supérieure découverte pour chaque année ({@link UpperBoundDiscoveryService})
+ * Les candidats sont générés à la demande (année décroissante, numéro décroissant) ;
+ * le cursor BD est mis à jour à chaque chunk avec la position suivante.
  */
 @Slf4j
 @Component
-public class PreviousYearsLawDocumentReader implements ItemReader<LawDocument> {
+public class PreviousYearsLawDocumentReader extends AbstractCandidateReader {
     
     private static final String CURSOR_TYPE = "fetch-previous";
+    private static final String TYPE = "loi";
     
     private final LawProperties properties;
-    private final FetchResultRepository fetchResultRepository;
+    private final VerifiedDocumentIndexService verifiedDocumentIndexService;
     private final FetchCursorRepository fetchCursorRepository;
     private final LawDocumentFactory documentFactory;
-    private List<LawDocument> documents;
-    private final AtomicInteger currentIndex = new AtomicInteger(0);
+    private final UpperBoundDiscoveryService upperBoundDiscoveryService;
+    private final Map<Integer, Integer> scanLimits = new ConcurrentHashMap<>();
+    private VerifiedDocumentIndexService.Index verifiedDocuments;
+    private int anchorYear;
     
     public PreviousYearsLawDocumentReader(LawProperties properties, 
-                                          FetchResultRepository fetchResultRepository,
+                                          VerifiedDocumentIndexService verifiedDocumentIndexService,
                                           FetchCursorRepository fetchCursorRepository,
-                                          LawDocumentFactory documentFactory) {
+                                          LawDocumentFactory documentFactory,
+                                          UpperBoundDiscoveryService upperBoundDiscoveryService) {
         this.properties = properties;
-        this.fetchResultRepository = fetchResultRepository;
+        this.verifiedDocumentIndexService = verifiedDocumentIndexService;
         this.fetchCursorRepository = fetchCursorRepository;
         this.documentFactory = documentFactory;
+        this.upperBoundDiscoveryService = upperBoundDiscoveryService;
     }
     
     @Override
-    public synchronized LawDocument read() {
-        if (documents == null) {
-            documents = generateDocuments();
-            log.info("Generated {} documents for previous years (optimized scan)", documents.size());
-        }
-        
-        int index = currentIndex.getAndIncrement();
-        if (index < documents.size()) {
-            return documents.get(index);
-        }
+    protected void initialize() {
+        anchorYear = Calendar.getInstance().get(Calendar.YEAR) - 1;
+        scanLimits.clear();
         
-        return null; // End of data
+        // Charger l'index de TOUS les documents déjà vérifiés en BD (found + plages not_found)
+        verifiedDocuments = verifiedDocumentIndexService.loadVerified(TYPE);
     }
     
-    private List<LawDocument> generateDocuments() {
-        List<LawDocument> docs = new ArrayList<>();
-        
-        // Charger TOUS les documentIds déjà en BD (found + not_found)
-        Set<String> verifiedDocuments = new HashSet<>(fetchResultRepository.findAllDocumentIds());
-        
-        log.info("Loaded {} documents already verified in DB (will skip these)", verifiedDocuments.size());
-        
+    @Override
+    protected long size() {
+        return (long) Math.max(0, anchorYear - properties.getEndYear() + 1) * properties.getMaxNumberPerYear();
+    }
+    
+    @Override
+    protected Position position(long ordinal) {
+        int max = properties.getMaxNumberPerYear();
+        return new Position(TYPE, anchorYear - (int) (ordinal / max), max - (int) (ordinal % max));
+    }
+    
+    @Override
+    protected long ordinal(Position position) {
+        int max = properties.getMaxNumberPerYear();
+        int number = Math.min(Math.max(position.getNumber(), 1), max);
+        return (long) (anchorYear - position.getYear()) * max + (max - number);
+    }
+    
+    @Override
+    protected long startOrdinal() {
         // Charger le cursor (dernière position)
         int[] cursor = loadCursor();
-        int startYear = cursor[0];
-        int startNumber = cursor[1];
-        
-        log.info("Cursor position: year={}, number={}", startYear, startNumber);
         log.info("Scanning from year {} number {} down to year {} (max {} items)", 
-            startYear, startNumber, properties.getEndYear(), properties.getBatch().getMaxItemsToFetchPrevious());
-        
-        // Générer les documents et récupérer la dernière position
-        int[] result = scanDocuments(docs, verifiedDocuments, startYear, startNumber);
-        int lastYear = result[0];
-        int lastNumber = result[1];
-        int skippedCount = result[2];
-        
-        // Sauvegarder le nouveau cursor (position suivante)
-        saveNextCursorPosition(lastYear, lastNumber);
-        
-        log.info("Skipped {} already verified documents (found + not_found)", skippedCount);
-        
-        // Afficher la plage d'URLs surveillée
-        if (!docs.isEmpty()) {
-            LawDocument first = docs.get(0);
-            LawDocument last = docs.get(docs.size() - 1);
-            log.info("URL range monitored: {} (loi-{}-{}) → {} (loi-{}-{})", 
-                first.getUrl(), first.getYear(), first.getNumber(),
-                last.getUrl(), last.getYear(), last.getNumber());
-        }
-        
-        return docs;
+            cursor[0], cursor[1], properties.getEndYear(), maxItems());
+        return Math.max(0, ordinal(new Position(TYPE, cursor[0], cursor[1])));
     }
     
-    public void reset() {
-        currentIndex.set(0);
-        documents = null;
+    @Override
+    protected boolean accept(Position position) {
+        // Scan dense limité à la borne découverte (+ marge) : la queue vide de l'année est ignorée
+        int scanLimit = scanLimits.computeIfAbsent(position.getYear(),
+            year -> upperBoundDiscoveryService.scanLimit(TYPE, year, verifiedDocuments));
+        return position.getNumber() <= scanLimit
+            && !verifiedDocuments.isVerified(position.getYear(), position.getNumber());
     }
     
-    /**
-     * Scan et génère les documents à partir du cursor
-     * @return [lastYear, lastNumber, skippedCount]
-     */
-    private int[] scanDocuments(List<LawDocument> docs, Set<String> verifiedDocuments, int startYear, int startNumber) {
-        int maxItems = properties.getBatch().getMaxItemsToFetchPrevious();
-        int lastYear = startYear;
-        int lastNumber = startNumber;
-        int skippedCount = 0;
-        boolean limitReached = false;
-        
-        for (int year = startYear; year >= properties.getEndYear() && !limitReached; year--) {
-            int startNum = (year == startYear) ? startNumber : properties.getMaxNumberPerYear();
-            
-            for (int number = startNum; number >= 1; number--) {
-                lastYear = year;
-                lastNumber = number;
-                
-                String loiDocId = String.format("loi-%d-%d", year, number);
-                if (!verifiedDocuments.contains(loiDocId)) {
-                    docs.add(documentFactory.create("loi", year, number));
-                    
-                    if (docs.size() >= maxItems) {
-                        log.info("Reached max items limit: {}", maxItems);
-                        limitReached = true;
-                        break;
-                    }
-                } else {
-                    skippedCount++;
-                }
-            }
-        }
-        
-        return new int[]{lastYear, lastNumber, skippedCount};
+    @Override
+    protected LawDocument createDocument(Position position) {
+        return documentFactory.create(position.getType(), position.getYear(), position.getNumber());
     }
     
-    /**
-     * Calcule et sauvegarde la position suivante du cursor
-     */
-    private void saveNextCursorPosition(int lastYear, int lastNumber) {
-        int nextYear = lastYear;
-        int nextNumber = lastNumber - 1;
-        if (nextNumber < 1) {
-            nextYear = lastYear - 1;
-            nextNumber = properties.getMaxNumberPerYear();
+    @Override
+    protected int maxItems() {
+        return properties.getBatch().getMaxItemsToFetchPrevious();
+    }
+    
+    @Override
+    protected void onCheckpoint(Position next) {
+        // Sauvegarder le nouveau cursor (position suivante) ; fin du scan : sous l'année de fin
+        if (next != null) {
+            saveCursor(next.getYear(), next.getNumber());
+        } else {
+            saveCursor(properties.getEndYear() - 1, properties.getMaxNumberPerYear());
         }
-        saveCursor(nextYear, nextNumber);
     }
     
     /**
@@ -0,0 +1,44 @@
+package bj.gouv.sgg.batch.reader;
+
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.model.FetchResult;
+import bj.gouv.sgg.repository.FetchResultRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ItemReader;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Reader des documents téléchargés à revérifier : jamais revalidés ou revalidés il y a plus de
+ * minIntervalDays, limités à batchSize par exécution (les plus anciens d'abord)
+ */
+@Slf4j
+@Component
+@StepScope
+@RequiredArgsConstructor
+public class RevalidationReader implements ItemReader<FetchResult> {
+    
+    private final FetchResultRepository fetchResultRepository;
+    private final LawProperties properties;
+    private Iterator<FetchResult> iterator;
+    
+    @Override
+    public FetchResult read() {
+        if (iterator == null) {
+            LawProperties.Revalidation config = properties.getRevalidation();
+            List<FetchResult> due = fetchResultRepository.findRevalidationCandidates(
+                LocalDateTime.now().minusDays(config.getMinIntervalDays()),
+                PageRequest.of(0, Math.max(1, config.getBatchSize())));
+            log.info("Revalidating {} downloaded documents", due.size());
+            iterator = due.iterator();
+        }
+        
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+}
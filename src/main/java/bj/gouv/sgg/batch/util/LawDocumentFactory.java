@@ -34,6 +34,32 @@ public class LawDocumentFactory {
             .build();
     }
 
+    /**
+     * URL de la variante paddée d'un numéro 1-99 (2 chiffres pour 1-9, 3 chiffres pour 10-99)
+     * @return null si le numéro n'a pas de variante paddée
+     */
+    public String paddedUrl(String type, int year, int number) {
+        int digits = paddingDigits(number);
+        if (digits == 0) {
+            return null;
+        }
+        String paddedNumber = String.format("%0" + digits + "d", number);
+        return String.format("%s/%s-%d-%s/download", properties.getBaseUrl(), type, year, paddedNumber);
+    }
+
+    /**
+     * @return nombre de chiffres du format paddé (2 pour 1-9, 3 pour 10-99), 0 si pas de padding
+     */
+    public static int paddingDigits(int number) {
+        if (number >= 1 && number <= 9) {
+            return 2;
+        }
+        if (number >= 10 && number <= 99) {
+            return 3;
+        }
+        return 0;
+    }
+
     /**
      * Crée un LawDocument à partir d'un documentId
      * @param documentId Format: type-year-number
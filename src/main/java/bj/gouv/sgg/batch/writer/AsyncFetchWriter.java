@@ -0,0 +1,50 @@
+package bj.gouv.sgg.batch.writer;
+
+import bj.gouv.sgg.model.LawDocument;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Writer qui attend la fin des sondes asynchrones d'un chunk
+ * puis délègue les documents résolus à {@link FetchWriter}.
+ * Les sondes en échec (rate limit, erreur réseau) arrivent en FAILED et sont différées par FetchWriter.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AsyncFetchWriter implements ItemWriter<Future<LawDocument>> {
+
+    private final FetchWriter fetchWriter;
+
+    @Override
+    public void write(Chunk<? extends Future<LawDocument>> chunk) throws Exception {
+        Chunk<LawDocument> resolved = new Chunk<>();
+        for (Future<LawDocument> future : chunk) {
+            LawDocument document = unwrap(future);
+            if (document != null) {
+                resolved.add(document);
+            }
+        }
+        
+        if (!resolved.isEmpty()) {
+            fetchWriter.write(resolved);
+        }
+    }
+
+    private LawDocument unwrap(Future<LawDocument> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
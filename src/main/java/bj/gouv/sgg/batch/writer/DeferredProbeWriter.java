@@ -0,0 +1,38 @@
+package bj.gouv.sgg.batch.writer;
+
+import bj.gouv.sgg.model.LawDocument;
+import bj.gouv.sgg.service.DeferredProbeService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Writer du job de drainage : enregistre les résultats via {@link FetchWriter}
+ * (un nouvel échec replanifie la sonde avec un délai doublé) puis retire de la file
+ * les documents résolus
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DeferredProbeWriter implements ItemWriter<LawDocument> {
+    
+    private final FetchWriter fetchWriter;
+    private final DeferredProbeService deferredProbeService;
+    
+    @Override
+    public void write(Chunk<? extends LawDocument> chunk) throws Exception {
+        fetchWriter.write(chunk);
+        
+        List<LawDocument> resolved = chunk.getItems().stream()
+            .filter(document -> document.getStatus() != LawDocument.ProcessingStatus.FAILED)
+            .map(LawDocument.class::cast)
+            .toList();
+        if (!resolved.isEmpty()) {
+            deferredProbeService.resolve(resolved);
+        }
+    }
+}
@@ -3,6 +3,8 @@ package bj.gouv.sgg.batch.writer;
 import bj.gouv.sgg.model.FetchResult;
 import bj.gouv.sgg.model.LawDocument;
 import bj.gouv.sgg.repository.FetchResultRepository;
+import bj.gouv.sgg.service.DeferredProbeService;
+import bj.gouv.sgg.service.FileStorageService;
 import bj.gouv.sgg.service.NotFoundRangeService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -10,6 +12,9 @@ import org.springframework.batch.item.Chunk;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -18,6 +23,9 @@ import java.util.List;
  * Writer spécialisé pour les fetch results
  * - Documents FOUND → fetch_results (INSERT-ONLY)
  * - Documents NOT_FOUND → fetch_not_found_ranges (consolidés en plages)
+ * - Documents FAILED (429, erreur réseau) → deferred_probes (re-sondés plus tard)
+ * - Mode fusionné : le PDF déjà téléchargé par la sonde est publié, le document est enregistré DOWNLOADED
+ * Pas de synchronized : les plages NOT_FOUND sont fusionnées en mémoire par {@link NotFoundRangeService}
  */
 @Slf4j
 @Component
@@ -26,24 +34,32 @@ public class FetchWriter implements ItemWriter<LawDocument> {
     
     private final FetchResultRepository repository;
     private final NotFoundRangeService notFoundRangeService;
+    private final DeferredProbeService deferredProbeService;
+    private final FileStorageService fileStorageService;
     
     @Override
-    public synchronized void write(Chunk<? extends LawDocument> chunk) throws Exception {
+    public void write(Chunk<? extends LawDocument> chunk) throws Exception {
         List<FetchResult> foundDocuments = new ArrayList<>();
         List<LawDocument> notFoundDocuments = new ArrayList<>();
+        List<LawDocument> failedDocuments = new ArrayList<>();
         int newFoundCount = 0;
         int newNotFoundCount = 0;
         int skippedCount = 0;
+        int downloadedCount = 0;
         
         for (LawDocument document : chunk) {
             // Vérifier si déjà existant (INSERT-ONLY, pas d'UPDATE)
             if (repository.existsByDocumentId(document.getDocumentId())) {
                 log.debug("Already fetched, skipping: {}", document.getDocumentId());
+                discardFusedDownload(document);
                 skippedCount++;
                 continue;
             }
             
-            if (document.isExists()) {
+            if (document.getStatus() == LawDocument.ProcessingStatus.FAILED) {
+                // Sonde non concluante → file des sondes différées
+                failedDocuments.add(document);
+            } else if (document.isExists()) {
                 // Document FOUND → Sauvegarder dans fetch_results
                 FetchResult result = FetchResult.builder()
                     .documentId(document.getDocumentId())
@@ -56,6 +72,15 @@ public class FetchWriter implements ItemWriter<LawDocument> {
                     .errorMessage(null)
                     .build();
                 
+                if (publishFusedDownload(document)) {
+                    result.setStatus("DOWNLOADED");
+                    result.setSha256(document.getSha256());
+                    result.setEtag(document.getEtag());
+                    result.setLastModified(document.getLastModified());
+                    result.setContentLength(pdfSize(document));
+                    result.setRevalidatedAt(LocalDateTime.now());
+                    downloadedCount++;
+                }
                 foundDocuments.add(result);
                 newFoundCount++;
                 log.debug("New FOUND document: {}", document.getDocumentId());
@@ -72,15 +97,57 @@ public class FetchWriter implements ItemWriter<LawDocument> {
             repository.saveAll(foundDocuments);
         }
         
-        // Consolidation des plages NOT_FOUND (simple, sans consolidation globale post-chunk)
+        // Consolidation des plages NOT_FOUND en mémoire, puis écriture du diff net dans la transaction du chunk
         if (!notFoundDocuments.isEmpty()) {
             notFoundRangeService.addNotFoundDocuments(notFoundDocuments);
+            notFoundRangeService.flush();
+        }
+        
+        if (!failedDocuments.isEmpty()) {
+            deferredProbeService.defer(failedDocuments);
         }
         
         // Log récapitulatif
-        if (newFoundCount > 0 || newNotFoundCount > 0 || skippedCount > 0) {
-            log.info("Saved {} FOUND, {} NOT_FOUND consolidated to ranges ({} skipped)", 
-                newFoundCount, newNotFoundCount, skippedCount);
+        if (newFoundCount > 0 || newNotFoundCount > 0 || skippedCount > 0 || !failedDocuments.isEmpty()) {
+            log.info("Saved {} FOUND ({} downloaded), {} NOT_FOUND consolidated to ranges, {} deferred ({} skipped)", 
+                newFoundCount, downloadedCount, newNotFoundCount, failedDocuments.size(), skippedCount);
+        }
+    }
+    
+    /**
+     * Publie le PDF téléchargé par une sonde fusionnée (fichier temporaire → stockage par contenu)
+     * @return false si le document n'a pas été téléchargé par la sonde ou si la publication a échoué
+     *         (il reste alors FETCHED et sera téléchargé par le job de download)
+     */
+    private boolean publishFusedDownload(LawDocument document) {
+        if (document.getPdfPath() == null || document.getSha256() == null) {
+            return false;
+        }
+        try {
+            Path pdfFile = fileStorageService.commitPdf(document.getType(), document.getDocumentId(),
+                Path.of(document.getPdfPath()), document.getSha256());
+            document.setPdfPath(pdfFile.toString());
+            document.setStatus(LawDocument.ProcessingStatus.DOWNLOADED);
+            return true;
+        } catch (IOException e) {
+            log.warn("Failed to publish fused download for {}: {}", document.getDocumentId(), e.getMessage());
+            discardFusedDownload(document);
+            return false;
+        }
+    }
+    
+    private Long pdfSize(LawDocument document) {
+        try {
+            return Files.size(Path.of(document.getPdfPath()));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    private void discardFusedDownload(LawDocument document) {
+        if (document.getPdfPath() != null && document.getPdfPath().endsWith(".part")) {
+            fileStorageService.deleteQuietly(Path.of(document.getPdfPath()));
+            document.setPdfPath(null);
         }
     }
 }
@@ -3,14 +3,27 @@ package bj.gouv.sgg.batch.writer;
 import bj.gouv.sgg.model.LawDocument;
 import bj.gouv.sgg.repository.FetchResultRepository;
 import bj.gouv.sgg.service.FileStorageService;
+import bj.gouv.sgg.service.TextLayerService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.item.Chunk;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Writer qui enregistre les PDFs sur disque et met à jour le statut dans fetch_results.
+ * Writer qui publie les PDFs téléchargés (stockage adressé par contenu, voir {@link FileStorageService#commitPdf})
+ * et met à jour le statut, le SHA-256 et les validateurs HTTP dans fetch_results.
+ * Les PDFs à couche texte exploitable sont extraits après le commit du chunk ({@link TextLayerService}) et ne passent
+ * pas par ocrJob : l'extraction PDFBox ne retient ni la transaction ni sa connexion.
  */
 @Slf4j
 @Component
@@ -19,26 +32,79 @@ public class FileDownloadWriter implements ItemWriter<LawDocument> {
 
     private final FileStorageService fileStorageService;
     private final FetchResultRepository fetchResultRepository;
+    private final TextLayerService textLayerService;
 
     @Override
     public void write(Chunk<? extends LawDocument> chunk) throws Exception {
         int saved = 0;
         int skipped = 0;
+        List<LawDocument> published = new ArrayList<>();
         for (LawDocument doc : chunk) {
-            boolean actionable = doc != null && doc.getPdfContent() != null && doc.getPdfContent().length > 0
-                    && !fileStorageService.pdfExists(doc.getType(), doc.getDocumentId());
-            if (!actionable) {
+            if (doc == null || doc.getPdfPath() == null || !Files.exists(Path.of(doc.getPdfPath()))) {
+                skipped++;
+            } else if (fileStorageService.pdfExists(doc.getType(), doc.getDocumentId())) {
+                fileStorageService.deleteQuietly(Path.of(doc.getPdfPath()));
+                markDownloaded(doc);
                 skipped++;
             } else {
-                fileStorageService.savePdf(doc.getType(), doc.getDocumentId(), doc.getPdfContent());
-                fetchResultRepository.findByDocumentId(doc.getDocumentId()).ifPresent(fr -> {
-                    fr.setStatus("DOWNLOADED");
-                    fetchResultRepository.save(fr);
-                });
+                long size = Files.size(Path.of(doc.getPdfPath()));
+                Path pdfFile = fileStorageService.commitPdf(doc.getType(), doc.getDocumentId(),
+                    Path.of(doc.getPdfPath()), doc.getSha256());
+                doc.setPdfPath(pdfFile.toString());
+                markDownloaded(doc);
                 saved++;
-                log.info("PDF enregistré sur disque: {} ({} bytes)", doc.getDocumentId(), doc.getPdfContent().length);
+                published.add(doc);
+                log.info("PDF enregistré sur disque: {} ({} bytes, sha256={})", doc.getDocumentId(), size, doc.getSha256());
             }
         }
         log.info("DownloadWriter: saved={} skipped={}", saved, skipped);
+        extractTextLayerAfterCommit(published);
+    }
+    
+    /**
+     * Voie rapide des PDFs textuels une fois le statut DOWNLOADED commité (immédiatement hors transaction)
+     * Après un rollback rien n'est extrait : le document reste dans la file OCR.
+     */
+    private void extractTextLayerAfterCommit(List<LawDocument> published) {
+        if (published.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            extractTextLayer(published);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                extractTextLayer(published);
+            }
+        });
+    }
+    
+    private void extractTextLayer(List<LawDocument> published) {
+        int textNative = 0;
+        for (LawDocument doc : published) {
+            if (textLayerService.extractIfTextNative(doc.getType(), doc.getDocumentId(), doc.getSha256())) {
+                textNative++;
+            }
+        }
+        log.info("DownloadWriter text layer: published={} textNative={}", published.size(), textNative);
+    }
+    
+    private void markDownloaded(LawDocument doc) throws IOException {
+        Long contentLength = fileStorageService.pdfExists(doc.getType(), doc.getDocumentId())
+            ? Files.size(fileStorageService.pdfPath(doc.getType(), doc.getDocumentId())) : null;
+        fetchResultRepository.findByDocumentId(doc.getDocumentId()).ifPresent(fr -> {
+            fr.setStatus("DOWNLOADED");
+            if (doc.getSha256() != null) {
+                // Nouveau téléchargement : les validateurs servent de référence à la revalidation
+                fr.setSha256(doc.getSha256());
+                fr.setEtag(doc.getEtag());
+                fr.setLastModified(doc.getLastModified());
+                fr.setContentLength(contentLength);
+                fr.setRevalidatedAt(LocalDateTime.now());
+            }
+            fetchResultRepository.save(fr);
+        });
     }
 }
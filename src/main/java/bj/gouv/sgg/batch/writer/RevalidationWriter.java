@@ -0,0 +1,26 @@
+package bj.gouv.sgg.batch.writer;
+
+import bj.gouv.sgg.model.FetchResult;
+import bj.gouv.sgg.repository.FetchResultRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writer du job de revalidation : enregistre validateurs, hash et date de vérification
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RevalidationWriter implements ItemWriter<FetchResult> {
+    
+    private final FetchResultRepository fetchResultRepository;
+    
+    @Override
+    public void write(Chunk<? extends FetchResult> chunk) {
+        fetchResultRepository.saveAll(chunk.getItems());
+        log.debug("Saved {} revalidated documents", chunk.size());
+    }
+}
@@ -1,11 +1,13 @@
 package bj.gouv.sgg.config;
 
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.springframework.batch.core.launch.JobLauncher;
 import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 /**
@@ -27,10 +29,10 @@ public class BatchConfiguration {
     }
     
     /**
-     * RestTemplate pour les appels HTTP
+     * RestTemplate pour les appels HTTP (adossé au pool de connexions partagé)
      */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(CloseableHttpClient upstreamHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(upstreamHttpClient));
     }
 }
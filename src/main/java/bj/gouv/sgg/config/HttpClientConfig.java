@@ -0,0 +1,197 @@
+package bj.gouv.sgg.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Client HTTP partagé pour tous les appels vers sgg.gouv.bj.
+ * - Pool de connexions keep-alive (évite un handshake TCP+TLS par requête)
+ * - Limite par hôte (max-connections-per-route)
+ * - Timeouts connexion/lecture issus de law.http.timeout
+ * - Métriques du pool exposées via Micrometer (law.http.pool.*)
+ * Un second client, asynchrone (non bloquant), sert aux sondes HEAD des steps de fetch :
+ * le nombre de requêtes en vol ne dépend plus du nombre de threads batch.
+ * Les sondes fusionnées (GET écrit sur disque) ont leur propre client et leurs propres threads I/O :
+ * une écriture disque lente ne retarde jamais les sondes HEAD.
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class HttpClientConfig {
+
+    private final LawProperties properties;
+
+    @Bean
+    public PoolingHttpClientConnectionManager upstreamConnectionManager() {
+        LawProperties.Http http = properties.getHttp();
+        Timeout timeout = Timeout.ofMilliseconds(http.getTimeout());
+
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+            .setConnectTimeout(timeout)
+            .setSocketTimeout(timeout)
+            .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+            .setTimeToLive(TimeValue.ofMinutes(10))
+            .build();
+
+        log.info("HTTP pool configuration: maxConnections={}, maxConnectionsPerRoute={}, timeoutMs={}, keepAliveSeconds={}",
+                 http.getMaxConnections(), http.getMaxConnectionsPerRoute(), http.getTimeout(), http.getKeepAliveSeconds());
+
+        return PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(http.getMaxConnections())
+            .setMaxConnPerRoute(http.getMaxConnectionsPerRoute())
+            .setDefaultConnectionConfig(connectionConfig)
+            .build();
+    }
+
+    @Bean
+    public CloseableHttpClient upstreamHttpClient(PoolingHttpClientConnectionManager upstreamConnectionManager) {
+        LawProperties.Http http = properties.getHttp();
+
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectionRequestTimeout(Timeout.ofMilliseconds(http.getTimeout()))
+            .setResponseTimeout(Timeout.ofMilliseconds(http.getTimeout()))
+            .setConnectionKeepAlive(TimeValue.ofSeconds(http.getKeepAliveSeconds()))
+            .build();
+
+        return HttpClients.custom()
+            .setConnectionManager(upstreamConnectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .setUserAgent(properties.getUserAgent())
+            .evictExpiredConnections()
+            .evictIdleConnections(TimeValue.ofSeconds(http.getKeepAliveSeconds()))
+            .build();
+    }
+
+    @Bean
+    public PoolingAsyncClientConnectionManager upstreamAsyncConnectionManager() {
+        return asyncConnectionManager();
+    }
+
+    @Bean
+    public CloseableHttpAsyncClient upstreamAsyncHttpClient(PoolingAsyncClientConnectionManager upstreamAsyncConnectionManager) {
+        // Un seul thread I/O suffit : les requêtes sont multiplexées sans bloquer de thread
+        CloseableHttpAsyncClient client = asyncClient(upstreamAsyncConnectionManager, 1);
+        log.info("Async HTTP client started: maxInFlight={}, maxConnectionsPerRoute={}",
+                 properties.getHttp().getMaxInFlight(), properties.getHttp().getMaxConnectionsPerRoute());
+        return client;
+    }
+
+    @Bean
+    public PoolingAsyncClientConnectionManager upstreamFusedAsyncConnectionManager() {
+        return asyncConnectionManager();
+    }
+
+    /**
+     * Client des sondes fusionnées : le corps des réponses 200 est écrit sur disque depuis les threads I/O
+     */
+    @Bean
+    public CloseableHttpAsyncClient upstreamFusedAsyncHttpClient(PoolingAsyncClientConnectionManager upstreamFusedAsyncConnectionManager) {
+        int ioThreads = Math.max(1, properties.getDownload().getFusedIoThreads());
+        CloseableHttpAsyncClient client = asyncClient(upstreamFusedAsyncConnectionManager, ioThreads);
+        log.info("Fused probe HTTP client started: ioThreads={}", ioThreads);
+        return client;
+    }
+
+    private PoolingAsyncClientConnectionManager asyncConnectionManager() {
+        LawProperties.Http http = properties.getHttp();
+        Timeout timeout = Timeout.ofMilliseconds(http.getTimeout());
+
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+            .setConnectTimeout(timeout)
+            .setSocketTimeout(timeout)
+            .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+            .setTimeToLive(TimeValue.ofMinutes(10))
+            .build();
+
+        // Une connexion HTTP/1.1 par sonde en vol : le pool total est dimensionné sur max-in-flight,
+        // la limite par hôte reste max-connections-per-route (au-delà, les sondes attendent une connexion)
+        return PoolingAsyncClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(http.getMaxInFlight())
+            .setMaxConnPerRoute(Math.min(http.getMaxInFlight(), http.getMaxConnectionsPerRoute()))
+            .setDefaultConnectionConfig(connectionConfig)
+            .build();
+    }
+
+    private CloseableHttpAsyncClient asyncClient(PoolingAsyncClientConnectionManager connectionManager, int ioThreads) {
+        LawProperties.Http http = properties.getHttp();
+
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectionRequestTimeout(Timeout.ofMilliseconds(http.getTimeout()))
+            .setResponseTimeout(Timeout.ofMilliseconds(http.getTimeout()))
+            .setConnectionKeepAlive(TimeValue.ofSeconds(http.getKeepAliveSeconds()))
+            .build();
+
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+            .setIoThreadCount(ioThreads)
+            .setSoTimeout(Timeout.ofMilliseconds(http.getTimeout()))
+            .build();
+
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .setIOReactorConfig(ioReactorConfig)
+            .setUserAgent(properties.getUserAgent())
+            .evictExpiredConnections()
+            .evictIdleConnections(TimeValue.ofSeconds(http.getKeepAliveSeconds()))
+            .build();
+        client.start();
+        return client;
+    }
+
+    /**
+     * Expose l'état du pool (connexions louées, disponibles, en attente) dans /actuator/metrics
+     */
+    @Bean
+    public MeterBinder upstreamConnectionPoolMetrics(PoolingHttpClientConnectionManager upstreamConnectionManager) {
+        return registry -> {
+            Gauge.builder("law.http.pool.leased", upstreamConnectionManager, m -> m.getTotalStats().getLeased())
+                .description("Connexions HTTP en cours d'utilisation")
+                .register(registry);
+            Gauge.builder("law.http.pool.available", upstreamConnectionManager, m -> m.getTotalStats().getAvailable())
+                .description("Connexions HTTP keep-alive disponibles")
+                .register(registry);
+            Gauge.builder("law.http.pool.pending", upstreamConnectionManager, m -> m.getTotalStats().getPending())
+                .description("Requêtes en attente d'une connexion")
+                .register(registry);
+            Gauge.builder("law.http.pool.max", upstreamConnectionManager, m -> m.getTotalStats().getMax())
+                .description("Taille maximale du pool")
+                .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder upstreamAsyncConnectionPoolMetrics(PoolingAsyncClientConnectionManager upstreamAsyncConnectionManager) {
+        return registry -> {
+            Gauge.builder("law.http.async.pool.leased", upstreamAsyncConnectionManager, m -> m.getTotalStats().getLeased())
+                .description("Sondes HTTP asynchrones en vol")
+                .register(registry);
+            Gauge.builder("law.http.async.pool.pending", upstreamAsyncConnectionManager, m -> m.getTotalStats().getPending())
+                .description("Sondes en attente d'une connexion")
+                .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder upstreamFusedConnectionPoolMetrics(PoolingAsyncClientConnectionManager upstreamFusedAsyncConnectionManager) {
+        return registry -> Gauge.builder("law.http.fused.pool.leased", upstreamFusedAsyncConnectionManager, m -> m.getTotalStats().getLeased())
+            .description("Sondes fusionnées (GET + écriture disque) en vol")
+            .register(registry);
+    }
+}
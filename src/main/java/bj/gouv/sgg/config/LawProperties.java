@@ -1,6 +1,8 @@
 package bj.gouv.sgg.config;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
@@ -16,6 +18,16 @@ public class LawProperties {
     
     private Directories directories = new Directories();
     private Http http = new Http();
+    private RateLimit rateLimit = new RateLimit();
+    private Padding padding = new Padding();
+    private Frontier frontier = new Frontier();
+    private Deferred deferred = new Deferred();
+    private Listing listing = new Listing();
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private Download download = new Download();
+    private Storage storage = new Storage();
+    private Revalidation revalidation = new Revalidation();
+    private BulkImport bulkImport = new BulkImport();
     private Ocr ocr = new Ocr();
     private Batch batch = new Batch();
     
@@ -29,6 +41,103 @@ public class LawProperties {
     public static class Http {
         private int timeout;
         private int maxRetries;
+        private int maxConnections = 20; // Taille totale du pool de connexions partagé
+        private int maxConnectionsPerRoute = 8; // Connexions simultanées max vers un même hôte
+        private int keepAliveSeconds = 60; // Durée de réutilisation d'une connexion inactive
+        private int maxInFlight = 32; // Requêtes HEAD asynchrones simultanées (indépendant du nombre de CPU)
+    }
+    
+    @Data
+    public static class RateLimit {
+        private int maxRetryAfterSeconds = 300; // Plafond appliqué au Retry-After reçu (suspension maximale d'un bucket)
+        private Bucket probe = new Bucket(5.0, 0.2, 50.0, 0.5, 0.5, 5); // Sondes HEAD
+        private Bucket download = new Bucket(1.0, 0.1, 5.0, 0.1, 0.5, 2); // Téléchargements PDF (GET)
+        
+        @Data
+        @NoArgsConstructor
+        @AllArgsConstructor
+        public static class Bucket {
+            private double initialRate; // Débit de départ (requêtes/s)
+            private double minRate; // Plancher après réductions successives
+            private double maxRate; // Plafond atteint par augmentation additive
+            private double additiveIncrease; // Gain de débit (req/s) par seconde sans 429
+            private double decreaseFactor; // Facteur multiplicatif appliqué sur 429
+            private int burst; // Capacité du bucket (rafale autorisée)
+        }
+    }
+    
+    @Data
+    public static class Padding {
+        private boolean raceEnabled = true; // Sonder les deux variantes en parallèle quand le modèle hésite
+        private double raceConfidenceThreshold = 0.75; // En dessous de cette probabilité, les deux variantes sont sondées
+    }
+    
+    @Data
+    public static class Frontier {
+        private boolean enabled = true; // Année courante : ne sonder que la frontière + les trous, sauf vérification de la queue
+        private int window = 30; // Numéros sondés au-dessus du plus grand numéro trouvé
+        private int tailCheckMinHours = 12; // Intervalle initial de vérification de la queue (jusqu'à maxNumberPerYear)
+        private int tailCheckMaxHours = 168; // Intervalle maximal (doublé à chaque vérification sans découverte)
+        private String cron = "0 */15 * * * *"; // Planning du job fetch-current (lu par BatchJobScheduler)
+    }
+    
+    @Data
+    public static class Deferred {
+        private int baseDelayMinutes = 15; // Délai avant la première nouvelle sonde (doublé à chaque échec)
+        private int maxDelayHours = 24; // Délai maximal entre deux sondes d'un même document
+        private int drainBatchSize = 50; // Sondes différées traitées par exécution du job de drainage
+        private int maxAttempts = 12; // Au-delà, la sonde est abandonnée (conservée pour diagnostic, plus rejouée)
+        private String cron = "0 50 * * * *"; // Planning du job de drainage (lu par BatchJobScheduler)
+    }
+    
+    @Data
+    public static class Listing {
+        private boolean enabled = false; // Découverte par les pages de liste du site (avant le scan brute-force), à activer explicitement
+        private String urlTemplate = "https://sgg.gouv.bj/doc/?page={page}"; // {page} = numéro de page (à partir de 1)
+        private int maxPages = 200; // Nombre maximal de pages parcourues par exécution
+        private int emptyPagesBeforeStop = 2; // Arrêt après N pages consécutives sans nouveau document
+        private String cron = "0 10 */6 * * *"; // Planning du job de découverte (lu par BatchJobScheduler)
+    }
+    
+    @Data
+    public static class CircuitBreaker {
+        private boolean enabled = true; // Coupe les appels vers le site quand il est indisponible
+        private int windowSize = 20; // Nombre des derniers appels pris en compte pour le taux d'échec
+        private int minimumCalls = 10; // Appels minimum dans la fenêtre avant de pouvoir ouvrir le circuit
+        private double failureRateThreshold = 0.5; // Taux d'échec (erreur réseau, 5xx) au-delà duquel le circuit s'ouvre
+        private int openSeconds = 300; // Durée d'ouverture avant de laisser passer des appels de test
+        private int halfOpenCalls = 3; // Appels de test réussis nécessaires pour refermer le circuit
+    }
+    
+    @Data
+    public static class Download {
+        private int concurrency = 2; // Téléchargements simultanés (plafonné par http.maxConnectionsPerRoute)
+        private int claimTimeoutMinutes = 60; // Un document réservé (DOWNLOADING) depuis plus longtemps peut être repris
+        private boolean resumeEnabled = true; // Reprise des téléchargements interrompus (Range + If-Range)
+        private int parallelRangeThresholdMb = 0; // Au-delà de cette taille, téléchargement en plages parallèles (0 = désactivé)
+        private int rangeSegments = 4; // Nombre de plages téléchargées en parallèle pour un gros fichier
+        private boolean fusedProbe = false; // Sonde des nouveaux documents par GET : le PDF trouvé est téléchargé dans la même requête
+        private int fusedIoThreads = 4; // Threads I/O du client des sondes fusionnées (les écritures disque y sont faites)
+    }
+    
+    @Data
+    public static class Storage {
+        private boolean blobGcEnabled = true; // Suppression des blobs (PDF, OCR) qu'aucun document ne référence plus
+        private int blobGcMinAgeHours = 24; // Blobs plus récents conservés (publication en cours, fetch_results pas encore à jour)
+        private String blobGcCron = "0 40 4 * * *"; // Planning du nettoyage, en heures creuses (lu par BatchJobScheduler)
+    }
+    
+    @Data
+    public static class Revalidation {
+        private int minIntervalDays = 30; // Délai minimal entre deux vérifications d'un même PDF
+        private int batchSize = 200; // Documents revérifiés par exécution (requêtes conditionnelles, quelques octets si inchangé)
+        private String cron = "0 20 3 * * *"; // Planning du job de revalidation, en heures creuses (lu par BatchJobScheduler)
+    }
+    
+    @Data
+    public static class BulkImport {
+        private int threads = 0; // Workers de hash/validation/publication (0 = nombre de CPU)
+        private int registerBatchSize = 500; // Documents enregistrés par lot dans fetch_results
     }
     
     @Data
@@ -36,6 +145,28 @@ public class LawProperties {
         private String language;
         private int dpi;
         private double qualityThreshold;
+        private int threads = 0; // Moteurs Tesseract préchauffés et pages OCR en parallèle (0 = nombre de CPU)
+        private boolean textLayerFastLane = true; // Au téléchargement, les PDFs à couche texte exploitable sont extraits sans passer par la file OCR
+        private int textLayerSamplePages = 3; // Pages échantillonnées (première, milieu, dernière...) pour classer un PDF
+        private int textLayerMinChars = 200; // Caractères minimum par page échantillonnée pour classer un PDF comme natif (fast lane)
+        private int scannedPageMaxChars = 100; // Page avec images dont la couche texte est plus courte : scan (numéro de page, tampon), OCRisée
+        private Cascade cascade = new Cascade();
+        
+        /**
+         * Cascade OCR : modèle rapide (language) sur toutes les pages, second passage sur les pages peu fiables
+         * Inactive par défaut : il faut un modèle précis (bestLanguage) ou un rendu plus fin (rerenderDpi)
+         */
+        @Data
+        public static class Cascade {
+            private int minConfidence = 70; // MeanTextConf (0-100) minimum du passage rapide
+            private double maxUnrecognizedRate = 0.35; // Taux maximum de mots hors dictionnaire du passage rapide
+            private String bestLanguage = ""; // Modèle précis (ex. fra_best) appliqué à la même image ; vide = aucun
+            private int rerenderDpi = 0; // Sans modèle précis : nouveau rendu des pages rendues (jamais des images natives) ; 0 = aucun
+            
+            public boolean isActive() {
+                return !bestLanguage.isBlank() || rerenderDpi > 0;
+            }
+        }
     }
     
     @Data
@@ -45,5 +176,8 @@ public class LawProperties {
         private int maxItemsToFetchPrevious = 5000; // Nombre maximum de documents à vérifier par exécution de fetch-previous
         private int maxDocumentsToExtract = 100; // Nombre maximum de documents à extraire par exécution
         private int jobTimeoutHours = 2; // Timeout en heures pour considérer un job comme bloqué
+        private boolean boundDiscoveryEnabled = true; // Découverte du dernier numéro d'une année avant le scan dense
+        private int boundGapTolerance = 5; // Numéros consécutifs absents tolérés avant de conclure à la fin de l'année
+        private int boundMargin = 20; // Numéros scannés au-delà de la borne découverte
     }
 }
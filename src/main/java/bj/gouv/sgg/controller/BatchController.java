@@ -18,6 +18,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -51,9 +53,21 @@ public class BatchController {
     @Qualifier("fetchJob")
     private final Job fetchJob;
     
+    @Qualifier("deferredProbeJob")
+    private final Job deferredProbeJob;
+    
+    @Qualifier("listingDiscoveryJob")
+    private final Job listingDiscoveryJob;
+    
     @Qualifier("downloadJob")
     private final Job downloadJob;
     
+    @Qualifier("revalidationJob")
+    private final Job revalidationJob;
+    
+    @Qualifier("bulkImportJob")
+    private final Job bulkImportJob;
+    
     @Qualifier("ocrJob")
     private final Job ocrJob;
     
@@ -111,6 +125,36 @@ public class BatchController {
         return runJob(fetchAllJob, "Fetch All Job");
     }
     
+    /**
+     * Lance le drainage des sondes différées
+     */
+    @Operation(summary = "Rejoue les sondes différées", 
+               description = "Re-sonde les documents dont la vérification a échoué (429, erreur réseau) et arrivés à échéance")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Job démarré avec succès"),
+        @ApiResponse(responseCode = "409", description = "Job déjà en cours d'exécution"),
+        @ApiResponse(responseCode = "500", description = "Erreur interne")
+    })
+    @PostMapping("/deferred-probe")
+    public ResponseEntity<Map<String, Object>> runDeferredProbeJob() {
+        return runJob(deferredProbeJob, "Deferred Probe Job");
+    }
+    
+    /**
+     * Lance la découverte via les pages de liste du site
+     */
+    @Operation(summary = "Découvre les documents via les pages de liste", 
+               description = "Parcourt les pages de liste du site et enregistre les documents référencés sans sonde HEAD")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Job démarré avec succès"),
+        @ApiResponse(responseCode = "409", description = "Job déjà en cours d'exécution"),
+        @ApiResponse(responseCode = "500", description = "Erreur interne")
+    })
+    @PostMapping("/discover")
+    public ResponseEntity<Map<String, Object>> runListingDiscoveryJob() {
+        return runJob(listingDiscoveryJob, "Listing Discovery Job");
+    }
+    
     /**
      * Lance le job de download
      */
@@ -126,6 +170,47 @@ public class BatchController {
         return runJob(downloadJob, "Download Job");
     }
     
+    /**
+     * Lance la revalidation des PDFs téléchargés
+     */
+    @Operation(summary = "Revérifie les PDFs téléchargés", 
+               description = "Envoie des requêtes conditionnelles (ETag/Last-Modified) et re-télécharge les PDFs remplacés sur le site")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Job démarré avec succès"),
+        @ApiResponse(responseCode = "409", description = "Job déjà en cours d'exécution"),
+        @ApiResponse(responseCode = "500", description = "Erreur interne")
+    })
+    @PostMapping("/revalidate")
+    public ResponseEntity<Map<String, Object>> runRevalidationJob() {
+        return runJob(revalidationJob, "Revalidation Job");
+    }
+    
+    /**
+     * Lance l'import hors ligne d'un répertoire ou d'une archive de PDFs
+     */
+    @Operation(summary = "Importe des PDFs hors ligne", 
+               description = "Importe un répertoire, .zip, .tar ou .tar.gz de fichiers {documentId}.pdf sans aucune requête vers le site")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Job démarré avec succès"),
+        @ApiResponse(responseCode = "400", description = "Source introuvable"),
+        @ApiResponse(responseCode = "409", description = "Job déjà en cours d'exécution"),
+        @ApiResponse(responseCode = "500", description = "Erreur interne")
+    })
+    @PostMapping("/import")
+    public ResponseEntity<Map<String, Object>> runBulkImportJob(
+            @Parameter(description = "Chemin (côté serveur) du répertoire ou de l'archive à importer", required = true)
+            @RequestParam String source) {
+        if (source.isBlank() || !Files.exists(Path.of(source))) {
+            return ResponseEntity.badRequest()
+                .body(Map.of(ERROR_KEY, "Source introuvable: " + source));
+        }
+        JobParameters jobParameters = new JobParametersBuilder()
+            .addLong("timestamp", System.currentTimeMillis())
+            .addString("source", source)
+            .toJobParameters();
+        return runJob(bulkImportJob, "Bulk Import Job", jobParameters);
+    }
+    
     /**
      * Lance le job d'extraction OCR
      */
@@ -284,11 +369,13 @@ public class BatchController {
     }
     
     private ResponseEntity<Map<String, Object>> runJob(Job job, String jobDescription) {
+        return runJob(job, jobDescription, new JobParametersBuilder()
+            .addLong("timestamp", System.currentTimeMillis())
+            .toJobParameters());
+    }
+    
+    private ResponseEntity<Map<String, Object>> runJob(Job job, String jobDescription, JobParameters jobParameters) {
         try {
-            JobParameters jobParameters = new JobParametersBuilder()
-                .addLong("timestamp", System.currentTimeMillis())
-                .toJobParameters();
-            
             JobExecution execution = jobLauncher.run(job, jobParameters);
             
             Map<String, Object> response = new HashMap<>();
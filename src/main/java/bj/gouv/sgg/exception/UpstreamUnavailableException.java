@@ -0,0 +1,11 @@
+package bj.gouv.sgg.exception;
+
+/**
+ * Exception levée quand un appel vers le site est refusé car le circuit est ouvert.
+ */
+public class UpstreamUnavailableException extends LawProcessingException {
+    
+    public UpstreamUnavailableException(String message) {
+        super(null, "UPSTREAM_UNAVAILABLE", message);
+    }
+}
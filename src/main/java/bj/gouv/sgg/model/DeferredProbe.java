@@ -0,0 +1,57 @@
+package bj.gouv.sgg.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sonde différée : document dont la vérification a échoué (429 après retries, erreur réseau,
+ * statut inattendu) et qui sera re-sondé par le job de drainage avec un backoff exponentiel
+ * Après deferred.maxAttempts échecs la sonde est abandonnée (abandonedAt renseigné) : conservée
+ * pour diagnostic mais plus jamais rejouée
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "deferred_probes",
+    uniqueConstraints = @UniqueConstraint(columnNames = {"documentType", "year", "number"}),
+    indexes = @Index(name = "idx_deferred_next_attempt", columnList = "nextAttemptAt")
+)
+public class DeferredProbe {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false, length = 20)
+    private String documentType; // "loi" ou "decret"
+    
+    @Column(nullable = false)
+    private Integer year;
+    
+    @Column(nullable = false)
+    private Integer number;
+    
+    @Column(nullable = false)
+    private Integer attempts; // Nombre d'échecs enregistrés
+    
+    @Column(length = 500)
+    private String lastError;
+    
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt; // Pas de nouvelle sonde avant cette date
+    
+    private LocalDateTime abandonedAt; // Non null : nombre maximal de tentatives atteint
+    
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
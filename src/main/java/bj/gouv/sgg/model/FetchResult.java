@@ -16,7 +16,9 @@ import java.time.LocalDateTime;
     @Index(name = "idx_document_id", columnList = "documentId"),
     @Index(name = "idx_document_type_year", columnList = "documentType,year"),
     @Index(name = "idx_status", columnList = "status"),
-    @Index(name = "idx_fetched_at", columnList = "fetchedAt")
+    @Index(name = "idx_fetched_at", columnList = "fetchedAt"),
+    @Index(name = "idx_fetch_sha256", columnList = "sha256"),
+    @Index(name = "idx_fetch_revalidated_at", columnList = "revalidatedAt")
 })
 @Data
 @Builder
@@ -44,7 +46,22 @@ public class FetchResult {
     private String url;
     
     @Column(nullable = false, length = 50)
-    private String status; // "FOUND", "FETCHED"
+    private String status; // "FOUND", "FETCHED", "DOWNLOADING", "DOWNLOADED"
+    
+    private LocalDateTime claimedAt; // Réservation pour téléchargement (status DOWNLOADING)
+    
+    @Column(length = 64)
+    private String sha256; // Hash du PDF téléchargé (clé du blob dans le stockage adressé par contenu)
+    
+    @Column(length = 200)
+    private String etag; // Validateurs HTTP du PDF téléchargé (requêtes conditionnelles de revalidation)
+    
+    @Column(length = 64)
+    private String lastModified;
+    
+    private Long contentLength;
+    
+    private LocalDateTime revalidatedAt; // Dernière vérification que le PDF publié n'a pas changé
     
     @Column(nullable = false)
     private LocalDateTime fetchedAt;
@@ -0,0 +1,56 @@
+package bj.gouv.sgg.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Borne supérieure découverte pour une année : plus grand numéro existant (0 si aucun)
+ * Les numéros au-delà de upperBound + marge ne sont plus sondés par le scan des années précédentes
+ * Pour l'année courante, porte aussi le planning de vérification de la queue (mode frontière) ;
+ * la borne y est provisoire (provisional) : l'année n'est pas close, la découverte sera refaite une fois l'année passée
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "fetch_year_bounds",
+    uniqueConstraints = @UniqueConstraint(columnNames = {"documentType", "year"}),
+    indexes = @Index(name = "idx_bound_type_year", columnList = "documentType,year")
+)
+public class FetchYearBound {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false, length = 20)
+    private String documentType; // "loi" ou "decret"
+    
+    @Column(nullable = false)
+    private Integer year;
+    
+    @Column(nullable = false)
+    private Integer upperBound;
+    
+    @Column(nullable = false)
+    private Integer probeCount; // Nombre de sondes HTTP utilisées pour la découverte
+    
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+    
+    private LocalDateTime tailCheckedAt; // Dernière vérification complète de la queue (année courante)
+    
+    private Integer tailCheckIntervalHours; // Intervalle avant la prochaine vérification (croît tant que la queue est vide)
+    
+    private Boolean provisional; // true : plus grand numéro trouvé par le scan frontière, pas une borne découverte
+    
+    public boolean isFinal() {
+        return !Boolean.TRUE.equals(provisional);
+    }
+}
@@ -14,12 +14,14 @@ public class LawDocument {
     private int year;
     private int number;
     private String url;
-    private String pdfPath;
+    private String pdfPath;     // Fichier PDF (temporaire .part entre le download et le writer)
     private String ocrPath;
     private String sha256;
+    private String etag;         // Validateurs HTTP du PDF téléchargé (revalidation conditionnelle)
+    private String lastModified;
     private boolean exists;
     private ProcessingStatus status;
-    private byte[] pdfContent;  // Contenu PDF téléchargé
+    private String errorMessage; // Cause de l'échec (status FAILED)
     
     public String getDocumentId() {
         return String.format("%s-%d-%d", type, year, number);
@@ -0,0 +1,34 @@
+package bj.gouv.sgg.repository;
+
+import bj.gouv.sgg.model.DeferredProbe;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DeferredProbeRepository extends JpaRepository<DeferredProbe, Long> {
+    
+    /**
+     * Trouve la sonde différée d'un document
+     */
+    Optional<DeferredProbe> findByDocumentTypeAndYearAndNumber(String documentType, Integer year, Integer number);
+    
+    /**
+     * Sondes éligibles (non abandonnées, nextAttemptAt échue), les plus anciennes d'abord
+     */
+    List<DeferredProbe> findByAbandonedAtIsNullAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(LocalDateTime now, Pageable pageable);
+    
+    /**
+     * Nombre de sondes éligibles
+     */
+    long countByAbandonedAtIsNullAndNextAttemptAtLessThanEqual(LocalDateTime now);
+    
+    /**
+     * Nombre de sondes abandonnées
+     */
+    long countByAbandonedAtIsNotNull();
+}
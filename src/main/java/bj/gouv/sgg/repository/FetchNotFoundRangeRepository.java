@@ -37,6 +37,12 @@ public interface FetchNotFoundRangeRepository extends JpaRepository<FetchNotFoun
                                                    @Param("year") Integer year,
                                                    @Param("number") Integer number);
     
+    /**
+     * Projection (année, min, max) des plages NOT_FOUND d'un type
+     */
+    @Query("SELECT r.year, r.numberMin, r.numberMax FROM FetchNotFoundRange r WHERE r.documentType = :documentType")
+    List<Object[]> findYearAndBoundsByType(@Param("documentType") String documentType);
+    
     /**
      * Récupère toutes les plages, triées par type, année et numéro
      */
@@ -1,10 +1,15 @@
 package bj.gouv.sgg.repository;
 
 import bj.gouv.sgg.model.FetchResult;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +24,11 @@ public interface FetchResultRepository extends JpaRepository<FetchResult, Long>
      */
     Optional<FetchResult> findByDocumentId(String documentId);
     
+    /**
+     * Résultats d'un lot de documents (import hors ligne)
+     */
+    List<FetchResult> findByDocumentIdIn(Collection<String> documentIds);
+    
     /**
      * Vérifie si un document existe par son documentId
      */
@@ -63,8 +73,90 @@ public interface FetchResultRepository extends JpaRepository<FetchResult, Long>
     @Query("SELECT f.documentId FROM FetchResult f")
     List<String> findFoundDocumentIds();
     
+    /**
+     * Récupère les couples (numéro, url) des numéros 1-99 d'un type et d'une année
+     * Sert à apprendre la convention de padding utilisée par le site
+     */
+    @Query("SELECT f.number, f.url FROM FetchResult f WHERE f.documentType = :type AND f.year = :year AND f.number < 100")
+    List<Object[]> findSmallNumberUrls(@Param("type") String type, @Param("year") Integer year);
+    
+    /**
+     * Projection (année, numéro) des documents trouvés d'un type
+     * Sert à construire l'index bitmap des documents vérifiés sans charger d'entités ni de chaînes
+     */
+    @Query("SELECT f.year, f.number FROM FetchResult f WHERE f.documentType = :type")
+    List<Object[]> findYearAndNumberByType(@Param("type") String type);
+    
+    /**
+     * Plus grand numéro trouvé pour un type et une année (null si aucun)
+     */
+    @Query("SELECT MAX(f.number) FROM FetchResult f WHERE f.documentType = :type AND f.year = :year")
+    Integer findMaxNumber(@Param("type") String type, @Param("year") Integer year);
+    
     /**
      * Trouve les documents par statut
      */
     List<FetchResult> findByStatus(String status);
+    
+    /**
+     * Documents à télécharger : FETCHED, ou DOWNLOADING dont la réservation a expiré
+     * Du plus récent au plus ancien (year DESC, number DESC)
+     */
+    @Query("SELECT f FROM FetchResult f WHERE f.status = 'FETCHED' " +
+           "OR (f.status = 'DOWNLOADING' AND f.claimedAt < :staleBefore) " +
+           "ORDER BY f.year DESC, f.number DESC")
+    List<FetchResult> findDownloadCandidates(@Param("staleBefore") LocalDateTime staleBefore);
+    
+    /**
+     * Réserve un document pour téléchargement (transition atomique FETCHED → DOWNLOADING)
+     * @return 1 si la réservation est obtenue, 0 si un autre thread/instance l'a déjà
+     */
+    @Modifying
+    @Query("UPDATE FetchResult f SET f.status = 'DOWNLOADING', f.claimedAt = :now " +
+           "WHERE f.id = :id AND (f.status = 'FETCHED' " +
+           "OR (f.status = 'DOWNLOADING' AND f.claimedAt < :staleBefore))")
+    int claimForDownload(@Param("id") Long id, @Param("now") LocalDateTime now,
+                         @Param("staleBefore") LocalDateTime staleBefore);
+    
+    /**
+     * Libère une réservation (téléchargement en échec) : le document redevient FETCHED
+     */
+    @Modifying
+    @Query("UPDATE FetchResult f SET f.status = 'FETCHED', f.claimedAt = null " +
+           "WHERE f.documentId = :documentId AND f.status = 'DOWNLOADING'")
+    int releaseDownloadClaim(@Param("documentId") String documentId);
+    
+    /**
+     * Marque un document comme téléchargé (PDF déjà présent sur disque)
+     */
+    @Modifying
+    @Query("UPDATE FetchResult f SET f.status = 'DOWNLOADED' WHERE f.documentId = :documentId")
+    int markDownloaded(@Param("documentId") String documentId);
+    
+    /**
+     * Documents téléchargés (ou déjà extraits / consolidés) dont le PDF n'a pas été revérifié depuis before
+     * (jamais vérifiés en premier)
+     */
+    @Query("SELECT f FROM FetchResult f WHERE f.status IN ('DOWNLOADED', 'EXTRACTED', 'CONSOLIDATED') " +
+           "AND (f.revalidatedAt IS NULL OR f.revalidatedAt < :before) " +
+           "ORDER BY f.revalidatedAt ASC NULLS FIRST, f.fetchedAt ASC")
+    List<FetchResult> findRevalidationCandidates(@Param("before") LocalDateTime before, Pageable pageable);
+    
+    /**
+     * Hash du PDF d'un document (null si non téléchargé ou téléchargé avant le stockage par contenu)
+     */
+    @Query("SELECT f.sha256 FROM FetchResult f WHERE f.documentId = :documentId")
+    String findSha256ByDocumentId(@Param("documentId") String documentId);
+    
+    /**
+     * Documents dont le PDF a ce contenu (même loi publiée sous plusieurs numéros ou variantes de padding)
+     */
+    @Query("SELECT f.documentId FROM FetchResult f WHERE f.sha256 = :sha256")
+    List<String> findDocumentIdsBySha256(@Param("sha256") String sha256);
+    
+    /**
+     * Hashs des PDFs encore référencés (blobs à conserver lors du nettoyage du stockage)
+     */
+    @Query("SELECT DISTINCT f.sha256 FROM FetchResult f WHERE f.sha256 IS NOT NULL")
+    List<String> findAllSha256();
 }
@@ -0,0 +1,16 @@
+package bj.gouv.sgg.repository;
+
+import bj.gouv.sgg.model.FetchYearBound;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface FetchYearBoundRepository extends JpaRepository<FetchYearBound, Long> {
+    
+    /**
+     * Trouve la borne découverte pour un type et une année
+     */
+    Optional<FetchYearBound> findByDocumentTypeAndYear(String documentType, Integer year);
+}
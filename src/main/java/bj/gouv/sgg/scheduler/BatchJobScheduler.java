@@ -1,5 +1,8 @@
 package bj.gouv.sgg.scheduler;
 
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.service.ContentDeduplicationService;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.core.*;
@@ -15,14 +18,20 @@ import java.util.Set;
  * Scheduler pour les jobs Spring Batch
  * 
  * Planning:
- * - fetch-current: 3 fois/jour (6h, 12h, 18h)
+ * - fetch-current: toutes les 15 minutes (law.frontier.cron, scan frontière léger)
  * - fetch-previous: Toutes les heures à :05
+ * - deferred-probe: Toutes les heures à :50 (law.deferred.cron, sondes en échec)
+ * - listing-discovery: Toutes les 6 heures à :10 (law.listing.cron, pages de liste du site)
  * - download: Toutes les heures à :15
+ * - revalidation: Chaque nuit à 3h20 (law.revalidation.cron, PDFs remplacés sur le site)
  * - ocr: Toutes les heures à :25
  * - extract: Toutes les heures à :35
  * - consolidate: Toutes les heures à :45
+ * - blob-gc: Chaque nuit à 4h40 (law.storage.blob-gc-cron, blobs non référencés ; pas un job Spring Batch)
  * 
  * Les jobs sont espacés de 10 minutes pour éviter les chevauchements
+ * Les jobs qui appellent le site (fetch, deferred, discovery, download, revalidation) ne sont pas lancés
+ * tant que le circuit vers le site est ouvert
  */
 @Slf4j
 @Component
@@ -31,6 +40,9 @@ public class BatchJobScheduler {
     
     private final JobLauncher jobLauncher;
     private final JobExplorer jobExplorer;
+    private final UpstreamCircuitBreaker circuitBreaker;
+    private final ContentDeduplicationService deduplicationService;
+    private final LawProperties properties;
     
     @Qualifier("fetchCurrentJob")
     private final Job fetchCurrentJob;
@@ -38,9 +50,18 @@ public class BatchJobScheduler {
     @Qualifier("fetchPreviousJob")
     private final Job fetchPreviousJob;
     
+    @Qualifier("deferredProbeJob")
+    private final Job deferredProbeJob;
+    
+    @Qualifier("listingDiscoveryJob")
+    private final Job listingDiscoveryJob;
+    
     @Qualifier("downloadJob")
     private final Job downloadJob;
     
+    @Qualifier("revalidationJob")
+    private final Job revalidationJob;
+    
     @Qualifier("ocrJob")
     private final Job ocrJob;
     
@@ -51,12 +72,13 @@ public class BatchJobScheduler {
     private final Job consolidateJob;
     
     /**
-     * Fetch current - 3 fois par jour (6h, 12h, 18h)
+     * Fetch current - planning configurable (par défaut toutes les 15 minutes)
+     * Le mode frontière limite chaque exécution à quelques dizaines de sondes
      */
-    @Scheduled(cron = "0 0 6,12,18 * * *")
+    @Scheduled(cron = "${law.frontier.cron:0 */15 * * * *}")
     public void scheduledFetchCurrent() {
         log.info("⏰ Scheduled execution: Fetch Current Year");
-        runJobIfNotRunning(fetchCurrentJob, "Fetch Current");
+        runUpstreamJobIfAvailable(fetchCurrentJob, "Fetch Current");
     }
     
     /**
@@ -65,7 +87,25 @@ public class BatchJobScheduler {
     @Scheduled(cron = "0 30 * * * *")
     public void scheduledFetchPrevious() {
         log.info("⏰ Scheduled execution: Fetch Previous Years");
-        runJobIfNotRunning(fetchPreviousJob, "Fetch Previous");
+        runUpstreamJobIfAvailable(fetchPreviousJob, "Fetch Previous");
+    }
+    
+    /**
+     * Deferred probes - Rejoue les sondes en échec arrivées à échéance (par défaut toutes les heures à :50)
+     */
+    @Scheduled(cron = "${law.deferred.cron:0 50 * * * *}")
+    public void scheduledDeferredProbe() {
+        log.info("⏰ Scheduled execution: Deferred Probes");
+        runUpstreamJobIfAvailable(deferredProbeJob, "Deferred Probes");
+    }
+    
+    /**
+     * Listing discovery - Parcourt les pages de liste du site (par défaut toutes les 6 heures à :10)
+     */
+    @Scheduled(cron = "${law.listing.cron:0 10 */6 * * *}")
+    public void scheduledListingDiscovery() {
+        log.info("⏰ Scheduled execution: Listing Discovery");
+        runUpstreamJobIfAvailable(listingDiscoveryJob, "Listing Discovery");
     }
     
     /**
@@ -74,7 +114,16 @@ public class BatchJobScheduler {
     @Scheduled(cron = "0 0 */2 * * *")
     public void scheduledDownload() {
         log.info("⏰ Scheduled execution: Download PDFs");
-        runJobIfNotRunning(downloadJob, "Download");
+        runUpstreamJobIfAvailable(downloadJob, "Download");
+    }
+    
+    /**
+     * Revalidation - Requêtes conditionnelles sur les PDFs téléchargés (par défaut chaque nuit à 3h20)
+     */
+    @Scheduled(cron = "${law.revalidation.cron:0 20 3 * * *}")
+    public void scheduledRevalidation() {
+        log.info("⏰ Scheduled execution: Revalidation");
+        runUpstreamJobIfAvailable(revalidationJob, "Revalidation");
     }
     
     /**
@@ -104,6 +153,33 @@ public class BatchJobScheduler {
         runJobIfNotRunning(consolidateJob, "Consolidate");
     }
     
+    /**
+     * Blob GC - Supprime les PDFs/OCR stockés par contenu qui ne sont plus référencés (par défaut chaque nuit à 4h40)
+     */
+    @Scheduled(cron = "${law.storage.blob-gc-cron:0 40 4 * * *}")
+    public void scheduledBlobGc() {
+        if (!properties.getStorage().isBlobGcEnabled()) {
+            return;
+        }
+        log.info("⏰ Scheduled execution: Blob GC");
+        try {
+            deduplicationService.collectUnreferencedBlobs();
+        } catch (Exception e) {
+            log.error("❌ Error running blob GC: {}", e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Exécute un job qui appelle le site, sauf si le circuit est ouvert
+     */
+    private void runUpstreamJobIfAvailable(Job job, String jobName) {
+        if (!circuitBreaker.isAvailable()) {
+            log.warn("⚠️  Upstream circuit {}, skipping scheduled {} job", circuitBreaker.getState(), jobName);
+            return;
+        }
+        runJobIfNotRunning(job, jobName);
+    }
+    
     /**
      * Exécute un job seulement s'il n'est pas déjà en cours
      */
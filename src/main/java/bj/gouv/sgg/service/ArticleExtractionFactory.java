@@ -0,0 +1,63 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.model.Article;
+import bj.gouv.sgg.model.ArticleExtraction;
+import bj.gouv.sgg.model.DocumentMetadata;
+import bj.gouv.sgg.model.LawDocument;
+import bj.gouv.sgg.model.Signatory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Construction des entités ArticleExtraction d'un document (titre, URL source et métadonnées)
+ * Partagée entre l'extraction (base ou JSON) et la reprise des articles d'un document de même contenu.
+ */
+@Component
+@RequiredArgsConstructor
+public class ArticleExtractionFactory {
+
+    private final LawProperties properties;
+
+    /**
+     * Article extrait du texte OCR du document
+     */
+    public ArticleExtraction create(LawDocument document, Article article, DocumentMetadata metadata, double confidence) {
+        return build(document, article.getIndex(), article.getContent(), confidence,
+                metadata.getLawTitle(), metadata.getPromulgationDate(), metadata.getPromulgationCity(),
+                metadata.getSignatories());
+    }
+
+    /**
+     * Copie d'un article extrait d'un document jumeau, rattachée au document cible
+     */
+    public ArticleExtraction rebind(ArticleExtraction source, LawDocument target) {
+        return build(target, source.getArticleIndex(), source.getContent(), source.getConfidence(),
+                source.getLawTitle(), source.getPromulgationDate(), source.getPromulgationCity(),
+                source.getSignatories());
+    }
+
+    private ArticleExtraction build(LawDocument document, Integer articleIndex, String content, Double confidence,
+                                    String lawTitle, String promulgationDate, String promulgationCity,
+                                    List<Signatory> signatories) {
+        return ArticleExtraction.builder()
+                .documentId(document.getDocumentId())
+                .articleIndex(articleIndex)
+                .title(String.format("%s article-%d", document.getDocumentId(), articleIndex))
+                .content(content)
+                .confidence(confidence)
+                .documentType(document.getType())
+                .documentYear(document.getYear())
+                .documentNumber(document.getNumber())
+                .sourceUrl(String.format("%s/%s/download", properties.getBaseUrl(), document.getDocumentId()))
+                .lawTitle(lawTitle)
+                .promulgationDate(promulgationDate)
+                .promulgationCity(promulgationCity)
+                .signatories(signatories)
+                .extractedAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,296 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.model.LawDocument;
+import bj.gouv.sgg.util.RateLimitHandler;
+import bj.gouv.sgg.util.RateLimitHandler.EndpointClass;
+import bj.gouv.sgg.util.RateLimitHandler.ProbeResult;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker.Permit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.entity.AbstractBinResponseConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncRequestBuilder;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Moteur de sondes HTTP HEAD non bloquant.
+ * Les requêtes sont multiplexées par le client asynchrone partagé : aucun thread
+ * n'est bloqué pendant l'attente de la réponse, les retries 429 sont planifiés.
+ * Quand le circuit vers le site est ouvert, la sonde est refusée sans connexion.
+ * En mode fusionné ({@link #probeAndDownload}), la sonde est un GET dont le corps est
+ * écrit directement sur disque : découverte et téléchargement en une seule requête. Ces GET passent par
+ * un client distinct ({@code upstreamFusedAsyncHttpClient}) : les écritures disque ont lieu sur ses threads
+ * I/O, jamais sur celui qui multiplexe les sondes HEAD.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AsyncProbeService {
+
+    private final CloseableHttpAsyncClient upstreamAsyncHttpClient;
+    private final CloseableHttpAsyncClient upstreamFusedAsyncHttpClient;
+    private final RateLimitHandler rateLimitHandler;
+    private final UpstreamCircuitBreaker circuitBreaker;
+    private final FileStorageService fileStorageService;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MAX_DRAINED_BODY = 64 * 1024; // Corps non-200 plus gros (ou de taille inconnue) : échange interrompu
+
+    /**
+     * Envoie un HEAD avec gestion des 429 (token bucket PROBE, Retry-After, retry + backoff)
+     * @return code HTTP, -1 en cas d'erreur réseau, {@link UpstreamCircuitBreaker#REJECTED} si le circuit est ouvert
+     */
+    public CompletableFuture<Integer> probe(String url) {
+        Permit permit = circuitBreaker.tryAcquire();
+        if (permit == null) {
+            return CompletableFuture.completedFuture(UpstreamCircuitBreaker.REJECTED);
+        }
+        return rateLimitHandler.executeWithRetryAsync(EndpointClass.PROBE, url, target -> head(target, permit))
+            .whenComplete((result, error) -> circuitBreaker.release(permit))
+            .thenApply(ProbeResult::getStatusCode);
+    }
+
+    private CompletableFuture<ProbeResult> head(String url, Permit permit) {
+        CompletableFuture<ProbeResult> result = new CompletableFuture<>();
+        SimpleHttpRequest request = SimpleRequestBuilder.head(url).build();
+
+        upstreamAsyncHttpClient.execute(request, new FutureCallback<SimpleHttpResponse>() {
+            @Override
+            public void completed(SimpleHttpResponse response) {
+                ProbeResult probeResult = new ProbeResult(response.getCode(), RateLimitHandler.parseRetryAfter(response));
+                circuitBreaker.onResponse(permit, probeResult.getStatusCode(), probeResult.getRetryAfter());
+                result.complete(probeResult);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                log.error("Error fetching {}: {}", url, e.getMessage());
+                circuitBreaker.onFailure(permit);
+                result.complete(ProbeResult.error());
+            }
+
+            @Override
+            public void cancelled() {
+                log.warn("Probe cancelled: {}", url);
+                circuitBreaker.onFailure(permit);
+                result.complete(ProbeResult.error());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Sonde par GET en streaming : le corps d'un 200 est écrit dans {documentId}.pdf.part (SHA-256 calculé
+     * au passage), celui d'une autre réponse n'est jamais stocké et l'échange est interrompu dès les
+     * en-têtes s'il est volumineux. Après un 200 complet, le document porte le chemin du fichier
+     * temporaire et son hash ; la publication est faite par {@code FetchWriter}.
+     * @return code HTTP, -1 en cas d'erreur réseau, {@link UpstreamCircuitBreaker#REJECTED} si le circuit est ouvert
+     */
+    public CompletableFuture<Integer> probeAndDownload(LawDocument document, String url) {
+        Permit permit = circuitBreaker.tryAcquire();
+        if (permit == null) {
+            return CompletableFuture.completedFuture(UpstreamCircuitBreaker.REJECTED);
+        }
+        return rateLimitHandler.executeWithRetryAsync(EndpointClass.PROBE, url, target -> get(document, target, permit))
+            .whenComplete((result, error) -> circuitBreaker.release(permit))
+            .thenApply(ProbeResult::getStatusCode);
+    }
+
+    private CompletableFuture<ProbeResult> get(LawDocument document, String url, Permit permit) {
+        CompletableFuture<ProbeResult> result = new CompletableFuture<>();
+        PdfBodyConsumer consumer;
+        try {
+            consumer = new PdfBodyConsumer(fileStorageService.partialPdfPath(document.getType(), document.getDocumentId()));
+        } catch (IOException e) {
+            log.error("Cannot prepare download of {}: {}", document.getDocumentId(), e.getMessage());
+            result.complete(ProbeResult.error());
+            return result;
+        }
+
+        upstreamFusedAsyncHttpClient.execute(AsyncRequestBuilder.get(url).build(), consumer, new FutureCallback<ProbeResult>() {
+            @Override
+            public void completed(ProbeResult probeResult) {
+                circuitBreaker.onResponse(permit, probeResult.getStatusCode(), probeResult.getRetryAfter());
+                if (probeResult.getStatusCode() == 200 && consumer.size > 0) {
+                    document.setPdfPath(consumer.partialFile.toString());
+                    document.setSha256(consumer.sha256());
+                    document.setEtag(consumer.etag);
+                    document.setLastModified(consumer.lastModified);
+                } else if (consumer.stored) {
+                    fileStorageService.deleteQuietly(consumer.partialFile);
+                }
+                result.complete(probeResult);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                if (consumer.stored) {
+                    fileStorageService.deleteQuietly(consumer.partialFile);
+                }
+                if (e instanceof DiscardedResponseException discarded) {
+                    ProbeResult probeResult = new ProbeResult(discarded.statusCode, discarded.retryAfter);
+                    circuitBreaker.onResponse(permit, probeResult.getStatusCode(), probeResult.getRetryAfter());
+                    result.complete(probeResult);
+                    return;
+                }
+                log.error("Error fetching {}: {}", url, e.getMessage());
+                circuitBreaker.onFailure(permit);
+                result.complete(ProbeResult.error());
+            }
+
+            @Override
+            public void cancelled() {
+                if (consumer.stored) {
+                    fileStorageService.deleteQuietly(consumer.partialFile);
+                }
+                log.warn("Fused probe cancelled: {}", url);
+                circuitBreaker.onFailure(permit);
+                result.complete(ProbeResult.error());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Consommateur du corps d'un GET fusionné : 200 → fichier temporaire + SHA-256,
+     * autre code → corps ignoré (petit) ou échange interrompu (gros ou de taille inconnue).
+     * Les écritures ont lieu sur un thread I/O du client des sondes fusionnées, par blocs de {@link #BUFFER_SIZE}.
+     */
+    private static class PdfBodyConsumer extends AbstractBinResponseConsumer<ProbeResult> {
+
+        private final Path partialFile;
+        private final MessageDigest digest = sha256();
+        private int statusCode;
+        private Duration retryAfter;
+        private String etag;
+        private String lastModified;
+        private FileChannel channel;
+        private volatile boolean stored;
+        private volatile long size;
+
+        PdfBodyConsumer(Path partialFile) {
+            this.partialFile = partialFile;
+        }
+
+        @Override
+        protected void start(HttpResponse response, ContentType contentType) throws HttpException, IOException {
+            statusCode = response.getCode();
+            retryAfter = RateLimitHandler.parseRetryAfter(response);
+            if (statusCode != 200) {
+                Header contentLength = response.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
+                if (contentLength == null || parseLength(contentLength.getValue()) > MAX_DRAINED_BODY) {
+                    throw new DiscardedResponseException(statusCode, retryAfter);
+                }
+                return;
+            }
+            etag = headerValue(response, HttpHeaders.ETAG);
+            lastModified = headerValue(response, HttpHeaders.LAST_MODIFIED);
+            channel = FileChannel.open(partialFile,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            stored = true;
+        }
+
+        @Override
+        protected int capacityIncrement() {
+            return BUFFER_SIZE;
+        }
+
+        @Override
+        protected void data(ByteBuffer src, boolean endOfStream) throws IOException {
+            if (channel == null) {
+                src.position(src.limit()); // Corps d'une réponse non-200 : ignoré
+                return;
+            }
+            digest.update(src.duplicate());
+            while (src.hasRemaining()) {
+                size += channel.write(src);
+            }
+        }
+
+        @Override
+        protected void completed() throws IOException {
+            closeChannel();
+        }
+
+        @Override
+        protected ProbeResult buildResult() {
+            return new ProbeResult(statusCode, retryAfter);
+        }
+
+        @Override
+        public void releaseResources() {
+            try {
+                closeChannel();
+            } catch (IOException e) {
+                log.warn("Unable to close {}: {}", partialFile, e.getMessage());
+            }
+        }
+
+        String sha256() {
+            return HexFormat.of().formatHex(digest.digest());
+        }
+
+        private void closeChannel() throws IOException {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+
+        private static String headerValue(HttpResponse response, String name) {
+            Header header = response.getFirstHeader(name);
+            return header != null ? header.getValue() : null;
+        }
+
+        private static long parseLength(String value) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                return Long.MAX_VALUE;
+            }
+        }
+
+        private static MessageDigest sha256() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
+
+    /**
+     * Interrompt un échange dont le corps n'a pas d'intérêt (le code HTTP suffit)
+     */
+    private static class DiscardedResponseException extends IOException {
+        private final int statusCode;
+        private final transient Duration retryAfter;
+
+        DiscardedResponseException(int statusCode, Duration retryAfter) {
+            super("Response body discarded (HTTP " + statusCode + ")");
+            this.statusCode = statusCode;
+            this.retryAfter = retryAfter;
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.batch.util.DocumentIdParser;
+import bj.gouv.sgg.batch.util.DocumentIdParser.ParsedDocument;
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.exception.FileStorageException;
+import bj.gouv.sgg.util.TarArchiveReader;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Import hors ligne de PDFs (répertoire, .zip, .tar, .tar.gz/.tgz) nommés {documentId}.pdf
+ * - Les fichiers sont copiés dans {documentId}.pdf.import (jamais le .part d'un téléchargement en cours) puis hashés, validés (en-tête %PDF-,
+ *   marqueur %%EOF en fin de fichier) et publiés dans le stockage par contenu, en parallèle sur
+ *   threads workers ; une archive est lue séquentiellement, seuls le hash et la publication
+ *   sont parallélisés
+ * - Les documents sont enregistrés dans fetch_results par lots ({@link ImportRegistrationService}) :
+ *   DOWNLOADED si le PDF est valide, FETCHED sinon (le document existe, le job de download le récupérera)
+ * Aucune requête n'est envoyée au site ; la source n'est jamais modifiée.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkImportService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] PDF_MAGIC = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PDF_EOF = "%%EOF".getBytes(StandardCharsets.US_ASCII);
+    private static final int TRAILER_WINDOW = 2048; // %%EOF peut être suivi de quelques octets de fin de ligne
+
+    private final FileStorageService fileStorageService;
+    private final ImportRegistrationService registrationService;
+    private final LawProperties properties;
+    private final TextLayerService textLayerService;
+
+    public ImportReport importFrom(Path source) throws IOException, InterruptedException {
+        if (!Files.exists(source)) {
+            throw new FileStorageException(source.toString(), FileStorageException.OperationType.READ, "Import source not found");
+        }
+        int threads = threads();
+        log.info("Bulk import from {} ({} threads)", source, threads);
+        long start = System.currentTimeMillis();
+
+        ImportRun run = new ImportRun(threads);
+        try {
+            String name = source.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (Files.isDirectory(source)) {
+                importDirectory(source, run);
+            } else if (name.endsWith(".zip")) {
+                importZip(source, run);
+            } else if (name.endsWith(".tar")) {
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(source), BUFFER_SIZE)) {
+                    importTar(in, run);
+                }
+            } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+                try (InputStream in = new GZIPInputStream(Files.newInputStream(source), BUFFER_SIZE)) {
+                    importTar(in, run);
+                }
+            } else {
+                throw new FileStorageException(source.toString(), FileStorageException.OperationType.READ,
+                    "Unsupported import source (directory, .zip, .tar, .tar.gz expected)");
+            }
+            run.awaitCompletion();
+        } finally {
+            run.executor.shutdownNow();
+        }
+        run.register(true);
+
+        ImportReport report = run.report;
+        log.info("Bulk import finished in {} ms: {}", System.currentTimeMillis() - start, report);
+        return report;
+    }
+
+    // ------------------------------------------------------------------------
+    // Sources
+    // ------------------------------------------------------------------------
+
+    private void importDirectory(Path directory, ImportRun run) throws IOException, InterruptedException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        for (Path file : files) {
+            ParsedDocument document = run.accept(file.getFileName().toString());
+            if (document != null) {
+                // Copie + hash en un seul passage, sur un worker
+                Path partialFile = fileStorageService.importPdfPath(document.getType(), document.getDocumentId());
+                run.submit(partialFile, () -> {
+                    String sha256;
+                    try (InputStream in = Files.newInputStream(file)) {
+                        sha256 = copy(in, partialFile, true);
+                    }
+                    publish(document, partialFile, sha256, run);
+                });
+            }
+        }
+    }
+
+    private void importZip(Path archive, ImportRun run) throws IOException, InterruptedException {
+        try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(Files.newInputStream(archive), BUFFER_SIZE))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    stageEntry(entry.getName(), zip, run);
+                }
+            }
+        }
+    }
+
+    private void importTar(InputStream in, ImportRun run) throws IOException, InterruptedException {
+        TarArchiveReader tar = new TarArchiveReader(in);
+        String name;
+        while ((name = tar.nextEntry()) != null) {
+            stageEntry(name, tar.entryStream(), run);
+        }
+    }
+
+    /**
+     * Entrée d'archive : extraite par le thread lecteur (lecture séquentielle), hashée et publiée par un worker
+     */
+    private void stageEntry(String name, InputStream content, ImportRun run) throws IOException, InterruptedException {
+        ParsedDocument document = run.accept(name);
+        if (document == null) {
+            return;
+        }
+        Path partialFile = fileStorageService.importPdfPath(document.getType(), document.getDocumentId());
+        try {
+            copy(content, partialFile, false);
+        } catch (IOException e) {
+            fileStorageService.deleteQuietly(partialFile);
+            throw e;
+        }
+        run.submit(partialFile, () -> publish(document, partialFile, null, run));
+    }
+
+    // ------------------------------------------------------------------------
+    // Validation et publication (workers)
+    // ------------------------------------------------------------------------
+
+    private void publish(ParsedDocument document, Path partialFile, String sha256, ImportRun run) throws IOException {
+        long size = Files.size(partialFile);
+        if (!isValidPdf(partialFile, size)) {
+            fileStorageService.deleteQuietly(partialFile);
+            log.warn("Invalid PDF skipped: {} ({} bytes)", document.getDocumentId(), size);
+            run.report.invalidPdf.incrementAndGet();
+            run.completed.add(new ImportedPdf(document, null, size));
+            return;
+        }
+        if (sha256 == null) {
+            sha256 = hashFile(partialFile);
+        }
+        fileStorageService.commitPdf(document.getType(), document.getDocumentId(), partialFile, sha256);
+        run.report.imported.incrementAndGet();
+        if (textLayerService.extractIfTextNative(document.getType(), document.getDocumentId(), sha256)) {
+            run.report.textNative.incrementAndGet();
+        }
+        run.completed.add(new ImportedPdf(document, sha256, size));
+    }
+
+    private static boolean isValidPdf(Path file, long size) throws IOException {
+        if (size < PDF_MAGIC.length + PDF_EOF.length) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(PDF_MAGIC.length);
+            channel.read(head, 0);
+            if (!startsWith(head.array(), PDF_MAGIC)) {
+                return false;
+            }
+            int window = (int) Math.min(TRAILER_WINDOW, size);
+            ByteBuffer tail = ByteBuffer.allocate(window);
+            channel.read(tail, size - window);
+            return indexOf(tail.array(), tail.position(), PDF_EOF) >= 0;
+        }
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] data, int length, byte[] pattern) {
+        outer:
+        for (int i = length - pattern.length; i >= 0; i--) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @param hash calcule le SHA-256 pendant la copie
+     * @return SHA-256 (hexadécimal) ou null
+     */
+    private static String copy(InputStream in, Path target, boolean hash) throws IOException {
+        MessageDigest digest = hash ? sha256() : null;
+        InputStream source = hash ? new DigestInputStream(in, digest) : in;
+        try (OutputStream out = Files.newOutputStream(target,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            source.transferTo(out);
+        }
+        return hash ? HexFormat.of().formatHex(digest.digest()) : null;
+    }
+
+    private static String hashFile(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private int threads() {
+        int configured = properties.getBulkImport().getThreads();
+        return configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+    }
+
+    // ------------------------------------------------------------------------
+    // État d'un import
+    // ------------------------------------------------------------------------
+
+    @FunctionalInterface
+    private interface ImportTask {
+        void run() throws IOException;
+    }
+
+    /**
+     * Workers, file d'attente bornée (le thread lecteur attend si les workers sont en retard)
+     * et documents publiés en attente d'enregistrement ; l'enregistrement est fait par le thread lecteur
+     */
+    private class ImportRun {
+
+        private final ExecutorService executor;
+        private final int maxInFlight;
+        private final Semaphore inFlight;
+        private final ConcurrentLinkedQueue<ImportedPdf> completed = new ConcurrentLinkedQueue<>();
+        private final Set<String> seen = new HashSet<>();
+        private final ImportReport report = new ImportReport();
+
+        ImportRun(int threads) {
+            AtomicInteger counter = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "law-import-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.maxInFlight = threads * 4;
+            this.inFlight = new Semaphore(maxInFlight);
+        }
+
+        /**
+         * @return le document correspondant au nom de fichier, null s'il est ignoré
+         */
+        ParsedDocument accept(String entryName) {
+            String fileName = entryName.substring(Math.max(entryName.lastIndexOf('/'), entryName.lastIndexOf('\\')) + 1);
+            if (!fileName.toLowerCase(Locale.ROOT).endsWith(".pdf")) {
+                report.ignored.incrementAndGet();
+                return null;
+            }
+            ParsedDocument document = DocumentIdParser.parse(fileName.substring(0, fileName.length() - 4));
+            if (document == null) {
+                report.invalidName.incrementAndGet();
+                return null;
+            }
+            if (!seen.add(document.getDocumentId())) {
+                report.duplicates.incrementAndGet();
+                return null;
+            }
+            if (fileStorageService.pdfExists(document.getType(), document.getDocumentId())) {
+                report.alreadyPresent.incrementAndGet();
+                completed.add(new ImportedPdf(document, null, -1));
+                return null;
+            }
+            return document;
+        }
+
+        /**
+         * @param stagedFile fichier temporaire de la tâche, supprimé si elle échoue
+         */
+        void submit(Path stagedFile, ImportTask task) throws InterruptedException {
+            inFlight.acquire();
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (IOException | RuntimeException e) {
+                    log.error("Import task failed: {}", e.getMessage());
+                    fileStorageService.deleteQuietly(stagedFile);
+                    report.errors.incrementAndGet();
+                } finally {
+                    inFlight.release();
+                }
+            });
+            register(false);
+        }
+
+        void awaitCompletion() throws InterruptedException {
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+        }
+
+        /**
+         * Enregistre les documents publiés par lots de registerBatchSize (tous si force)
+         */
+        void register(boolean force) {
+            int batchSize = Math.max(1, properties.getBulkImport().getRegisterBatchSize());
+            while (completed.size() >= batchSize || (force && !completed.isEmpty())) {
+                List<ImportedPdf> batch = new ArrayList<>(batchSize);
+                ImportedPdf pdf;
+                while (batch.size() < batchSize && (pdf = completed.poll()) != null) {
+                    batch.add(pdf);
+                }
+                ImportRegistrationService.Counts counts = registrationService.register(batch);
+                report.inserted.addAndGet(counts.getInserted());
+                report.updated.addAndGet(counts.getUpdated());
+            }
+        }
+    }
+
+    /**
+     * Document traité par l'import
+     * - sha256 non null : PDF publié (DOWNLOADED)
+     * - sha256 null et size = -1 : PDF déjà présent sur disque (DOWNLOADED si aucune ligne)
+     * - sha256 null sinon : fichier invalide (FETCHED)
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class ImportedPdf {
+        private final ParsedDocument document;
+        private final String sha256;
+        private final long size;
+
+        public boolean isStored() {
+            return sha256 != null || size < 0;
+        }
+    }
+
+    /**
+     * Compteurs d'un import
+     */
+    @Getter
+    public static class ImportReport {
+        private final AtomicInteger imported = new AtomicInteger();
+        private final AtomicInteger textNative = new AtomicInteger(); // Texte extrait sans OCR
+        private final AtomicInteger alreadyPresent = new AtomicInteger();
+        private final AtomicInteger invalidPdf = new AtomicInteger();
+        private final AtomicInteger invalidName = new AtomicInteger();
+        private final AtomicInteger duplicates = new AtomicInteger();
+        private final AtomicInteger ignored = new AtomicInteger();
+        private final AtomicInteger errors = new AtomicInteger();
+        private final AtomicInteger inserted = new AtomicInteger();
+        private final AtomicInteger updated = new AtomicInteger();
+
+        @Override
+        public String toString() {
+            return String.format("imported=%d textNative=%d alreadyPresent=%d invalidPdf=%d invalidName=%d duplicates=%d ignored=%d errors=%d inserted=%d updated=%d",
+                imported.get(), textNative.get(), alreadyPresent.get(), invalidPdf.get(), invalidName.get(), duplicates.get(),
+                ignored.get(), errors.get(), inserted.get(), updated.get());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.model.LawDocument;
+import bj.gouv.sgg.repository.FetchResultRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Réutilisation des résultats dérivés (OCR, articles) entre documents de même contenu PDF
+ * Le même texte est régulièrement publié sous plusieurs identifiants (variantes de padding,
+ * rectificatifs identiques) : le SHA-256 stocké dans fetch_results permet de ne l'OCRiser qu'une fois.
+ * La copie des articles est construite par {@link ArticleExtractionFactory}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ContentDeduplicationService {
+
+    private final FetchResultRepository fetchResultRepository;
+    private final FileStorageService fileStorageService;
+    private final LawProperties properties;
+
+    /**
+     * Hash du PDF du document (porté par le document, sinon lu dans fetch_results)
+     */
+    public String sha256Of(LawDocument document) {
+        if (document.getSha256() != null) {
+            return document.getSha256();
+        }
+        String sha256 = fetchResultRepository.findSha256ByDocumentId(document.getDocumentId());
+        document.setSha256(sha256);
+        return sha256;
+    }
+
+    /**
+     * Autres documents dont le PDF a le même contenu
+     */
+    public List<String> siblingsOf(String documentId, String sha256) {
+        if (sha256 == null) {
+            return List.of();
+        }
+        return fetchResultRepository.findDocumentIdsBySha256(sha256).stream()
+            .filter(id -> !id.equals(documentId))
+            .toList();
+    }
+
+    /**
+     * Supprime les blobs (PDF, OCR) dont le hash n'est plus référencé par fetch_results
+     * (PDF remplacé sur le site puis retéléchargé, document supprimé)
+     * Les hashs référencés sont lus avant le parcours du disque : un blob publié entre les deux
+     * est plus récent que blobGcMinAgeHours et n'est pas supprimé.
+     * @return nombre de blobs supprimés
+     */
+    public int collectUnreferencedBlobs() throws IOException {
+        Set<String> referenced = new HashSet<>(fetchResultRepository.findAllSha256());
+        Duration minAge = Duration.ofHours(properties.getStorage().getBlobGcMinAgeHours());
+        int deleted = fileStorageService.deleteUnreferencedBlobs(referenced, minAge);
+        log.info("Blob GC: deleted={} referenced={} minAgeHours={}", deleted, referenced.size(), minAge.toHours());
+        return deleted;
+    }
+}
@@ -0,0 +1,101 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.model.FetchYearBound;
+import bj.gouv.sgg.repository.FetchResultRepository;
+import bj.gouv.sgg.repository.FetchYearBoundRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Planification du scan incrémental de l'année courante (mode frontière)
+ * - Chaque exécution sonde les trous sous le plus grand numéro trouvé et une fenêtre au-dessus
+ * - La queue vide (jusqu'à maxNumberPerYear) n'est re-vérifiée que selon un planning décroissant :
+ *   l'intervalle double à chaque vérification sans découverte au-delà de la fenêtre,
+ *   et revient au minimum dès qu'un document y est trouvé
+ * Le planning est stocké dans fetch_year_bounds (tailCheckedAt, tailCheckIntervalHours), avec une borne
+ * provisoire : une fois l'année passée, {@link UpperBoundDiscoveryService} refait la découverte.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CurrentYearFrontierService {
+
+    private final LawProperties properties;
+    private final FetchYearBoundRepository fetchYearBoundRepository;
+    private final FetchResultRepository fetchResultRepository;
+
+    /**
+     * Décide jusqu'à quel numéro scanner pour cette exécution
+     * @param highestFound plus grand numéro déjà trouvé (0 si aucun)
+     */
+    public Plan plan(String type, int year, int highestFound) {
+        int max = properties.getMaxNumberPerYear();
+        LawProperties.Frontier frontier = properties.getFrontier();
+        if (!frontier.isEnabled()) {
+            return new Plan(max, max, true);
+        }
+
+        int frontierTop = Math.min(max, highestFound + frontier.getWindow());
+        FetchYearBound bound = fetchYearBoundRepository.findByDocumentTypeAndYear(type, year).orElse(null);
+        boolean tailDue = bound == null
+            || bound.getTailCheckedAt() == null
+            || bound.getTailCheckIntervalHours() == null
+            || !LocalDateTime.now().isBefore(bound.getTailCheckedAt().plusHours(bound.getTailCheckIntervalHours()));
+
+        Plan plan = new Plan(tailDue ? max : frontierTop, frontierTop, tailDue);
+        log.info("frontier-plan type={} year={} highestFound={} frontierTop={} tailDue={} scanLimit={}",
+            type, year, highestFound, frontierTop, tailDue, plan.getScanLimit());
+        return plan;
+    }
+
+    /**
+     * Met à jour la borne provisoire et le planning de vérification de la queue après une exécution
+     */
+    public void recordRun(String type, int year, Plan plan) {
+        Integer maxFound = fetchResultRepository.findMaxNumber(type, year);
+        int highestFound = maxFound != null ? maxFound : 0;
+        LocalDateTime now = LocalDateTime.now();
+        LawProperties.Frontier frontier = properties.getFrontier();
+
+        FetchYearBound bound = fetchYearBoundRepository.findByDocumentTypeAndYear(type, year)
+            .orElse(FetchYearBound.builder()
+                .documentType(type)
+                .year(year)
+                .probeCount(0)
+                .build());
+        bound.setUpperBound(highestFound);
+        bound.setProvisional(true); // Année ouverte : jamais une borne définitive
+        bound.setUpdatedAt(now);
+
+        if (plan.isTailDue()) {
+            boolean foundInTail = highestFound > plan.getFrontierTop();
+            Integer previous = bound.getTailCheckIntervalHours();
+            int interval = foundInTail || previous == null
+                ? frontier.getTailCheckMinHours()
+                : Math.min(frontier.getTailCheckMaxHours(), previous * 2);
+            bound.setTailCheckedAt(now);
+            bound.setTailCheckIntervalHours(interval);
+            log.info("frontier-tail-checked type={} year={} foundInTail={} nextCheckInHours={}",
+                type, year, foundInTail, interval);
+        }
+
+        fetchYearBoundRepository.save(bound);
+    }
+
+    /**
+     * Plan d'une exécution : limite de scan, sommet de la fenêtre frontière, vérification de la queue
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Plan {
+        private final int scanLimit;
+        private final int frontierTop;
+        private final boolean tailDue;
+    }
+}
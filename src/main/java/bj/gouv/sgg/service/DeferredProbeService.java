@@ -0,0 +1,114 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.model.DeferredProbe;
+import bj.gouv.sgg.model.LawDocument;
+import bj.gouv.sgg.repository.DeferredProbeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * File persistante des sondes différées
+ * Un document dont la sonde a échoué (rate limit, erreur réseau) n'est plus perdu :
+ * il est enregistré avec son nombre de tentatives et la date de la prochaine tentative
+ * (backoff exponentiel), puis rejoué par le job de drainage.
+ * Un document en échec permanent est abandonné après maxAttempts tentatives.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeferredProbeService {
+
+    private final DeferredProbeRepository repository;
+    private final LawProperties properties;
+
+    /**
+     * Enregistre (ou replanifie) les documents en échec
+     */
+    @Transactional
+    public void defer(List<LawDocument> documents) {
+        LocalDateTime now = LocalDateTime.now();
+        for (LawDocument document : documents) {
+            DeferredProbe probe = repository
+                .findByDocumentTypeAndYearAndNumber(document.getType(), document.getYear(), document.getNumber())
+                .orElse(DeferredProbe.builder()
+                    .documentType(document.getType())
+                    .year(document.getYear())
+                    .number(document.getNumber())
+                    .attempts(0)
+                    .createdAt(now)
+                    .build());
+
+            int attempts = probe.getAttempts() + 1;
+            probe.setAttempts(attempts);
+            probe.setLastError(truncate(document.getErrorMessage()));
+            probe.setNextAttemptAt(now.plus(backoff(attempts)));
+            probe.setUpdatedAt(now);
+            if (attempts >= properties.getDeferred().getMaxAttempts() && probe.getAbandonedAt() == null) {
+                probe.setAbandonedAt(now);
+                log.warn("Deferred probe abandoned: {} after {} attempts (last error: {})",
+                    document.getDocumentId(), attempts, probe.getLastError());
+            }
+            repository.save(probe);
+
+            log.debug("Deferred probe: {} attempts={} nextAttemptAt={}",
+                document.getDocumentId(), attempts, probe.getNextAttemptAt());
+        }
+        log.info("Deferred {} failed probes", documents.size());
+    }
+
+    /**
+     * Retire de la file les documents résolus (trouvés ou NOT_FOUND confirmé)
+     */
+    @Transactional
+    public void resolve(List<LawDocument> documents) {
+        for (LawDocument document : documents) {
+            repository.findByDocumentTypeAndYearAndNumber(document.getType(), document.getYear(), document.getNumber())
+                .ifPresent(probe -> {
+                    repository.delete(probe);
+                    log.debug("Deferred probe resolved: {} after {} attempts", document.getDocumentId(), probe.getAttempts());
+                });
+        }
+    }
+
+    /**
+     * Sondes éligibles (hors abandonnées), les plus anciennes d'abord, limitées à drainBatchSize
+     */
+    public List<DeferredProbe> findDue() {
+        return repository.findByAbandonedAtIsNullAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(
+            LocalDateTime.now(), PageRequest.of(0, properties.getDeferred().getDrainBatchSize()));
+    }
+
+    public long countDue() {
+        return repository.countByAbandonedAtIsNullAndNextAttemptAtLessThanEqual(LocalDateTime.now());
+    }
+
+    public long countAbandoned() {
+        return repository.countByAbandonedAtIsNotNull();
+    }
+
+    /**
+     * Backoff exponentiel : baseDelay * 2^(attempts-1), plafonné à maxDelay
+     */
+    private Duration backoff(int attempts) {
+        LawProperties.Deferred config = properties.getDeferred();
+        Duration max = Duration.ofHours(config.getMaxDelayHours());
+        int exponent = Math.min(attempts - 1, 20);
+        Duration delay = Duration.ofMinutes((long) config.getBaseDelayMinutes() << exponent);
+        return delay.compareTo(max) > 0 ? max : delay;
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= 500) {
+            return message;
+        }
+        return message.substring(0, 500);
+    }
+}
@@ -187,7 +187,24 @@ public class DocumentProcessingService {
                 .status(LawDocument.ProcessingStatus.PENDING)
                 .build();
 
-        return downloadService.downloadPdf(doc);
+        File pdfFile = downloadService.downloadPdf(doc);
+        markDownloaded(fetchResult, doc.getSha256(), pdfFile.length());
+        return pdfFile;
+    }
+
+    /**
+     * Enregistre le nouveau contenu dans fetch_results (comme FileDownloadWriter) : déduplication,
+     * revalidation et nettoyage des blobs s'appuient sur ce hash
+     * Les validateurs HTTP de l'ancien contenu sont effacés, la prochaine revalidation refera un GET complet.
+     */
+    private void markDownloaded(FetchResult fetchResult, String sha256, long contentLength) {
+        fetchResult.setStatus("DOWNLOADED");
+        fetchResult.setSha256(sha256);
+        fetchResult.setEtag(null);
+        fetchResult.setLastModified(null);
+        fetchResult.setContentLength(contentLength);
+        fetchResult.setRevalidatedAt(LocalDateTime.now());
+        fetchResultRepository.save(fetchResult);
     }
 
     private File performOcr(FetchResult fetchResult, File pdfFile, boolean force) throws Exception {
@@ -200,8 +217,12 @@ public class DocumentProcessingService {
             return ocrFile;
         }
 
-        // Effectuer OCR
-        ocrService.performOcr(pdfFile, ocrFile);
+        // Effectuer OCR : le chemin OCR peut être un lien vers le blob d'un ancien contenu,
+        // il est remplacé (jamais réécrit en place) par le blob du contenu actuel
+        String text = ocrService.extractText(Files.readAllBytes(pdfFile.toPath()));
+        fileStorageService.saveOcr(fetchResult.getDocumentType(), fetchResult.getDocumentId(), text,
+                fetchResult.getSha256());
+        log.info("OCR completed: {} ({} chars)", fetchResult.getDocumentId(), text.length());
         return ocrFile;
     }
 
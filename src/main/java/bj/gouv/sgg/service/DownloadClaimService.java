@@ -0,0 +1,65 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.model.FetchResult;
+import bj.gouv.sgg.repository.FetchResultRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Réservation des documents à télécharger (fetch_results.status FETCHED → DOWNLOADING)
+ * La transition est un UPDATE conditionnel : un seul thread (ou une seule instance) l'obtient,
+ * ce qui permet de paralléliser le step de download sans doublons.
+ * Chaque opération est validée dans sa propre transaction pour être immédiatement visible.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DownloadClaimService {
+
+    private final FetchResultRepository fetchResultRepository;
+    private final LawProperties properties;
+
+    /**
+     * Documents réservables, du plus récent au plus ancien
+     */
+    public List<FetchResult> findCandidates() {
+        return fetchResultRepository.findDownloadCandidates(staleBefore());
+    }
+
+    /**
+     * @return true si la réservation est obtenue
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean claim(FetchResult fetchResult) {
+        boolean claimed = fetchResultRepository.claimForDownload(
+            fetchResult.getId(), LocalDateTime.now(), staleBefore()) == 1;
+        if (!claimed) {
+            log.debug("Download already claimed elsewhere: {}", fetchResult.getDocumentId());
+        }
+        return claimed;
+    }
+
+    /**
+     * Libère la réservation d'un téléchargement en échec (repris au prochain run)
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void release(String documentId) {
+        fetchResultRepository.releaseDownloadClaim(documentId);
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void markDownloaded(String documentId) {
+        fetchResultRepository.markDownloaded(documentId);
+    }
+
+    private LocalDateTime staleBefore() {
+        return LocalDateTime.now().minusMinutes(properties.getDownload().getClaimTimeoutMinutes());
+    }
+}
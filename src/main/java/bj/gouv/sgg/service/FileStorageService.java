@@ -6,15 +6,30 @@ import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Service de stockage filesystem pour PDFs et OCR.
  * Structure:
  *   {LAW_DIRECTORIES_DATA}/pdfs/{type}/{documentId}.pdf
  *   {LAW_DIRECTORIES_DATA}/ocr/{type}/{documentId}.txt
+ *   {LAW_DIRECTORIES_DATA}/articles/{type}/{documentId}.json
+ *   {LAW_DIRECTORIES_DATA}/blobs/{sha256[0..2]}/{sha256}.pdf|.txt
+ * Les téléchargements sont écrits dans {documentId}.pdf.part, les imports dans {documentId}.pdf.import
+ * (même répertoire, donc même volume) puis publiés par {@link #commitPdf} avec un renommage atomique.
+ * Stockage adressé par contenu : le PDF (et son OCR) est stocké une seule fois sous son SHA-256
+ * dans blobs/, les chemins par documentId sont des liens physiques vers le blob
+ * (copie si le système de fichiers ne supporte pas les liens).
+ * Les blobs qui ne sont plus référencés sont supprimés par {@link #deleteUnreferencedBlobs}.
  */
 @Service
 @Slf4j
@@ -27,10 +42,58 @@ public class FileStorageService {
         return Path.of(baseDataDir, "pdfs", type, documentId + ".pdf");
     }
 
+    /**
+     * Fichier temporaire d'un téléchargement en cours, à côté du fichier final
+     */
+    public Path partialPdfPath(String type, String documentId) throws IOException {
+        Path path = pdfPath(type, documentId);
+        ensureDir(path.getParent());
+        return path.resolveSibling(documentId + ".pdf.part");
+    }
+
+    /**
+     * Validateurs (ETag, Last-Modified, taille) d'un téléchargement partiel, pour sa reprise
+     */
+    public Path partialMetaPath(String type, String documentId) throws IOException {
+        return partialPdfPath(type, documentId).resolveSibling(documentId + ".pdf.part.meta");
+    }
+
+    /**
+     * Fichier temporaire d'un import hors ligne, à côté du fichier final
+     * Distinct de {@link #partialPdfPath} : un téléchargement du même document peut être en cours
+     * (et son fichier partiel conservé pour reprise).
+     */
+    public Path importPdfPath(String type, String documentId) throws IOException {
+        Path path = pdfPath(type, documentId);
+        ensureDir(path.getParent());
+        return path.resolveSibling(documentId + ".pdf.import");
+    }
+
+    /**
+     * Blob adressé par contenu (extension : pdf, txt)
+     */
+    public Path blobPath(String sha256, String extension) {
+        return Path.of(baseDataDir, "blobs", sha256.substring(0, 2), sha256 + "." + extension);
+    }
+
     public Path ocrPath(String type, String documentId) {
         return Path.of(baseDataDir, "ocr", type, documentId + ".txt");
     }
 
+    public Path articlesJsonPath(String type, String documentId) {
+        return Path.of(baseDataDir, "articles", type, documentId + ".json");
+    }
+
+    /**
+     * Supprime les résultats dérivés du PDF d'un document (OCR, articles JSON), à recalculer
+     * Seuls les chemins du document sont supprimés : un blob OCR peut être partagé avec d'autres documents.
+     */
+    public void deleteDerived(String type, String documentId) {
+        deleteQuietly(ocrPath(type, documentId));
+        deleteQuietly(articlesJsonPath(type, documentId));
+        log.info("Résultats dérivés supprimés: {}", documentId);
+    }
+
     public boolean pdfExists(String type, String documentId) {
         return Files.exists(pdfPath(type, documentId));
     }
@@ -42,22 +105,183 @@ public class FileStorageService {
     public void savePdf(String type, String documentId, byte[] content) throws IOException {
         Path path = pdfPath(type, documentId);
         ensureDir(path.getParent());
-        Files.write(path, content, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        replace(path, content);
         log.info("PDF sauvegardé: {} ({} octets)", path, content.length);
     }
 
+    /**
+     * Publie un téléchargement terminé
+     * - Sans hash : renommage atomique du fichier temporaire vers le PDF final
+     * - Avec hash : le fichier devient le blob {sha256}.pdf (ou est supprimé si ce contenu est déjà stocké)
+     *   et le PDF du document est un lien vers ce blob
+     * Dans les deux cas un lecteur voit l'ancien fichier ou le nouveau complet, jamais un PDF partiel.
+     * @return chemin du PDF final
+     */
+    public Path commitPdf(String type, String documentId, Path partialFile, String sha256) throws IOException {
+        Path path = pdfPath(type, documentId);
+        ensureDir(path.getParent());
+        if (sha256 == null) {
+            atomicMove(partialFile, path);
+        } else {
+            Path blob = blobPath(sha256, "pdf");
+            ensureDir(blob.getParent());
+            if (Files.exists(blob)) {
+                Files.deleteIfExists(partialFile);
+                log.info("PDF dédupliqué: {} → contenu déjà stocké ({})", documentId, sha256);
+            } else {
+                atomicMove(partialFile, blob);
+            }
+            link(blob, path);
+        }
+        log.info("PDF sauvegardé: {} ({} octets)", path, Files.size(path));
+        return path;
+    }
+
+    /**
+     * Lie le fichier OCR d'un document au texte déjà extrait pour le même contenu
+     * @return true si un OCR existait pour ce hash (aucun OCR à recalculer)
+     */
+    public boolean reuseOcr(String type, String documentId, String sha256) throws IOException {
+        if (sha256 == null) {
+            return false;
+        }
+        Path blob = blobPath(sha256, "txt");
+        if (!Files.exists(blob)) {
+            return false;
+        }
+        link(blob, ocrPath(type, documentId));
+        log.info("OCR réutilisé: {} ({})", documentId, sha256);
+        return true;
+    }
+
+    /**
+     * Supprime les fichiers de blobs/ dont le hash n'est pas dans referenced
+     * Un blob est conservé s'il a encore un lien physique hors de blobs/ (PDF ou OCR d'un document)
+     * ou s'il a été modifié il y a moins de minAge (publication en cours).
+     * Les temporaires abandonnés ({sha256}.txt.{documentId}.tmp) suivent la même règle.
+     * @return nombre de fichiers supprimés
+     */
+    public int deleteUnreferencedBlobs(Set<String> referenced, Duration minAge) throws IOException {
+        Path root = Path.of(baseDataDir, "blobs");
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        List<Path> blobs;
+        try (Stream<Path> files = Files.walk(root, 2)) {
+            blobs = files.filter(Files::isRegularFile).toList();
+        }
+        Instant cutoff = Instant.now().minus(minAge);
+        int deleted = 0;
+        for (Path blob : blobs) {
+            String name = blob.getFileName().toString();
+            int dot = name.indexOf('.');
+            String sha256 = dot < 0 ? name : name.substring(0, dot);
+            if (referenced.contains(sha256) || linkCount(blob) > 1
+                    || Files.getLastModifiedTime(blob).toInstant().isAfter(cutoff)) {
+                continue;
+            }
+            if (Files.deleteIfExists(blob)) {
+                deleted++;
+                log.debug("Blob non référencé supprimé: {}", blob);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Nombre de liens physiques vers le fichier (1 si le système de fichiers ne l'expose pas)
+     */
+    private int linkCount(Path path) {
+        try {
+            return (Integer) Files.getAttribute(path, "unix:nlink");
+        } catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+            return 1;
+        }
+    }
+
+    private void atomicMove(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            log.warn("Atomic move not supported, falling back to plain move: {}", target);
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Crée (ou remplace atomiquement) link comme lien physique vers target, copie à défaut
+     */
+    private void link(Path target, Path link) throws IOException {
+        ensureDir(link.getParent());
+        Path temp = link.resolveSibling(link.getFileName() + ".link");
+        Files.deleteIfExists(temp);
+        try {
+            Files.createLink(temp, target);
+        } catch (UnsupportedOperationException | IOException e) {
+            log.debug("Hard link unavailable ({}), copying {}", e.getMessage(), target);
+            Files.copy(target, temp, StandardCopyOption.REPLACE_EXISTING);
+        }
+        atomicMove(temp, link);
+    }
+
+    /**
+     * Écrit content dans un temporaire du même répertoire puis le renomme sur path
+     * Un lien physique existant est remplacé (le blob qu'il désignait n'est pas modifié)
+     * et un lecteur ne voit jamais de fichier à moitié écrit.
+     */
+    private void replace(Path path, byte[] content) throws IOException {
+        Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, content);
+            atomicMove(temp, path);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+    }
+
+    public void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Impossible de supprimer {}: {}", path, e.getMessage());
+        }
+    }
+
     public byte[] readPdf(String type, String documentId) throws IOException {
         Path path = pdfPath(type, documentId);
         return Files.readAllBytes(path);
     }
 
+    /**
+     * Remplace l'OCR du document par un nouveau fichier (jamais écrit en place : le chemin peut être
+     * un lien vers un blob partagé avec d'autres documents)
+     */
     public void saveOcr(String type, String documentId, String text) throws IOException {
         Path path = ocrPath(type, documentId);
         ensureDir(path.getParent());
-        Files.writeString(path, text, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        replace(path, text.getBytes(StandardCharsets.UTF_8));
         log.info("OCR sauvegardé: {} ({} chars)", path, text.length());
     }
 
+    /**
+     * Sauvegarde l'OCR comme blob {sha256}.txt (réutilisable par les documents de même contenu)
+     * puis le lie au chemin OCR du document ; sans hash, équivaut à {@link #saveOcr(String, String, String)}
+     */
+    public void saveOcr(String type, String documentId, String text, String sha256) throws IOException {
+        if (sha256 == null) {
+            saveOcr(type, documentId, text);
+            return;
+        }
+        Path blob = blobPath(sha256, "txt");
+        ensureDir(blob.getParent());
+        Path temp = blob.resolveSibling(blob.getFileName() + "." + documentId + ".tmp");
+        Files.writeString(temp, text, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        atomicMove(temp, blob);
+        link(blob, ocrPath(type, documentId));
+        log.info("OCR sauvegardé: {} ({} chars, {})", ocrPath(type, documentId), text.length(), sha256);
+    }
+
     public String readOcr(String type, String documentId) throws IOException {
         Path path = ocrPath(type, documentId);
         return Files.readString(path, StandardCharsets.UTF_8);
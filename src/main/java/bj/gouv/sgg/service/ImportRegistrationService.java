@@ -0,0 +1,110 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.batch.util.DocumentIdParser.ParsedDocument;
+import bj.gouv.sgg.batch.util.LawDocumentFactory;
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.model.FetchResult;
+import bj.gouv.sgg.repository.FetchResultRepository;
+import bj.gouv.sgg.service.BulkImportService.ImportedPdf;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Enregistrement par lots des documents importés hors ligne dans fetch_results
+ * INSERT/UPDATE en batch JDBC : les ids IDENTITY empêchent Hibernate de regrouper les insertions.
+ * Le regroupement en un seul aller-retour (INSERT multi-lignes) est fait par Connector/J et suppose
+ * rewriteBatchedStatements=true dans l'URL de la datasource (valeur par défaut de application.yml).
+ * Chaque lot est validé dans sa propre transaction (un import long ne garde pas de verrous).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImportRegistrationService {
+
+    private static final String INSERT_SQL =
+        "INSERT INTO fetch_results (document_id, document_type, year, number, url, status, sha256, content_length, fetched_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // Même condition que isPromotable : la ligne peut avoir changé depuis la lecture du lot
+    private static final String UPDATE_SQL =
+        "UPDATE fetch_results SET status = 'DOWNLOADED', sha256 = COALESCE(?, sha256), " +
+        "content_length = COALESCE(?, content_length), claimed_at = NULL " +
+        "WHERE document_id = ? AND (status IN ('FOUND', 'FETCHED') " +
+        "OR (status = 'DOWNLOADING' AND (claimed_at IS NULL OR claimed_at < ?)))";
+
+    private final FetchResultRepository fetchResultRepository;
+    private final LawDocumentFactory documentFactory;
+    private final JdbcTemplate jdbcTemplate;
+    private final LawProperties properties;
+
+    /**
+     * - Document inconnu : inséré DOWNLOADED (PDF stocké) ou FETCHED (fichier invalide)
+     * - Document connu pas encore téléchargé (FOUND, FETCHED ou réservation DOWNLOADING expirée) et PDF stocké :
+     *   passé DOWNLOADED ; les documents déjà traités (EXTRACTED, CONSOLIDATED...) et les réservations actives
+     *   d'un téléchargement en cours ne sont pas modifiés
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Counts register(List<ImportedPdf> batch) {
+        Map<String, FetchResult> existing = fetchResultRepository
+            .findByDocumentIdIn(batch.stream().map(pdf -> pdf.getDocument().getDocumentId()).toList())
+            .stream()
+            .collect(Collectors.toMap(FetchResult::getDocumentId, Function.identity()));
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        LocalDateTime claimExpiry = LocalDateTime.now().minusMinutes(properties.getDownload().getClaimTimeoutMinutes());
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        for (ImportedPdf pdf : batch) {
+            ParsedDocument document = pdf.getDocument();
+            Long size = pdf.getSize() > 0 ? pdf.getSize() : null;
+            FetchResult current = existing.get(document.getDocumentId());
+            if (current == null) {
+                String url = documentFactory.create(document.getType(), document.getYear(), document.getNumber()).getUrl();
+                inserts.add(new Object[] {
+                    document.getDocumentId(), document.getType(), document.getYear(), document.getNumber(), url,
+                    pdf.isStored() ? "DOWNLOADED" : "FETCHED", pdf.getSha256(), pdf.isStored() ? size : null, now
+                });
+            } else if (pdf.isStored() && isPromotable(current, claimExpiry)) {
+                updates.add(new Object[] { pdf.getSha256(), size, document.getDocumentId(), Timestamp.valueOf(claimExpiry) });
+            }
+        }
+
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        }
+        log.debug("Import batch registered: {} inserted, {} updated ({} documents)", inserts.size(), updates.size(), batch.size());
+        return new Counts(inserts.size(), updates.size());
+    }
+
+    private static boolean isPromotable(FetchResult current, LocalDateTime claimExpiry) {
+        String status = current.getStatus();
+        if ("FOUND".equals(status) || "FETCHED".equals(status)) {
+            return true;
+        }
+        return "DOWNLOADING".equals(status)
+            && (current.getClaimedAt() == null || current.getClaimedAt().isBefore(claimExpiry));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Counts {
+        private final int inserted;
+        private final int updated;
+    }
+}
@@ -0,0 +1,184 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.exception.UpstreamUnavailableException;
+import bj.gouv.sgg.model.LawDocument;
+import bj.gouv.sgg.util.HtmlLinkTokenizer;
+import bj.gouv.sgg.util.RateLimitHandler;
+import bj.gouv.sgg.util.RateLimitHandler.EndpointClass;
+import bj.gouv.sgg.util.RateLimitHandler.ProbeResult;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker.Permit;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Découverte des documents via les pages de liste du site
+ * Chaque page est lue en streaming par {@link HtmlLinkTokenizer} ; les liens de la forme
+ * .../{type}-{année}-{numéro} sont convertis en documents FETCHED (l'URL de téléchargement
+ * garde le numéro tel qu'écrit par le site, padding compris).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ListingCrawlerService {
+
+    private static final Pattern DOCUMENT_LINK = Pattern.compile("(?:^|[/=])(loi|decret)-(\\d{4})-(\\d{1,5})(?=$|[/?#])");
+
+    private final LawProperties properties;
+    private final CloseableHttpClient upstreamHttpClient;
+    private final RateLimitHandler rateLimitHandler;
+    private final UpstreamCircuitBreaker circuitBreaker;
+
+    /**
+     * Télécharge et analyse une page de liste
+     * Les réponses transitoires (429, 5xx) sont retentées (law.http.max-retries tentatives au total,
+     * Retry-After respecté via le rate limiter) ; seuls 404/410 signifient que la page n'existe pas.
+     * @param page numéro de page (à partir de 1)
+     * @return documents référencés par la page (doublons possibles), ou null si la page n'existe pas
+     * @throws UpstreamUnavailableException si le circuit vers le site est ouvert ou si la page reste
+     *         en erreur après les retries (l'exécution est interrompue plutôt que terminée à tort)
+     */
+    public List<LawDocument> fetchPage(int page) throws IOException {
+        String url = properties.getListing().getUrlTemplate().replace("{page}", String.valueOf(page));
+        int maxAttempts = Math.max(1, properties.getHttp().getMaxRetries());
+
+        for (int attempt = 1; ; attempt++) {
+            PageResponse response = fetchOnce(url);
+            int statusCode = response.getStatusCode();
+            if (statusCode == 200) {
+                return response.getDocuments();
+            }
+            if (statusCode == 404 || statusCode == 410) {
+                log.info("Listing page {} does not exist: HTTP {}", url, statusCode);
+                return null;
+            }
+            if (statusCode != 429 && statusCode < 500) {
+                log.warn("Listing page {} unavailable: HTTP {}", url, statusCode);
+                return null;
+            }
+            if (attempt >= maxAttempts) {
+                throw new UpstreamUnavailableException(String.format(
+                    "Listing page %s still failing after %d attempts: HTTP %d", url, attempt, statusCode));
+            }
+
+            int delayMs = rateLimitHandler.retryDelayMs(new ProbeResult(statusCode, response.getRetryAfter()), attempt);
+            log.info("listing-retry url={} attempt={} status={} delayMs={}", url, attempt, statusCode, delayMs);
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while retrying " + url);
+            }
+        }
+    }
+
+    /**
+     * Un appel : jeton du rate limiter, circuit breaker, puis analyse du corps si 200
+     */
+    private PageResponse fetchOnce(String url) throws IOException {
+        Permit permit = circuitBreaker.tryAcquire();
+        if (permit == null) {
+            throw new UpstreamUnavailableException("Circuit open, listing page not fetched: " + url);
+        }
+        HttpGet request = new HttpGet(url);
+
+        rateLimitHandler.acquire(EndpointClass.PROBE);
+        try (var response = upstreamHttpClient.executeOpen(null, request, null)) {
+            Duration retryAfter = RateLimitHandler.parseRetryAfter(response);
+            rateLimitHandler.onResponse(EndpointClass.PROBE, response.getCode(), retryAfter);
+            circuitBreaker.onResponse(permit, response.getCode(), retryAfter);
+            HttpEntity entity = response.getEntity();
+            if (response.getCode() != 200) {
+                EntityUtils.consume(entity);
+                return new PageResponse(response.getCode(), retryAfter, null);
+            }
+            if (entity == null) {
+                return new PageResponse(200, retryAfter, List.of()); // Page vide
+            }
+
+            List<LawDocument> documents = new ArrayList<>();
+            try (Reader reader = new InputStreamReader(entity.getContent(), charsetOf(entity))) {
+                HtmlLinkTokenizer.forEachHref(reader, href -> {
+                    LawDocument document = toDocument(href);
+                    if (document != null) {
+                        documents.add(document);
+                    }
+                });
+            }
+            log.debug("Listing page {}: {} document links", url, documents.size());
+            return new PageResponse(200, retryAfter, documents);
+        } catch (IOException e) {
+            circuitBreaker.onFailure(permit);
+            throw e;
+        } finally {
+            circuitBreaker.release(permit);
+        }
+    }
+
+    /**
+     * Convertit un lien de la page en document, null si le lien ne désigne pas un document
+     */
+    LawDocument toDocument(String href) {
+        Matcher matcher = DOCUMENT_LINK.matcher(href);
+        if (!matcher.find()) {
+            return null;
+        }
+        String type = matcher.group(1);
+        int year = Integer.parseInt(matcher.group(2));
+        String numberAsWritten = matcher.group(3);
+        int number = Integer.parseInt(numberAsWritten);
+        if (number < 1) {
+            return null;
+        }
+
+        return LawDocument.builder()
+            .type(type)
+            .year(year)
+            .number(number)
+            .url(String.format("%s/%s-%d-%s/download", properties.getBaseUrl(), type, year, numberAsWritten))
+            .exists(true)
+            .status(LawDocument.ProcessingStatus.FETCHED)
+            .build();
+    }
+
+    private static Charset charsetOf(HttpEntity entity) {
+        try {
+            ContentType contentType = ContentType.parse(entity.getContentType());
+            if (contentType != null && contentType.getCharset() != null) {
+                return contentType.getCharset();
+            }
+        } catch (RuntimeException e) {
+            log.debug("Invalid Content-Type {}: {}", entity.getContentType(), e.getMessage());
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class PageResponse {
+        private final int statusCode;
+        private final Duration retryAfter;
+        private final List<LawDocument> documents;
+    }
+}
@@ -7,14 +7,27 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service pour gérer les plages de documents NOT_FOUND
  * Consolide automatiquement les documents adjacents en plages
+ * Les plages sont maintenues en mémoire par (type, année) (TreeMap indexée par numberMin) :
+ * les fusions se font sans accès BD, et seul le diff net (plages créées, modifiées, supprimées)
+ * est écrit par {@link #flush()}, une fois par chunk, dans la transaction du chunk.
+ * Ce cache suppose que l'application est le seul écrivain de fetch_not_found_ranges.
  */
 @Slf4j
 @Service
@@ -23,86 +36,121 @@ public class NotFoundRangeService {
     
     private final FetchNotFoundRangeRepository repository;
     
+    // Clé "type-année" -> plages en mémoire, chargées depuis la BD au premier usage
+    private final Map<String, YearRanges> cache = new ConcurrentHashMap<>();
+    
     /**
-     * Ajoute un document NOT_FOUND et consolide les plages automatiquement
+     * Ajoute un document NOT_FOUND et consolide les plages en mémoire
+     * Les modifications sont écrites en BD au prochain {@link #flush()}
      * @param document Le document NOT_FOUND à ajouter
      */
-    @Transactional
     public void addNotFoundDocument(LawDocument document) {
-        String documentType = document.getType();
-        Integer year = document.getYear();
-        Integer number = document.getNumber();
-        
-        // Récupérer les plages qui peuvent être fusionnées avec ce nouveau document
-        List<FetchNotFoundRange> overlappingRanges = repository.findOverlappingRanges(documentType, year, number);
-        
-        if (overlappingRanges.isEmpty()) {
-            // Créer une nouvelle plage avec un seul document
-            LocalDateTime now = LocalDateTime.now();
-            FetchNotFoundRange newRange = FetchNotFoundRange.builder()
-                .documentType(documentType)
-                .year(year)
-                .numberMin(number)
-                .numberMax(number)
-                .documentCount(1)
-                .createdAt(now)
-                .updatedAt(now)
-                .build();
-            repository.save(newRange);
-            log.debug("Created new NOT_FOUND range: {}", newRange.toRangeString());
-        } else {
-            // Fusionner toutes les plages chevauchantes + le nouveau document
-            FetchNotFoundRange mergedRange = overlappingRanges.get(0);
-            mergedRange.setNumberMin(Math.min(mergedRange.getNumberMin(), number));
-            mergedRange.setNumberMax(Math.max(mergedRange.getNumberMax(), number));
-            mergedRange.setDocumentCount(mergedRange.getNumberMax() - mergedRange.getNumberMin() + 1);
-            mergedRange.setUpdatedAt(LocalDateTime.now());
-            
-            // Fusionner avec les autres plages si nécessaire
-            for (int i = 1; i < overlappingRanges.size(); i++) {
-                FetchNotFoundRange other = overlappingRanges.get(i);
-                mergedRange.mergeWith(other);
-                repository.delete(other);
-            }
-            
-            repository.save(mergedRange);
-            log.debug("Merged into NOT_FOUND range: {} (merged {} ranges)", 
-                mergedRange.toRangeString(), overlappingRanges.size());
+        YearRanges ranges = ranges(document.getType(), document.getYear());
+        synchronized (ranges) {
+            ranges.add(document.getNumber());
         }
     }
     
     /**
-     * Ajoute plusieurs documents NOT_FOUND en batch
-     * IMPORTANT: Trie les documents avant traitement pour assurer la consolidation correcte
+     * Ajoute plusieurs documents NOT_FOUND (en mémoire)
      * @param documents Liste des documents NOT_FOUND
      */
-    @Transactional
     public void addNotFoundDocuments(List<LawDocument> documents) {
         if (documents.isEmpty()) {
             return;
         }
         
-        // Trier par type, année et numéro pour traiter les documents adjacents séquentiellement
-        // Cela évite la fragmentation causée par le traitement parallèle
         documents.stream()
             .filter(doc -> !doc.isExists())
-            .sorted((a, b) -> {
-                int typeCompare = a.getType().compareTo(b.getType());
-                if (typeCompare != 0) return typeCompare;
-                int yearCompare = Integer.compare(a.getYear(), b.getYear());
-                if (yearCompare != 0) return yearCompare;
-                return Integer.compare(a.getNumber(), b.getNumber());
-            })
             .forEach(this::addNotFoundDocument);
         
-        log.info("Processed {} NOT_FOUND documents into ranges", documents.size());
+        log.debug("Merged {} NOT_FOUND documents into in-memory ranges", documents.size());
+    }
+    
+    /**
+     * Écrit en BD le diff net des plages modifiées depuis le dernier flush
+     * (suppressions en une requête, puis insertions/mises à jour en batch)
+     * Si la transaction englobante est annulée, les années concernées sont rechargées depuis la BD.
+     * @return nombre de plages écrites ou supprimées
+     */
+    @Transactional
+    public int flush() {
+        List<String> flushedKeys = new ArrayList<>();
+        int inserted = 0;
+        int updated = 0;
+        int deleted = 0;
+        
+        for (Map.Entry<String, YearRanges> entry : cache.entrySet()) {
+            YearRanges ranges = entry.getValue();
+            synchronized (ranges) {
+                if (!ranges.hasChanges()) {
+                    continue;
+                }
+                if (!ranges.deletedIds.isEmpty()) {
+                    repository.deleteAllByIdInBatch(new ArrayList<>(ranges.deletedIds));
+                    deleted += ranges.deletedIds.size();
+                }
+                for (FetchNotFoundRange range : ranges.dirty) {
+                    if (range.getId() == null) {
+                        inserted++;
+                    } else {
+                        updated++;
+                    }
+                }
+                // persist() affecte l'id aux nouvelles plages : les flushs suivants feront des UPDATE
+                repository.saveAll(new ArrayList<>(ranges.dirty));
+                ranges.clearChanges();
+                flushedKeys.add(entry.getKey());
+            }
+        }
+        
+        if (!flushedKeys.isEmpty()) {
+            evictOnRollback(flushedKeys);
+            log.debug("Flushed NOT_FOUND ranges: inserted={} updated={} deleted={}", inserted, updated, deleted);
+        }
+        return inserted + updated + deleted;
+    }
+    
+    private void evictOnRollback(List<String> keys) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    keys.forEach(cache::remove);
+                    log.warn("NOT_FOUND ranges flush rolled back, evicted {} cached years", keys.size());
+                }
+            }
+        });
+    }
+    
+    private YearRanges ranges(String documentType, Integer year) {
+        String key = key(documentType, year);
+        YearRanges existing = cache.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        YearRanges loaded = new YearRanges(documentType, year,
+            repository.findByDocumentTypeAndYearOrderByNumberMinAsc(documentType, year));
+        YearRanges previous = cache.putIfAbsent(key, loaded);
+        return previous != null ? previous : loaded;
+    }
+    
+    private static String key(String documentType, Integer year) {
+        return documentType + "-" + year;
     }
     
     /**
      * Vérifie si un document est dans une plage NOT_FOUND
+     * Lu dans les plages en mémoire : les NOT_FOUND ajoutés depuis le dernier {@link #flush()} sont inclus.
      */
     public boolean isInNotFoundRange(String documentType, Integer year, Integer number) {
-        return repository.isInNotFoundRange(documentType, year, number);
+        YearRanges ranges = ranges(documentType, year);
+        synchronized (ranges) {
+            return ranges.contains(number);
+        }
     }
     
     /**
@@ -125,6 +173,7 @@ public class NotFoundRangeService {
      */
     @Transactional
     public int consolidateRanges(String documentType, Integer year) {
+        flush();
         List<FetchNotFoundRange> ranges = repository.findByDocumentTypeAndYearOrderByNumberMinAsc(documentType, year);
         
         if (ranges.size() <= 1) {
@@ -150,9 +199,91 @@ public class NotFoundRangeService {
         consolidated.add(current);
         
         repository.saveAll(consolidated);
+        cache.remove(key(documentType, year));
         log.info("Consolidated {} ranges for {}-{} into {} ranges", 
             ranges.size(), documentType, year, consolidated.size());
         
         return mergedCount;
     }
+    
+    /**
+     * Plages d'une année, non chevauchantes et non adjacentes, indexées par numberMin
+     * Accès protégé par synchronized sur l'instance
+     */
+    private static final class YearRanges {
+        private final String documentType;
+        private final Integer year;
+        private final TreeMap<Integer, FetchNotFoundRange> byMin = new TreeMap<>();
+        // Identité (et non equals/hashCode Lombok, calculés sur des champs mutables)
+        private final Set<FetchNotFoundRange> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Set<Long> deletedIds = new HashSet<>();
+        
+        private YearRanges(String documentType, Integer year, List<FetchNotFoundRange> persisted) {
+            this.documentType = documentType;
+            this.year = year;
+            persisted.forEach(range -> byMin.put(range.getNumberMin(), range));
+        }
+        
+        private boolean contains(int number) {
+            Map.Entry<Integer, FetchNotFoundRange> floor = byMin.floorEntry(number);
+            return floor != null && floor.getValue().getNumberMax() >= number;
+        }
+        
+        private void add(int number) {
+            Map.Entry<Integer, FetchNotFoundRange> floor = byMin.floorEntry(number);
+            if (floor != null && floor.getValue().getNumberMax() >= number) {
+                return; // Déjà couvert
+            }
+            
+            FetchNotFoundRange left = floor != null && floor.getValue().getNumberMax() == number - 1
+                ? floor.getValue() : null;
+            FetchNotFoundRange right = byMin.get(number + 1);
+            
+            if (left != null && right != null) {
+                // Le numéro relie deux plages : la plage de gauche absorbe celle de droite
+                byMin.remove(right.getNumberMin());
+                dirty.remove(right);
+                if (right.getId() != null) {
+                    deletedIds.add(right.getId());
+                }
+                resize(left, left.getNumberMin(), right.getNumberMax());
+            } else if (left != null) {
+                resize(left, left.getNumberMin(), number);
+            } else if (right != null) {
+                byMin.remove(right.getNumberMin());
+                resize(right, number, right.getNumberMax());
+                byMin.put(number, right);
+            } else {
+                LocalDateTime now = LocalDateTime.now();
+                FetchNotFoundRange range = FetchNotFoundRange.builder()
+                    .documentType(documentType)
+                    .year(year)
+                    .numberMin(number)
+                    .numberMax(number)
+                    .documentCount(1)
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build();
+                byMin.put(number, range);
+                dirty.add(range);
+            }
+        }
+        
+        private void resize(FetchNotFoundRange range, int min, int max) {
+            range.setNumberMin(min);
+            range.setNumberMax(max);
+            range.setDocumentCount(max - min + 1);
+            range.setUpdatedAt(LocalDateTime.now());
+            dirty.add(range);
+        }
+        
+        private boolean hasChanges() {
+            return !dirty.isEmpty() || !deletedIds.isEmpty();
+        }
+        
+        private void clearChanges() {
+            dirty.clear();
+            deletedIds.clear();
+        }
+    }
 }
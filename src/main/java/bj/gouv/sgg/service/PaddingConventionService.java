@@ -0,0 +1,156 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.repository.FetchResultRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Modèle de la convention de padding des numéros 1-99 (loi-2024-5 vs loi-2024-05,
+ * loi-2024-42 vs loi-2024-042).
+ * - Appris par (type, année, classe de padding) depuis les URLs déjà stockées dans fetch_results
+ * - Mis à jour en ligne à chaque document trouvé
+ * - Probabilité estimée avec un lissage de Laplace : (padded + 1) / (total + 2)
+ * Une année sans observation hérite des observations cumulées du type.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PaddingConventionService {
+
+    private final FetchResultRepository fetchResultRepository;
+    private final LawProperties properties;
+
+    // Clé "type-année" -> compteurs, chargés à la première utilisation
+    private final Map<String, YearModel> models = new ConcurrentHashMap<>();
+    // Clé "type" -> compteurs cumulés toutes années confondues (a priori pour les années vides)
+    private final Map<String, YearModel> typeTotals = new ConcurrentHashMap<>();
+
+    /**
+     * Décide quelle variante sonder en premier pour un numéro 1-99
+     * @param digits 2 (numéros 1-9) ou 3 (numéros 10-99)
+     */
+    public Plan plan(String type, int year, int digits) {
+        Counts counts = model(type, year).counts(digits);
+        if (counts.total() == 0) {
+            counts = typeTotals.computeIfAbsent(type, k -> new YearModel()).counts(digits);
+        }
+
+        double paddedProbability = (counts.padded.get() + 1.0) / (counts.total() + 2.0);
+        boolean paddedFirst = paddedProbability > 0.5;
+        double confidence = Math.max(paddedProbability, 1.0 - paddedProbability);
+        LawProperties.Padding config = properties.getPadding();
+        boolean race = config.isRaceEnabled() && confidence < config.getRaceConfidenceThreshold();
+
+        return new Plan(paddedFirst, race, confidence);
+    }
+
+    /**
+     * Enregistre la variante sous laquelle un document a été trouvé
+     */
+    public void record(String type, int year, int digits, boolean padded) {
+        model(type, year).counts(digits).increment(padded);
+        typeTotals.computeIfAbsent(type, k -> new YearModel()).counts(digits).increment(padded);
+    }
+
+    private YearModel model(String type, int year) {
+        String key = key(type, year);
+        YearModel existing = models.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        // Chargement hors de la map pour ne pas bloquer les autres clés pendant la requête
+        YearModel loaded = load(type, year);
+        YearModel previous = models.putIfAbsent(key, loaded);
+        if (previous != null) {
+            return previous;
+        }
+        YearModel totals = typeTotals.computeIfAbsent(type, k -> new YearModel());
+        totals.twoDigits.add(loaded.twoDigits);
+        totals.threeDigits.add(loaded.threeDigits);
+        return loaded;
+    }
+
+    private YearModel load(String type, int year) {
+        YearModel model = new YearModel();
+        for (Object[] row : fetchResultRepository.findSmallNumberUrls(type, year)) {
+            int number = ((Number) row[0]).intValue();
+            int digits = number <= 9 ? 2 : 3;
+            Boolean padded = isPadded((String) row[1]);
+            if (padded != null) {
+                model.counts(digits).increment(padded);
+            }
+        }
+        log.debug("Padding model loaded for {}-{}: pad2={}/{} pad3={}/{}", type, year,
+            model.twoDigits.padded.get(), model.twoDigits.total(),
+            model.threeDigits.padded.get(), model.threeDigits.total());
+        return model;
+    }
+
+    /**
+     * @return true si le numéro de l'URL ({base}/{type}-{year}-{number}/download) commence par 0,
+     *         null si l'URL n'a pas le format attendu
+     */
+    static Boolean isPadded(String url) {
+        if (url == null) {
+            return null;
+        }
+        int end = url.endsWith("/download") ? url.length() - "/download".length() : url.length();
+        int start = url.lastIndexOf('-', end - 1) + 1;
+        if (start <= 0 || start >= end) {
+            return null;
+        }
+        return url.charAt(start) == '0';
+    }
+
+    private static String key(String type, int year) {
+        return type + "-" + year;
+    }
+
+    /**
+     * Décision de sonde : variante à tenter en premier, et sonde parallèle des deux variantes
+     * quand la confiance est trop faible
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Plan {
+        private final boolean paddedFirst;
+        private final boolean race;
+        private final double confidence;
+    }
+
+    private static final class YearModel {
+        private final Counts twoDigits = new Counts();
+        private final Counts threeDigits = new Counts();
+
+        private Counts counts(int digits) {
+            return digits == 2 ? twoDigits : threeDigits;
+        }
+    }
+
+    private static final class Counts {
+        private final AtomicInteger padded = new AtomicInteger();
+        private final AtomicInteger unpadded = new AtomicInteger();
+
+        private void increment(boolean isPadded) {
+            (isPadded ? padded : unpadded).incrementAndGet();
+        }
+
+        private void add(Counts other) {
+            padded.addAndGet(other.padded.get());
+            unpadded.addAndGet(other.unpadded.get());
+        }
+
+        private int total() {
+            return padded.get() + unpadded.get();
+        }
+    }
+}
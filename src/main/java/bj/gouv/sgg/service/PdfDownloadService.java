@@ -3,51 +3,67 @@ package bj.gouv.sgg.service;
 import bj.gouv.sgg.exception.EmptyPdfException;
 import bj.gouv.sgg.exception.PdfDownloadException;
 import bj.gouv.sgg.model.LawDocument;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
 /**
  * Service pour le téléchargement de PDF
+ * Le corps HTTP est copié en streaming vers un fichier temporaire du volume cible,
+ * le SHA-256 étant calculé au passage : la mémoire utilisée est celle d'un buffer,
+ * quelle que soit la taille du PDF.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class PdfDownloadService {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private final RestTemplate restTemplate;
     private final FileStorageService fileStorageService;
 
+    /**
+     * Télécharge et publie immédiatement le PDF (traitement unitaire d'un document)
+     * Le SHA-256 du contenu publié est reporté sur document (à persister par l'appelant dans fetch_results).
+     */
     public File downloadPdf(LawDocument document) {
-        String url = document.getUrl() + "/download";
-        String pdfPath = fileStorageService.getPdfPath(document.getType(), document.getDocumentId());
-        
-        File pdfFile = new File(pdfPath);
-        File parentDir = pdfFile.getParentFile();
-        if (!parentDir.exists()) {
-            parentDir.mkdirs();
-        }
-
+        String url = downloadUrl(document.getUrl());
         log.info("Downloading PDF from: {}", url);
 
         try {
-            byte[] pdfBytes = restTemplate.getForObject(URI.create(url), byte[].class);
-            
-            if (pdfBytes == null || pdfBytes.length == 0) {
-                throw new EmptyPdfException(document.getDocumentId(), url);
-            }
+            StreamedPdf pdf = restTemplate.execute(URI.create(url), HttpMethod.GET, null,
+                response -> stream(document.getType(), document.getDocumentId(), response.getBody()));
 
-            try (FileOutputStream fos = new FileOutputStream(pdfFile)) {
-                fos.write(pdfBytes);
+            if (pdf == null || pdf.getSize() == 0) {
+                if (pdf != null) {
+                    fileStorageService.deleteQuietly(pdf.getPartialFile());
+                }
+                throw new EmptyPdfException(document.getDocumentId(), url);
             }
 
-            log.info("PDF downloaded successfully: {} ({} bytes)", pdfFile.getAbsolutePath(), pdfBytes.length);
-            return pdfFile;
+            Path pdfFile = fileStorageService.commitPdf(document.getType(), document.getDocumentId(),
+                pdf.getPartialFile(), pdf.getSha256());
+            document.setSha256(pdf.getSha256());
+            log.info("PDF downloaded successfully: {} ({} bytes)", pdfFile.toAbsolutePath(), pdf.getSize());
+            return pdfFile.toFile();
 
         } catch (EmptyPdfException e) {
             throw e;
@@ -56,4 +72,68 @@ public class PdfDownloadService {
             throw new PdfDownloadException(document.getDocumentId(), url, e);
         }
     }
+
+    /**
+     * Copie un corps de réponse vers {documentId}.pdf.part en calculant son SHA-256
+     * Le fichier temporaire est supprimé si la copie échoue ; il doit ensuite être publié
+     * par {@link FileStorageService#commitPdf} ou supprimé par l'appelant.
+     */
+    public StreamedPdf stream(String type, String documentId, InputStream body) throws IOException {
+        Path partialFile = fileStorageService.partialPdfPath(type, documentId);
+        MessageDigest digest = sha256();
+        long size;
+        try (InputStream in = new DigestInputStream(body, digest);
+             OutputStream out = Files.newOutputStream(partialFile,
+                 StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            size = copy(in, out);
+        } catch (IOException e) {
+            fileStorageService.deleteQuietly(partialFile);
+            throw e;
+        }
+        return new StreamedPdf(partialFile, size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            total += read;
+        }
+        return total;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Les URLs issues du fetch batch se terminent déjà par /download, pas celles du fetch unitaire
+     */
+    private static String downloadUrl(String url) {
+        return url.endsWith("/download") ? url : url + "/download";
+    }
+
+    /**
+     * PDF écrit dans son fichier temporaire, pas encore publié
+     * (avec les validateurs HTTP de la réponse quand ils sont connus)
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class StreamedPdf {
+        private final Path partialFile;
+        private final long size;
+        private final String sha256;
+        private final String etag;
+        private final String lastModified;
+
+        public StreamedPdf(Path partialFile, long size, String sha256) {
+            this(partialFile, size, sha256, null, null);
+        }
+    }
 }
@@ -0,0 +1,471 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.model.LawDocument;
+import bj.gouv.sgg.service.PdfDownloadService.StreamedPdf;
+import bj.gouv.sgg.util.RateLimitHandler;
+import bj.gouv.sgg.util.RateLimitHandler.EndpointClass;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker.Permit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpHead;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Téléchargement reprenable des PDFs
+ * - Le fichier partiel ({documentId}.pdf.part) et ses validateurs (ETag, Last-Modified, taille,
+ *   dans {documentId}.pdf.part.meta) sont conservés quand la connexion tombe
+ * - Le run suivant reprend avec "Range: bytes=N-" et "If-Range" : si le fichier a changé sur
+ *   le serveur, celui-ci répond 200 et le téléchargement repart de zéro
+ * - Optionnel (parallelRangeThresholdMb) : un gros fichier est découpé en plages téléchargées
+ *   en parallèle puis écrites à leur position ; les plages terminées sont notées dans le .meta
+ * Le PDF n'est rendu (puis publié par le writer) qu'une fois complet, sa taille vérifiée
+ * et son SHA-256 calculé sur le fichier assemblé.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ResumableDownloadService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+|\\*)");
+
+    private final CloseableHttpClient upstreamHttpClient;
+    private final RateLimitHandler rateLimitHandler;
+    private final UpstreamCircuitBreaker circuitBreaker;
+    private final FileStorageService fileStorageService;
+    private final LawProperties properties;
+
+    /**
+     * Télécharge (ou reprend) le PDF d'un document
+     * @param permit autorisation du circuit breaker, partagée par toutes les requêtes du téléchargement
+     * @return PDF complet dans son fichier temporaire, ou null si le téléchargement n'a pas abouti
+     *         (le fichier partiel est conservé s'il peut être repris)
+     * @throws IOException erreur réseau ou disque (le fichier partiel est conservé s'il peut être repris)
+     */
+    public StreamedPdf download(LawDocument document, Permit permit) throws IOException {
+        String type = document.getType();
+        String documentId = document.getDocumentId();
+        Path partialFile = fileStorageService.partialPdfPath(type, documentId);
+        Path metaFile = fileStorageService.partialMetaPath(type, documentId);
+
+        PartialMeta meta = properties.getDownload().isResumeEnabled() ? PartialMeta.load(metaFile) : null;
+        if (meta == null || !Files.exists(partialFile) || !meta.url.equals(document.getUrl())) {
+            discard(partialFile, metaFile);
+            meta = null;
+        }
+
+        if (meta != null && meta.segments > 0) {
+            return downloadSegments(document, partialFile, metaFile, meta, permit);
+        }
+        if (meta == null && parallelRangesEnabled()) {
+            PartialMeta probed = head(document.getUrl(), permit);
+            if (probed != null && probed.length >= parallelThresholdBytes()) {
+                probed.segments = Math.max(2, properties.getDownload().getRangeSegments());
+                return downloadSegments(document, partialFile, metaFile, probed, permit);
+            }
+        }
+        return downloadSequential(document, partialFile, metaFile, meta, permit);
+    }
+
+    // ------------------------------------------------------------------------
+    // Téléchargement séquentiel (avec reprise depuis la fin du fichier partiel)
+    // ------------------------------------------------------------------------
+
+    private StreamedPdf downloadSequential(LawDocument document, Path partialFile, Path metaFile,
+                                           PartialMeta meta, Permit permit) throws IOException {
+        String documentId = document.getDocumentId();
+        long offset = meta != null ? Files.size(partialFile) : 0;
+
+        HttpGet request = new HttpGet(document.getUrl());
+        if (offset > 0) {
+            request.setHeader(HttpHeaders.RANGE, "bytes=" + offset + "-");
+            request.setHeader(HttpHeaders.IF_RANGE, meta.validator());
+        }
+
+        boolean append;
+        MessageDigest digest = sha256();
+        try (var response = execute(request, permit)) {
+            int code = response.getCode();
+            if (code == 206 && offset > 0 && rangeStart(response) == offset) {
+                append = true;
+                log.info("Resuming download: {} from byte {} of {}", documentId, offset, meta.length);
+            } else if (code == 200) {
+                append = false;
+                if (offset > 0) {
+                    log.info("Partial file outdated on server, restarting download: {}", documentId);
+                }
+                meta = PartialMeta.fromResponse(document.getUrl(), response, 0);
+            } else if (code == 416 && offset > 0 && offset == meta.length) {
+                EntityUtils.consume(response.getEntity());
+                return complete(documentId, partialFile, metaFile, meta, null);
+            } else {
+                EntityUtils.consume(response.getEntity());
+                if (code == 416 || code == 206) {
+                    // Plage refusée ou incohérente : le fichier partiel n'est plus exploitable
+                    discard(partialFile, metaFile);
+                }
+                log.error("Download failed for {}: HTTP {}", documentId, code);
+                return null;
+            }
+
+            boolean resumable = properties.getDownload().isResumeEnabled() && meta.validator() != null;
+            if (resumable) {
+                meta.save(metaFile);
+            }
+
+            try (InputStream in = append ? response.getEntity().getContent()
+                                         : new DigestInputStream(response.getEntity().getContent(), digest);
+                 OutputStream out = Files.newOutputStream(partialFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+                copy(in, out);
+            } catch (IOException e) {
+                if (resumable) {
+                    log.warn("Download interrupted, partial file kept: {} ({} bytes)", documentId, Files.size(partialFile));
+                } else {
+                    discard(partialFile, metaFile);
+                }
+                throw e;
+            }
+        }
+        // Reprise : le hash doit couvrir tout le fichier, il est recalculé sur le fichier assemblé
+        return complete(documentId, partialFile, metaFile, meta, append ? null : digest);
+    }
+
+    // ------------------------------------------------------------------------
+    // Téléchargement en plages parallèles (gros fichiers)
+    // ------------------------------------------------------------------------
+
+    private StreamedPdf downloadSegments(LawDocument document, Path partialFile, Path metaFile,
+                                         PartialMeta meta, Permit permit) throws IOException {
+        String documentId = document.getDocumentId();
+        long segmentSize = (meta.length + meta.segments - 1) / meta.segments;
+
+        if (!Files.exists(partialFile)) {
+            try (RandomAccessFile file = new RandomAccessFile(partialFile.toFile(), "rw")) {
+                file.setLength(meta.length);
+            }
+        }
+        meta.save(metaFile);
+
+        List<Integer> pending = new ArrayList<>();
+        for (int segment = 0; segment < meta.segments; segment++) {
+            if (!meta.done.get(segment)) {
+                pending.add(segment);
+            }
+        }
+        log.info("Ranged download: {} ({} bytes, {} segments, {} pending)",
+                 documentId, meta.length, meta.segments, pending.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, pending.size()), runnable -> {
+            Thread thread = new Thread(runnable, "law-range-" + documentId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        boolean outdated = false;
+        IOException failure = null;
+        try (FileChannel channel = FileChannel.open(partialFile, StandardOpenOption.WRITE)) {
+            List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+            for (int segment : pending) {
+                long start = segment * segmentSize;
+                long end = Math.min(meta.length, start + segmentSize) - 1;
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    boolean fetched = fetchSegment(document.getUrl(), meta, channel, start, end, permit);
+                    if (fetched) {
+                        meta.markDone(segment, metaFile);
+                    }
+                    return fetched;
+                }, executor));
+            }
+            for (CompletableFuture<Boolean> future : futures) {
+                try {
+                    outdated |= !future.join();
+                } catch (CompletionException e) {
+                    failure = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (outdated) {
+            log.info("Partial file outdated on server, discarded: {}", documentId);
+            discard(partialFile, metaFile);
+            return null;
+        }
+        if (failure != null) {
+            log.warn("Ranged download interrupted, {} of {} segments kept: {}",
+                     meta.done.cardinality(), meta.segments, documentId);
+            throw failure;
+        }
+        return complete(documentId, partialFile, metaFile, meta, null);
+    }
+
+    /**
+     * @return false si le serveur ne sert plus la même version du fichier (validateur changé)
+     */
+    private boolean fetchSegment(String url, PartialMeta meta, FileChannel channel, long start, long end,
+                                 Permit permit) {
+        HttpGet request = new HttpGet(url);
+        request.setHeader(HttpHeaders.RANGE, "bytes=" + start + "-" + end);
+        request.setHeader(HttpHeaders.IF_RANGE, meta.validator());
+        try (var response = execute(request, permit)) {
+            if (response.getCode() != 206 || rangeStart(response) != start) {
+                EntityUtils.consume(response.getEntity());
+                if (response.getCode() == 200) {
+                    return false;
+                }
+                throw new IOException("Unexpected response for range " + start + "-" + end + ": HTTP " + response.getCode());
+            }
+            long position = start;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (InputStream in = response.getEntity().getContent()) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                    while (chunk.hasRemaining()) {
+                        position += channel.write(chunk, position);
+                    }
+                }
+            }
+            if (position != end + 1) {
+                throw new IOException("Truncated range " + start + "-" + end + ": received up to " + position);
+            }
+            return true;
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Utilitaires
+    // ------------------------------------------------------------------------
+
+    /**
+     * Vérifie la taille, calcule le SHA-256 si besoin (sur le fichier assemblé) et supprime le .meta
+     */
+    private StreamedPdf complete(String documentId, Path partialFile, Path metaFile,
+                                 PartialMeta meta, MessageDigest streamedDigest) throws IOException {
+        long size = Files.size(partialFile);
+        if (meta.length > 0 && size != meta.length) {
+            log.warn("Incomplete download: {} ({} of {} bytes), kept for resume", documentId, size, meta.length);
+            return null;
+        }
+        String sha256 = HexFormat.of().formatHex(streamedDigest != null ? streamedDigest.digest() : hashFile(partialFile));
+        Files.deleteIfExists(metaFile);
+        return new StreamedPdf(partialFile, size, sha256, meta.etag, meta.lastModified);
+    }
+
+    private PartialMeta head(String url, Permit permit) throws IOException {
+        try (var response = execute(new HttpHead(url), permit)) {
+            if (response.getCode() != 200 || !"bytes".equalsIgnoreCase(headerValue(response, HttpHeaders.ACCEPT_RANGES))) {
+                return null;
+            }
+            PartialMeta meta = PartialMeta.fromResponse(url, response, 0);
+            return meta.validator() != null && meta.length > 0 ? meta : null;
+        }
+    }
+
+    /**
+     * Envoie une requête sous le bucket DOWNLOAD et enregistre l'issue (rate limiter, circuit)
+     * Également utilisé par {@link RevalidationService}.
+     */
+    ClassicHttpResponse execute(HttpUriRequestBase request, Permit permit) throws IOException {
+        rateLimitHandler.acquire(EndpointClass.DOWNLOAD);
+        ClassicHttpResponse response;
+        try {
+            response = upstreamHttpClient.executeOpen(null, request, null);
+        } catch (IOException e) {
+            circuitBreaker.onFailure(permit);
+            throw e;
+        }
+        Duration retryAfter = RateLimitHandler.parseRetryAfter(response);
+        rateLimitHandler.onResponse(EndpointClass.DOWNLOAD, response.getCode(), retryAfter);
+        circuitBreaker.onResponse(permit, response.getCode(), retryAfter);
+        return response;
+    }
+
+    private boolean parallelRangesEnabled() {
+        return properties.getDownload().isResumeEnabled() && properties.getDownload().getParallelRangeThresholdMb() > 0;
+    }
+
+    private long parallelThresholdBytes() {
+        return properties.getDownload().getParallelRangeThresholdMb() * 1024L * 1024L;
+    }
+
+    private void discard(Path partialFile, Path metaFile) {
+        fileStorageService.deleteQuietly(partialFile);
+        fileStorageService.deleteQuietly(metaFile);
+    }
+
+    private static long rangeStart(ClassicHttpResponse response) {
+        Matcher matcher = CONTENT_RANGE.matcher(String.valueOf(headerValue(response, HttpHeaders.CONTENT_RANGE)));
+        return matcher.find() ? parseLength(matcher.group(1)) : -1;
+    }
+
+    /**
+     * Lit une taille envoyée par le serveur ou relue du .meta, sans jamais lever d'exception
+     * @return -1 si la valeur est absente, négative ou invalide (taille inconnue)
+     */
+    static long parseLength(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            long length = Long.parseLong(value.trim());
+            return length >= 0 ? length : -1;
+        } catch (NumberFormatException e) {
+            log.debug("Invalid length: {}", value);
+            return -1;
+        }
+    }
+
+    private static String headerValue(ClassicHttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    private static byte[] hashFile(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Contenu du fichier .meta : URL, validateurs, taille totale et plages terminées
+     */
+    static class PartialMeta {
+        private String url;
+        private String etag;
+        private String lastModified;
+        private long length;
+        private int segments; // 0 = téléchargement séquentiel
+        private final BitSet done = new BitSet();
+
+        /**
+         * Validateur pour If-Range : ETag fort de préférence, sinon Last-Modified
+         */
+        String validator() {
+            if (etag != null && !etag.startsWith("W/")) {
+                return etag;
+            }
+            return lastModified;
+        }
+
+        static PartialMeta fromResponse(String url, ClassicHttpResponse response, long offset) {
+            PartialMeta meta = new PartialMeta();
+            meta.url = url;
+            meta.etag = headerValue(response, HttpHeaders.ETAG);
+            meta.lastModified = headerValue(response, HttpHeaders.LAST_MODIFIED);
+            long contentLength = parseLength(headerValue(response, HttpHeaders.CONTENT_LENGTH));
+            meta.length = contentLength >= 0 ? offset + contentLength : 0; // 0 = taille inconnue, non vérifiée
+            return meta;
+        }
+
+        synchronized void markDone(int segment, Path metaFile) {
+            done.set(segment);
+            try {
+                save(metaFile);
+            } catch (IOException e) {
+                log.warn("Unable to save download progress {}: {}", metaFile, e.getMessage());
+            }
+        }
+
+        synchronized void save(Path metaFile) throws IOException {
+            Properties props = new Properties();
+            props.setProperty("url", url);
+            if (etag != null) {
+                props.setProperty("etag", etag);
+            }
+            if (lastModified != null) {
+                props.setProperty("lastModified", lastModified);
+            }
+            props.setProperty("length", String.valueOf(length));
+            props.setProperty("segments", String.valueOf(segments));
+            props.setProperty("done", done.stream().collect(StringBuilder::new,
+                (sb, i) -> sb.append(sb.length() > 0 ? "," : "").append(i), StringBuilder::append).toString());
+            try (OutputStream out = Files.newOutputStream(metaFile)) {
+                props.store(out, "Partial download");
+            }
+        }
+
+        /**
+         * @return null si absent, illisible ou sans validateur (reprise impossible)
+         */
+        static PartialMeta load(Path metaFile) {
+            if (!Files.exists(metaFile)) {
+                return null;
+            }
+            Properties props = new Properties();
+            try (InputStream in = Files.newInputStream(metaFile)) {
+                props.load(in);
+                PartialMeta meta = new PartialMeta();
+                meta.url = props.getProperty("url", "");
+                meta.etag = props.getProperty("etag");
+                meta.lastModified = props.getProperty("lastModified");
+                meta.length = Math.max(0, parseLength(props.getProperty("length")));
+                meta.segments = Integer.parseInt(props.getProperty("segments", "0"));
+                for (String index : props.getProperty("done", "").split(",")) {
+                    if (!index.isBlank()) {
+                        meta.done.set(Integer.parseInt(index.trim()));
+                    }
+                }
+                return meta.validator() != null ? meta : null;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Unreadable partial download metadata {}: {}", metaFile, e.getMessage());
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.model.FetchResult;
+import bj.gouv.sgg.service.PdfDownloadService.StreamedPdf;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker.Permit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpHead;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+
+/**
+ * Revalidation des PDFs déjà téléchargés (détection des fichiers remplacés par l'éditeur)
+ * - Validateurs connus (ETag, Last-Modified) : GET conditionnel (If-None-Match, If-Modified-Since) ;
+ *   un 304 ne coûte que les en-têtes, un 200 apporte directement le nouveau fichier
+ * - Sans validateur : HEAD, la taille (Content-Length) sert de comparaison et les validateurs
+ *   éventuels sont enregistrés pour les revalidations suivantes
+ * Un contenu de même SHA-256 n'est pas considéré comme modifié. Un PDF modifié est republié
+ * et ses résultats dérivés (OCR, articles JSON) sont supprimés pour être recalculés.
+ * Les champs de la FetchResult sont mis à jour, la sauvegarde est faite par l'appelant.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RevalidationService {
+
+    private final ResumableDownloadService resumableDownloadService;
+    private final PdfDownloadService pdfDownloadService;
+    private final FileStorageService fileStorageService;
+
+    public enum Outcome {
+        UNCHANGED,  // 304, ou même contenu
+        CHANGED,    // Nouveau contenu téléchargé et publié
+        BASELINE,   // Premiers validateurs enregistrés, aucune comparaison possible
+        GONE,       // 404/410 : le PDF local est conservé
+        FAILED      // Réponse inattendue : à revérifier au prochain run
+    }
+
+    public Outcome revalidate(FetchResult fetchResult, Permit permit) throws IOException {
+        if (fetchResult.getEtag() == null && fetchResult.getLastModified() == null) {
+            return revalidateBySize(fetchResult, permit);
+        }
+
+        HttpGet request = new HttpGet(fetchResult.getUrl());
+        if (fetchResult.getEtag() != null) {
+            request.setHeader(HttpHeaders.IF_NONE_MATCH, fetchResult.getEtag());
+        }
+        if (fetchResult.getLastModified() != null) {
+            request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, fetchResult.getLastModified());
+        }
+        try (ClassicHttpResponse response = resumableDownloadService.execute(request, permit)) {
+            int code = response.getCode();
+            if (code == 304) {
+                EntityUtils.consume(response.getEntity());
+                updateValidators(fetchResult, response, false);
+                return done(fetchResult, Outcome.UNCHANGED);
+            }
+            if (code == 200) {
+                return replace(fetchResult, response);
+            }
+            EntityUtils.consume(response.getEntity());
+            return unexpected(fetchResult, code);
+        }
+    }
+
+    /**
+     * Pas de validateur connu : HEAD, puis téléchargement complet seulement si la taille a changé
+     */
+    private Outcome revalidateBySize(FetchResult fetchResult, Permit permit) throws IOException {
+        Long length;
+        HttpHead head = new HttpHead(fetchResult.getUrl());
+        try (ClassicHttpResponse response = resumableDownloadService.execute(head, permit)) {
+            if (response.getCode() != 200) {
+                return unexpected(fetchResult, response.getCode());
+            }
+            length = contentLength(response);
+            if (length == null || fetchResult.getContentLength() == null || length.equals(fetchResult.getContentLength())) {
+                boolean baseline = fetchResult.getContentLength() == null;
+                updateValidators(fetchResult, response, true);
+                return done(fetchResult, baseline ? Outcome.BASELINE : Outcome.UNCHANGED);
+            }
+        }
+
+        log.info("Size changed for {}: {} -> {} bytes", fetchResult.getDocumentId(), fetchResult.getContentLength(), length);
+        HttpGet get = new HttpGet(fetchResult.getUrl());
+        try (ClassicHttpResponse response = resumableDownloadService.execute(get, permit)) {
+            if (response.getCode() != 200) {
+                EntityUtils.consume(response.getEntity());
+                return unexpected(fetchResult, response.getCode());
+            }
+            return replace(fetchResult, response);
+        }
+    }
+
+    /**
+     * Nouveau corps reçu : publié s'il diffère du contenu stocké
+     */
+    private Outcome replace(FetchResult fetchResult, ClassicHttpResponse response) throws IOException {
+        String type = fetchResult.getDocumentType();
+        String documentId = fetchResult.getDocumentId();
+        StreamedPdf pdf;
+        try (InputStream body = response.getEntity().getContent()) {
+            pdf = pdfDownloadService.stream(type, documentId, body);
+        }
+        updateValidators(fetchResult, response, true);
+
+        if (pdf.getSize() == 0 || pdf.getSha256().equals(fetchResult.getSha256())) {
+            // Corps vide ou identique (serveur sans réponse conditionnelle) : le fichier local reste valide
+            fileStorageService.deleteQuietly(pdf.getPartialFile());
+            return done(fetchResult, Outcome.UNCHANGED);
+        }
+
+        fileStorageService.commitPdf(type, documentId, pdf.getPartialFile(), pdf.getSha256());
+        fileStorageService.deleteDerived(type, documentId);
+        log.info("PDF changed on server: {} (sha256 {} -> {}, {} bytes)",
+                 documentId, fetchResult.getSha256(), pdf.getSha256(), pdf.getSize());
+        fetchResult.setSha256(pdf.getSha256());
+        fetchResult.setContentLength(pdf.getSize());
+        // OCR et articles supprimés : le document repasse par ocrJob, l'extraction puis la consolidation
+        fetchResult.setStatus("DOWNLOADED");
+        return done(fetchResult, Outcome.CHANGED);
+    }
+
+    private Outcome unexpected(FetchResult fetchResult, int code) {
+        if (code == 404 || code == 410) {
+            log.warn("PDF no longer published: {} (HTTP {}), local copy kept", fetchResult.getDocumentId(), code);
+            return done(fetchResult, Outcome.GONE);
+        }
+        log.warn("Revalidation failed for {}: HTTP {}", fetchResult.getDocumentId(), code);
+        return Outcome.FAILED;
+    }
+
+    private static Outcome done(FetchResult fetchResult, Outcome outcome) {
+        fetchResult.setRevalidatedAt(LocalDateTime.now());
+        return outcome;
+    }
+
+    /**
+     * Un 304 peut omettre les validateurs : seuls ceux présents remplacent les valeurs stockées
+     * @param withLength la réponse décrit le fichier complet (200), sa taille est enregistrée
+     */
+    private static void updateValidators(FetchResult fetchResult, ClassicHttpResponse response, boolean withLength) {
+        String etag = headerValue(response, HttpHeaders.ETAG);
+        String lastModified = headerValue(response, HttpHeaders.LAST_MODIFIED);
+        if (etag != null) {
+            fetchResult.setEtag(etag);
+        }
+        if (lastModified != null) {
+            fetchResult.setLastModified(lastModified);
+        }
+        Long length = withLength ? contentLength(response) : null;
+        if (length != null) {
+            fetchResult.setContentLength(length);
+        }
+    }
+
+    private static Long contentLength(ClassicHttpResponse response) {
+        String value = headerValue(response, HttpHeaders.CONTENT_LENGTH);
+        try {
+            return value != null ? Long.parseLong(value.trim()) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String headerValue(ClassicHttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+}
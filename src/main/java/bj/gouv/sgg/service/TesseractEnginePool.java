@@ -0,0 +1,301 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.exception.TesseractInitializationException;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.tesseract.TessBaseAPI;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool borné de moteurs Tesseract initialisés (modèle chargé une seule fois par moteur)
+ * - Un sous-pool par modèle (ocr.language, et ocr.cascade.best-language pour la cascade),
+ *   chacun de taille ocr.threads (0 = nombre de CPU), un moteur par worker de l'exécuteur de pages
+ * - Modèle principal préchauffé au démarrage ; un moteur manquant est créé à la demande
+ * - Un moteur n'est jamais partagé entre deux threads : acquire() / release() autour de chaque page
+ * - Tampons natifs de pixels réutilisés d'une page à l'autre (au plus un par worker conservé)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TesseractEnginePool {
+
+    private static final int INIT_MAX_RETRIES = 3;
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 60;
+
+    private final LawProperties properties;
+
+    private final Map<String, Engines> enginesByLanguage = new ConcurrentHashMap<>();
+    private final BlockingQueue<BytePointer> pixelBuffers = new LinkedBlockingQueue<>();
+    private ExecutorService pageExecutor;
+    private volatile boolean stopped;
+
+    // Répertoire temporaire pour tessdata (chaque modèle extrait une seule fois)
+    private static Path tessdataDir;
+
+    public int size() {
+        int threads = properties.getOcr().getThreads();
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Exécuteur des pages OCR : autant de threads que de moteurs, un thread n'attend donc jamais
+     * un moteur détenu par une tâche en file
+     */
+    public synchronized ExecutorService pageExecutor() {
+        if (pageExecutor == null) {
+            AtomicInteger counter = new AtomicInteger();
+            pageExecutor = Executors.newFixedThreadPool(size(), runnable -> {
+                Thread thread = new Thread(runnable, "ocr-page-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return pageExecutor;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long start = System.currentTimeMillis();
+        String language = properties.getOcr().getLanguage();
+        Engines engines = engines(language);
+        try {
+            while (engines.count() < size()) {
+                release(language, engines.create());
+            }
+            log.info("tesseract-pool-ready: language={} engines={} durationMs={}",
+                     language, engines.count(), System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            // Pas bloquant au démarrage : les moteurs seront créés (ou l'erreur remontée) au premier OCR
+            log.warn("tesseract-pool-warmup-failed: language={} engines={} error={}", language, engines.count(), e.getMessage());
+        }
+    }
+
+    /**
+     * Moteur libre du modèle principal (ocr.language)
+     */
+    public TessBaseAPI acquire() throws IOException, InterruptedException {
+        return acquire(properties.getOcr().getLanguage());
+    }
+
+    /**
+     * Moteur libre du modèle demandé, créé si son sous-pool n'est pas plein, sinon attente du prochain moteur rendu
+     */
+    public TessBaseAPI acquire(String language) throws IOException, InterruptedException {
+        return engines(language).acquire();
+    }
+
+    public void release(TessBaseAPI api) {
+        release(properties.getOcr().getLanguage(), api);
+    }
+
+    public void release(String language, TessBaseAPI api) {
+        clearEngine(api);
+        engines(language).release(api);
+    }
+
+    /**
+     * Tampon natif d'au moins capacity octets (réutilisé si possible, agrandi sinon)
+     */
+    public BytePointer acquirePixelBuffer(long capacity) {
+        BytePointer buffer = pixelBuffers.poll();
+        if (buffer != null && buffer.capacity() >= capacity) {
+            return buffer;
+        }
+        if (buffer != null) {
+            buffer.deallocate();
+        }
+        return new BytePointer(capacity);
+    }
+
+    public void releasePixelBuffer(BytePointer buffer) {
+        synchronized (pixelBuffers) {
+            if (stopped || pixelBuffers.size() >= size() || !pixelBuffers.offer(buffer)) {
+                buffer.deallocate();
+            }
+        }
+    }
+
+    private Engines engines(String language) {
+        return enginesByLanguage.computeIfAbsent(language, Engines::new);
+    }
+
+    /**
+     * Moteurs d'un modèle : libres (idle) et tous ceux créés
+     */
+    @RequiredArgsConstructor
+    private class Engines {
+
+        private final String language;
+        private final BlockingQueue<TessBaseAPI> idle = new LinkedBlockingQueue<>();
+        private final List<TessBaseAPI> all = new ArrayList<>();
+        private boolean closed;
+
+        TessBaseAPI acquire() throws IOException, InterruptedException {
+            TessBaseAPI api = idle.poll();
+            if (api != null) {
+                return api;
+            }
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("Tesseract engine pool closed");
+                }
+                if (all.size() < size()) {
+                    return create();
+                }
+            }
+            return idle.take();
+        }
+
+        /**
+         * Moteur rendu après la fermeture du pool (OCR terminé pendant l'arrêt) : libéré immédiatement
+         */
+        synchronized void release(TessBaseAPI api) {
+            if (closed) {
+                end(api);
+            } else {
+                idle.offer(api);
+            }
+        }
+
+        synchronized int count() {
+            return all.size();
+        }
+
+        synchronized TessBaseAPI create() throws IOException {
+            TessBaseAPI api = newEngine(language);
+            all.add(api);
+            log.debug("tesseract-engine-created: language={} engines={}/{}", language, all.size(), size());
+            return api;
+        }
+
+        /**
+         * Seuls les moteurs libres sont détruits : un moteur encore dans GetUTF8Text le sera à son retour
+         */
+        synchronized void close() {
+            closed = true;
+            TessBaseAPI api;
+            while ((api = idle.poll()) != null) {
+                end(api);
+            }
+            if (!all.isEmpty()) {
+                log.warn("tesseract-engines-busy-at-shutdown: language={} engines={}", language, all.size());
+            }
+        }
+
+        private void end(TessBaseAPI api) {
+            all.remove(api);
+            endEngine(api);
+        }
+    }
+
+    // Cycle de vie natif d'un moteur (redéfini par les tests du pool)
+
+    TessBaseAPI newEngine(String language) throws IOException {
+        Path tessDir = extractTessdata(language);
+        TessBaseAPI api = new TessBaseAPI();
+        int retries = 0;
+        // Initialiser avec le chemin du répertoire tessdata
+        while (api.Init(tessDir.toString(), language) != 0) {
+            retries++;
+            if (retries >= INIT_MAX_RETRIES) {
+                api.close();
+                throw new TesseractInitializationException(tessDir.toString(), INIT_MAX_RETRIES);
+            }
+            log.warn("tesseract-retry: language={} attempt={}/{}", language, retries, INIT_MAX_RETRIES);
+            try {
+                Thread.sleep(1000L * retries);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                api.close();
+                throw new TesseractInitializationException(tessDir.toString(), "Tesseract initialization interrupted", e);
+            }
+        }
+        return api;
+    }
+
+    void clearEngine(TessBaseAPI api) {
+        api.Clear(); // Libère image et résultats, conserve le modèle chargé
+    }
+
+    void endEngine(TessBaseAPI api) {
+        api.End();
+        api.close();
+    }
+
+    /**
+     * Extrait et prépare les données Tesseract depuis les resources.
+     * Les fichiers .traineddata doivent être dans src/main/resources/tessdata/ (ex. "fra+eng" : fra et eng)
+     */
+    private static synchronized Path extractTessdata(String language) throws IOException {
+        if (tessdataDir == null) {
+            tessdataDir = Files.createTempDirectory("tessdata");
+        }
+        for (String model : language.split("\\+")) {
+            String file = model + ".traineddata";
+            Path targetFile = tessdataDir.resolve(file);
+            if (Files.exists(targetFile)) {
+                continue;
+            }
+            try (InputStream is = TesseractEnginePool.class.getResourceAsStream("/tessdata/" + file)) {
+                if (is != null) {
+                    Files.copy(is, targetFile, StandardCopyOption.REPLACE_EXISTING);
+                    log.info("tesseract-tessdata: extracted {}", file);
+                } else {
+                    log.warn("tesseract-tessdata: file not found in resources: {}", file);
+                }
+            }
+        }
+        return tessdataDir;
+    }
+
+    /**
+     * Attend la fin des pages en cours (un appel natif Tesseract n'est pas interruptible) avant de
+     * détruire les moteurs libres ; un moteur encore occupé après le délai est détruit à sa restitution
+     */
+    @PreDestroy
+    public void shutdown() {
+        ExecutorService executor;
+        synchronized (this) {
+            stopped = true;
+            executor = pageExecutor;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    log.warn("tesseract-pool-shutdown-timeout: seconds={}", SHUTDOWN_TIMEOUT_SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        enginesByLanguage.values().forEach(Engines::close);
+        synchronized (pixelBuffers) {
+            BytePointer buffer;
+            while ((buffer = pixelBuffers.poll()) != null) {
+                buffer.deallocate();
+            }
+        }
+    }
+}
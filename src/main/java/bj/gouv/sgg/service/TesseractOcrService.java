@@ -1,195 +1,530 @@
 package bj.gouv.sgg.service;
 
+import bj.gouv.sgg.config.ArticleExtractorConfig;
 import bj.gouv.sgg.config.LawProperties;
-import bj.gouv.sgg.exception.TesseractInitializationException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.contentstream.PDFStreamEngine;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.contentstream.operator.OperatorName;
+import org.apache.pdfbox.contentstream.operator.state.Concatenate;
+import org.apache.pdfbox.contentstream.operator.state.Restore;
+import org.apache.pdfbox.contentstream.operator.state.Save;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.rendering.ImageType;
 import org.apache.pdfbox.rendering.PDFRenderer;
 import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.util.Matrix;
 import org.bytedeco.javacpp.BytePointer;
-import org.bytedeco.leptonica.PIX;
 import org.bytedeco.tesseract.TessBaseAPI;
 import org.springframework.stereotype.Service;
 
-import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
-
-import static org.bytedeco.leptonica.global.leptonica.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
  * Service d'extraction OCR avec Tesseract
+ * (couche texte utilisée page par page, seules les pages scannées passent par les moteurs
+ * de {@link TesseractEnginePool}, reconnues en parallèle, en cascade modèle rapide / second passage)
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class TesseractOcrService {
+public class TesseractOcrService implements MeterBinder {
+    
+    private static final int MIN_NATIVE_DPI = 150;
+    private static final double FULL_PAGE_COVERAGE = 0.95; // Part minimale de la page couverte par l'image d'un scan natif
+    private static final int MAX_FORM_DEPTH = 3; // Imbrication maximale de Form XObjects explorée à la recherche d'images
     
     private final LawProperties properties;
+    private final TesseractEnginePool enginePool;
+    private final ArticleExtractorConfig articleExtractorConfig;
     
-    // Répertoire temporaire pour tessdata (extrait une seule fois)
-    private static Path tessdataDir;
+    // Statistiques de la cascade (passage rapide / second passage)
+    private final TierStats fastTier = new TierStats("fast");
+    private final TierStats secondTier = new TierStats("second");
+    private final AtomicLong improvedPages = new AtomicLong();
     
     /**
-     * Perform OCR on PDF file and write result to text file
+     * Extraction page par page
+     * - Chaque page est d'abord lue depuis sa couche texte, notée avec {@link #calculateTextQuality}
+     * - Seules les pages sous ocr.qualityThreshold (ou quasi vides mais porteuses d'images) sont rendues et OCRisées
+     * - Document entièrement textuel : texte direct complet, sans marqueurs de page (comportement inchangé)
+     * - Document avec pages OCRisées : le texte s'arrête à la première page contenant AMPLIATIONS
+     *   (les pages scannées suivantes ne sont pas OCRisées)
      */
-    public void performOcr(File pdfFile, File ocrFile) throws IOException {
-        byte[] pdfBytes = Files.readAllBytes(pdfFile.toPath());
-        String text = extractText(pdfBytes);
+    public String extractText(byte[] pdfBytes) throws IOException {
+        int totalPages;
+        String[] pageTexts;
+        List<Integer> scannedPages = new ArrayList<>();
+        int endPage;
+        try (PDDocument document = Loader.loadPDF(pdfBytes)) {
+            totalPages = document.getNumberOfPages();
+            pageTexts = new String[totalPages];
+            endPage = totalPages;
+            
+            PDFTextStripper stripper = new PDFTextStripper();
+            for (int page = 0; page < totalPages; page++) {
+                stripper.setStartPage(page + 1);
+                stripper.setEndPage(page + 1);
+                String pageText = stripper.getText(document);
+                
+                if (needsOcr(document.getPage(page), pageText)) {
+                    scannedPages.add(page);
+                    continue;
+                }
+                pageTexts[page] = pageText;
+                // Vérifier si AMPLIATIONS est détecté (fin de la loi)
+                if (endPage == totalPages && pageText.toUpperCase().contains("AMPLIATIONS")) {
+                    endPage = page + 1;
+                }
+            }
+        }
         
-        // Create parent directory if needed
-        File parentDir = ocrFile.getParentFile();
-        if (parentDir != null && !parentDir.exists()) {
-            parentDir.mkdirs();
+        int lastPage = endPage;
+        scannedPages.removeIf(page -> page >= lastPage);
+        if (scannedPages.isEmpty()) {
+            log.debug("Direct extraction OK ({} pages)", totalPages);
+            return Arrays.stream(pageTexts).map(text -> text != null ? text : "").collect(Collectors.joining());
         }
         
-        Files.writeString(ocrFile.toPath(), text);
-        log.info("OCR completed: {} -> {} ({} chars)", pdfFile.getName(), ocrFile.getName(), text.length());
+        log.info("tesseract-routing: pages={} textLayer={} ocr={}",
+                 totalPages, endPage - scannedPages.size(), scannedPages.size());
+        endPage = extractWithOcr(pdfBytes, pageTexts, scannedPages, endPage);
+        
+        StringBuilder result = new StringBuilder();
+        for (int page = 0; page < endPage; page++) {
+            String pageText = pageTexts[page];
+            if (pageText != null && !pageText.isBlank()) {
+                if (totalPages > 1) {
+                    result.append("\n\n=== Page ").append(page + 1).append("/").append(totalPages).append(" ===\n\n");
+                }
+                result.append(pageText);
+            }
+        }
+        if (endPage < totalPages) {
+            log.info("tesseract-ampliations-detected: page={}/{} (stopping OCR)", endPage, totalPages);
+        }
+        return result.toString();
     }
     
-    public String extractText(byte[] pdfBytes) throws IOException {
-        try (PDDocument document = Loader.loadPDF(pdfBytes)) {
-            // Try direct extraction first
-            PDFTextStripper stripper = new PDFTextStripper();
-            String directText = stripper.getText(document);
-            
-            double quality = calculateTextQuality(directText);
-            
-            if (quality >= properties.getOcr().getQualityThreshold()) {
-                log.debug("Direct extraction OK (quality: {:.2f})", quality);
-                return directText;
-            }
-            
-            log.debug("Direct extraction quality too low ({:.2f}), using OCR", quality);
-            return extractWithOcr(document);
+    /**
+     * Une page est OCRisée si sa couche texte est de mauvaise qualité ou, quand elle contient des images,
+     * trop courte pour être le contenu réel (numéro de page ou tampon sur un scan : ocr.scannedPageMaxChars)
+     * Règle partagée avec la voie rapide ({@link TextLayerService}) pour la dernière page d'un PDF.
+     */
+    boolean needsOcr(PDPage page, String pageText) {
+        boolean hasImages = hasImages(page.getResources(), 0);
+        if (pageText.isBlank()) {
+            return hasImages; // Page blanche : rien à reconnaître
+        }
+        if (calculateTextQuality(pageText) < properties.getOcr().getQualityThreshold()) {
+            return true;
         }
+        return hasImages && pageText.strip().length() < properties.getOcr().getScannedPageMaxChars();
     }
     
     /**
-     * Extrait et prépare les données Tesseract depuis les resources.
-     * Les fichiers .traineddata doivent être dans src/main/resources/tessdata/
+     * Images de la page, y compris celles dessinées par une Form XObject (les formulaires seuls,
+     * vectoriels ou textuels, ne rendent pas une page scannée)
      */
-    private static synchronized Path extractTessdata() throws IOException {
-        if (tessdataDir == null) {
-            tessdataDir = Files.createTempDirectory("tessdata");
-            String[] files = { "fra.traineddata" }; // Ajouter d'autres langues si nécessaire
-            
-            for (String file : files) {
-                try (InputStream is = TesseractOcrService.class.getResourceAsStream("/tessdata/" + file)) {
-                    if (is != null) {
-                        Path targetFile = tessdataDir.resolve(file);
-                        Files.copy(is, targetFile, StandardCopyOption.REPLACE_EXISTING);
-                        log.info("tesseract-tessdata: extracted {}", file);
-                    } else {
-                        log.warn("tesseract-tessdata: file not found in resources: {}", file);
-                    }
+    private static boolean hasImages(PDResources resources, int depth) {
+        if (resources == null || depth > MAX_FORM_DEPTH) {
+            return false;
+        }
+        for (COSName name : resources.getXObjectNames()) {
+            if (resources.isImageXObject(name)) {
+                return true;
+            }
+            try {
+                if (resources.getXObject(name) instanceof PDFormXObject form && hasImages(form.getResources(), depth + 1)) {
+                    return true;
                 }
+            } catch (IOException e) {
+                log.debug("Unreadable XObject {}: {}", name.getName(), e.getMessage());
             }
         }
-        return tessdataDir;
+        return false;
     }
     
-    private String extractWithOcr(PDDocument document) throws IOException {
-        StringBuilder result = new StringBuilder();
-        PDFRenderer renderer = new PDFRenderer(document);
-        int totalPages = document.getNumberOfPages();
-        
-        log.info("tesseract-pages: pages={}", totalPages);
-        
-        // Extraire tessdata dans un répertoire temporaire
-        Path tessDir = extractTessdata();
-        
-        try (TessBaseAPI api = new TessBaseAPI()) {
-            // Retry initialization if needed
-            int retries = 0;
-            int maxRetries = 3;
-            while (retries < maxRetries) {
-                // Initialiser avec le chemin du répertoire tessdata
-                if (api.Init(tessDir.toString(), properties.getOcr().getLanguage()) == 0) {
-                    break;
-                }
-                retries++;
-                if (retries < maxRetries) {
-                    log.warn("tesseract-retry: attempt={}/{}", retries, maxRetries);
-                    try {
-                        Thread.sleep(1000L * retries);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new TesseractInitializationException(tessDir.toString(), "Tesseract initialization interrupted", e);
-                    }
-                } else {
-                    throw new TesseractInitializationException(tessDir.toString(), maxRetries);
+    /**
+     * OCR des pages scannées en parallèle sur l'exécuteur du pool de moteurs
+     * - Chaque worker charge son propre PDDocument (PDFBox n'est pas thread-safe) et prend les pages dans l'ordre
+     * - La première page contenant AMPLIATIONS borne le document : les pages suivantes ne sont plus
+     *   distribuées et celles déjà reconnues sont ignorées
+     *
+     * @return borne (exclusive) des pages à conserver
+     */
+    private int extractWithOcr(byte[] pdfBytes, String[] pageTexts, List<Integer> scannedPages, int endPage) throws IOException {
+        int workers = Math.max(1, Math.min(enginePool.size(), scannedPages.size()));
+        log.info("tesseract-pages: pages={} workers={}", scannedPages.size(), workers);
+        
+        AtomicInteger nextIndex = new AtomicInteger();
+        AtomicInteger end = new AtomicInteger(endPage); // Exclusive : page AMPLIATIONS + 1
+        AtomicInteger donePages = new AtomicInteger();
+        AtomicBoolean stop = new AtomicBoolean(); // Échec d'un worker : les autres ne prennent plus de page
+        
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            futures.add(enginePool.pageExecutor().submit(() -> {
+                try {
+                    ocrPages(pdfBytes, pageTexts, scannedPages, nextIndex, end, donePages, stop);
+                } catch (IOException | RuntimeException e) {
+                    stop.set(true);
+                    throw e;
                 }
-            }
-            
-            for (int page = 0; page < totalPages; page++) {
-                String pageText = processPage(api, renderer, page);
+                return null;
+            }));
+        }
+        try {
+            awaitAll(futures);
+        } finally {
+            stop.set(true);
+        }
+        return end.get();
+    }
+    
+    private void ocrPages(byte[] pdfBytes, String[] pageTexts, List<Integer> scannedPages, AtomicInteger nextIndex,
+                          AtomicInteger endPage, AtomicInteger donePages, AtomicBoolean stop) throws IOException {
+        int total = scannedPages.size();
+        try (PDDocument document = Loader.loadPDF(pdfBytes)) {
+            PDFRenderer renderer = new PDFRenderer(document);
+            int index;
+            while (!stop.get() && !Thread.currentThread().isInterrupted()
+                    && (index = nextIndex.getAndIncrement()) < total && scannedPages.get(index) < endPage.get()) {
+                int page = scannedPages.get(index);
+                String pageText = processPage(document, renderer, page);
+                pageTexts[page] = pageText;
                 
-                if (pageText != null && !pageText.isBlank()) {
-                    if (totalPages > 1) {
-                        result.append("\n\n=== Page ").append(page + 1).append("/").append(totalPages).append(" ===\n\n");
-                    }
-                    result.append(pageText);
-                    
-                    // Vérifier si AMPLIATIONS est détecté (fin de la loi)
-                    if (pageText.toUpperCase().contains("AMPLIATIONS")) {
-                        log.info("tesseract-ampliations-detected: page={}/{} (stopping OCR)", page + 1, totalPages);
-                        break; // Arrêter l'OCR immédiatement
-                    }
+                // Vérifier si AMPLIATIONS est détecté (fin de la loi)
+                if (pageText.toUpperCase().contains("AMPLIATIONS")) {
+                    endPage.accumulateAndGet(page + 1, Math::min);
                 }
                 
                 // Log de progression pour les documents longs
-                if ((page + 1) % 10 == 0 || page == totalPages - 1) {
-                    log.info("tesseract-progress: page={}/{}", page + 1, totalPages);
+                int done = donePages.incrementAndGet();
+                if (done % 10 == 0 || done == total) {
+                    log.info("tesseract-progress: page={}/{}", done, total);
                 }
             }
         }
+    }
+    
+    private static void awaitAll(List<Future<?>> futures) throws IOException {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("OCR interrupted", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException("OCR failed", cause);
+        }
+    }
+    
+    /**
+     * Traite une page PDF individuelle : image embarquée d'une page scannée si possible,
+     * sinon rendu en niveaux de gris, puis OCR en cascade
+     * - Passage rapide avec ocr.language sur toutes les pages
+     * - Page peu fiable (MeanTextConf ou taux de mots hors dictionnaire) : second passage décidé par
+     *   {@link #secondPass} (modèle précis ou nouveau rendu plus fin)
+     * - Le résultat de meilleure confiance est conservé
+     */
+    private String processPage(PDDocument document, PDFRenderer renderer, int pageIndex) throws IOException {
+        LawProperties.Ocr ocr = properties.getOcr();
+        PDPage page = document.getPage(pageIndex);
+        BufferedImage image = embeddedScan(page, pageIndex);
+        boolean embedded = image != null;
+        int bytesPerPixel = 1;
+        int dpi;
+        if (embedded) {
+            dpi = (int) Math.round(image.getWidth() * 72.0 / page.getCropBox().getWidth());
+            if (isBlackOnWhiteBinary(image)) {
+                bytesPerPixel = 0;
+            } else {
+                image = toGray(image);
+            }
+        } else {
+            dpi = ocr.getDpi();
+            image = renderer.renderImageWithDPI(pageIndex, dpi, ImageType.GRAY);
+        }
         
-        return result.toString();
+        long start = System.nanoTime();
+        Recognition fast = recognize(image, bytesPerPixel, dpi, ocr.getLanguage());
+        long fastNanos = System.nanoTime() - start;
+        fastTier.record(fastNanos);
+        
+        LawProperties.Ocr.Cascade cascade = ocr.getCascade();
+        if (!cascade.isActive()) {
+            return fast.getText();
+        }
+        double unrecognizedRate = articleExtractorConfig.unrecognizedWordsRate(fast.getText());
+        SecondPass secondPass = secondPass(cascade, embedded, dpi, fast.getConfidence(), unrecognizedRate);
+        if (secondPass == SecondPass.NONE) {
+            return fast.getText();
+        }
+        
+        start = System.nanoTime();
+        Recognition second = secondPass == SecondPass.BEST_MODEL
+            ? recognize(image, bytesPerPixel, dpi, cascade.getBestLanguage())
+            : recognize(renderer.renderImageWithDPI(pageIndex, cascade.getRerenderDpi(), ImageType.GRAY), 1,
+                        cascade.getRerenderDpi(), ocr.getLanguage());
+        long secondNanos = System.nanoTime() - start;
+        secondTier.record(secondNanos);
+        
+        boolean improved = second.getConfidence() > fast.getConfidence();
+        if (improved) {
+            improvedPages.incrementAndGet();
+        }
+        log.debug("tesseract-cascade: page={} fastConf={} unrecognized={} secondConf={} kept={} fastMs={} secondMs={}",
+                  pageIndex + 1, fast.getConfidence(), String.format("%.2f", unrecognizedRate), second.getConfidence(),
+                  improved ? "second" : "fast", fastNanos / 1_000_000, secondNanos / 1_000_000);
+        return improved ? second.getText() : fast.getText();
     }
     
     /**
-     * Traite une page PDF individuelle : conversion en image puis OCR
+     * Décision de la cascade pour une page reconnue par le modèle rapide
+     * - Page fiable (confiance et taux de mots du dictionnaire suffisants) : NONE ; une page sans texte
+     *   (confiance 0) est toujours reprise
+     * - Modèle précis configuré : BEST_MODEL, sur la même image
+     * - Sinon RERENDER si rerenderDpi dépasse la résolution de la page, uniquement pour une page rendue :
+     *   suréchantillonner une image native n'apporte aucune information
      */
-    private String processPage(TessBaseAPI api, PDFRenderer renderer, int pageIndex) throws IOException {
-        BufferedImage image = renderer.renderImageWithDPI(pageIndex, properties.getOcr().getDpi());
+    static SecondPass secondPass(LawProperties.Ocr.Cascade cascade, boolean embedded, int pageDpi,
+                                 int confidence, double unrecognizedRate) {
+        if (!cascade.isActive()
+                || (confidence >= cascade.getMinConfidence() && unrecognizedRate <= cascade.getMaxUnrecognizedRate())) {
+            return SecondPass.NONE;
+        }
+        if (!cascade.getBestLanguage().isBlank()) {
+            return SecondPass.BEST_MODEL;
+        }
+        if (!embedded && cascade.getRerenderDpi() > pageDpi) {
+            return SecondPass.RERENDER;
+        }
+        return SecondPass.NONE;
+    }
+    
+    enum SecondPass {
+        NONE,
+        BEST_MODEL,
+        RERENDER
+    }
+    
+    /**
+     * Image unique d'une page scannée, décodée à sa résolution et profondeur natives (souvent 1 bit)
+     * - La page ne référence qu'une seule XObject, une image (pas un masque), sans rotation de page
+     * - Les proportions de l'image correspondent à celles de la page
+     * - L'image est dessinée sans rotation ni miroir et couvre la page (matrice de placement, voir {@link #drawnImageBounds})
+     * - Résolution effective >= MIN_NATIVE_DPI (en dessous, le rendu à ocr.dpi reconnaît mieux)
+     *
+     * @return null si la page doit être rendue (cas général)
+     */
+    private BufferedImage embeddedScan(PDPage page, int pageIndex) {
+        PDResources resources = page.getResources();
+        if (resources == null || page.getRotation() % 360 != 0) {
+            return null;
+        }
+        try {
+            Iterator<COSName> names = resources.getXObjectNames().iterator();
+            if (!names.hasNext()) {
+                return null;
+            }
+            PDXObject xObject = resources.getXObject(names.next());
+            if (names.hasNext() || !(xObject instanceof PDImageXObject pdImage) || pdImage.isStencil()) {
+                return null;
+            }
+            PDRectangle box = page.getCropBox();
+            double pageRatio = box.getWidth() / box.getHeight();
+            double imageRatio = (double) pdImage.getWidth() / pdImage.getHeight();
+            if (Math.abs(imageRatio / pageRatio - 1.0) > 0.02) {
+                return null;
+            }
+            Rectangle2D drawn = drawnImageBounds(page);
+            if (drawn == null || !coversPage(drawn, box)
+                    || pdImage.getWidth() * 72.0 / drawn.getWidth() < MIN_NATIVE_DPI) {
+                return null;
+            }
+            return pdImage.getImage();
+        } catch (IOException | RuntimeException e) {
+            // Filtre non décodable (ex. JBIG2 sans plugin ImageIO) : rendu complet
+            log.debug("tesseract-embedded-image-fallback: page={} error={}", pageIndex + 1, e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Emprise sur la page de la première image dessinée (opérateur Do), d'après la matrice de transformation courante
+     * @return null si aucune image n'est dessinée, ou si elle l'est avec rotation, cisaillement ou miroir
+     *         (l'image décodée ne serait pas dans le sens de lecture)
+     */
+    static Rectangle2D drawnImageBounds(PDPage page) throws IOException {
+        ImagePlacement placement = new ImagePlacement();
+        placement.processPage(page);
+        Matrix ctm = placement.matrix;
+        if (ctm == null || ctm.getShearX() != 0 || ctm.getShearY() != 0
+                || ctm.getScaleX() <= 0 || ctm.getScaleY() <= 0) {
+            return null;
+        }
+        // Une image occupe le carré unité de son repère : la matrice donne directement sa position et sa taille
+        return new Rectangle2D.Double(ctm.getTranslateX(), ctm.getTranslateY(), ctm.getScaleX(), ctm.getScaleY());
+    }
+    
+    /**
+     * L'image dessinée couvre au moins FULL_PAGE_COVERAGE de la surface visible (crop box) de la page
+     */
+    static boolean coversPage(Rectangle2D drawn, PDRectangle box) {
+        Rectangle2D page = new Rectangle2D.Double(box.getLowerLeftX(), box.getLowerLeftY(), box.getWidth(), box.getHeight());
+        Rectangle2D visible = drawn.createIntersection(page);
+        if (visible.isEmpty()) {
+            return false;
+        }
+        return visible.getWidth() * visible.getHeight() >= FULL_PAGE_COVERAGE * page.getWidth() * page.getHeight();
+    }
+    
+    /**
+     * Lecture du flux de contenu limitée à l'état graphique (cm, q, Q) : relève la matrice du premier Do
+     */
+    private static final class ImagePlacement extends PDFStreamEngine {
         
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(image, "PNG", baos);
-        byte[] imageBytes = baos.toByteArray();
+        private Matrix matrix;
         
-        PIX pix = pixReadMem(imageBytes, imageBytes.length);
-        if (pix == null) {
-            log.warn("Failed to read image for page {}", pageIndex);
-            return "";
+        ImagePlacement() {
+            addOperator(new Concatenate(this));
+            addOperator(new Save(this));
+            addOperator(new Restore(this));
         }
         
+        @Override
+        protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+            if (matrix == null && OperatorName.DRAW_OBJECT.equals(operator.getName())) {
+                matrix = getGraphicsState().getCurrentTransformationMatrix().clone();
+            }
+            super.processOperator(operator, operands);
+        }
+    }
+    
+    /**
+     * Image 1 bit dont l'index 0 est noir et 1 blanc : format attendu par SetImage(bytes_per_pixel = 0)
+     */
+    private static boolean isBlackOnWhiteBinary(BufferedImage image) {
+        if (!(image.getSampleModel() instanceof MultiPixelPackedSampleModel sampleModel)
+                || sampleModel.getPixelBitStride() != 1
+                || !(image.getRaster().getDataBuffer() instanceof DataBufferByte)
+                || !(image.getColorModel() instanceof IndexColorModel colorModel)
+                || colorModel.getMapSize() != 2) {
+            return false;
+        }
+        return (colorModel.getRGB(0) & 0xFFFFFF) == 0x000000 && (colorModel.getRGB(1) & 0xFFFFFF) == 0xFFFFFF;
+    }
+    
+    private static BufferedImage toGray(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            return image;
+        }
+        BufferedImage gray = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = gray.createGraphics();
         try {
-            api.SetImage(pix);
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return gray;
+    }
+    
+    /**
+     * Les pixels sont copiés tels quels dans un tampon natif réutilisé (pas d'encodage intermédiaire)
+     *
+     * @param bytesPerPixel 0 pour une image 1 bit, 1 pour des niveaux de gris 8 bits
+     * @param language modèle du sous-pool de moteurs utilisé
+     */
+    private Recognition recognize(BufferedImage image, int bytesPerPixel, int dpi, String language) throws IOException {
+        Raster raster = image.getRaster();
+        byte[] pixels = ((DataBufferByte) raster.getDataBuffer()).getData();
+        int bytesPerLine = raster.getSampleModel() instanceof MultiPixelPackedSampleModel packed
+            ? packed.getScanlineStride()
+            : ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride();
+        
+        TessBaseAPI api = null;
+        BytePointer buffer = null;
+        try {
+            buffer = enginePool.acquirePixelBuffer(pixels.length);
+            buffer.position(0).put(pixels, 0, pixels.length);
+            
+            api = enginePool.acquire(language);
+            api.SetImage(buffer, image.getWidth(), image.getHeight(), bytesPerPixel, bytesPerLine);
+            api.SetSourceResolution(dpi);
             BytePointer textPtr = api.GetUTF8Text();
-            if (textPtr != null) {
-                try {
-                    return textPtr.getString(StandardCharsets.UTF_8);
-                } finally {
-                    textPtr.deallocate();
-                }
+            if (textPtr == null) {
+                return new Recognition("", 0);
+            }
+            try {
+                // MeanTextConf après GetUTF8Text : réutilise la reconnaissance déjà faite
+                return new Recognition(textPtr.getString(StandardCharsets.UTF_8), api.MeanTextConf());
+            } finally {
+                textPtr.deallocate();
             }
-            return "";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("OCR interrupted", e);
         } finally {
-            pixDestroy(pix);
+            if (api != null) {
+                enginePool.release(language, api);
+            }
+            if (buffer != null) {
+                enginePool.releasePixelBuffer(buffer);
+            }
         }
     }
     
-    private double calculateTextQuality(String text) {
+    /**
+     * Score de lisibilité d'un texte (part de lettres/chiffres et d'espaces), comparé à ocr.qualityThreshold
+     */
+    public double calculateTextQuality(String text) {
         if (text == null || text.trim().isEmpty()) {
             return 0.0;
         }
@@ -212,4 +547,42 @@ public class TesseractOcrService {
         // Good quality text should have high valid chars and reasonable spacing
         return (validRatio * 0.7) + (Math.min(spaceRatio, 0.2) * 1.5);
     }
+    
+    /**
+     * Expose le coût de chaque passage de la cascade et ses décisions dans /actuator/metrics
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (TierStats tier : List.of(fastTier, secondTier)) {
+            FunctionTimer.builder("law.ocr.page", tier, t -> t.pages.get(), t -> t.nanos.get(), TimeUnit.NANOSECONDS)
+                .description("Pages reconnues par passage de la cascade OCR")
+                .tag("tier", tier.name)
+                .register(registry);
+        }
+        FunctionCounter.builder("law.ocr.cascade.improved", improvedPages, AtomicLong::get)
+            .description("Pages dont le second passage a amélioré la confiance")
+            .register(registry);
+    }
+    
+    /**
+     * Texte reconnu et confiance moyenne Tesseract (MeanTextConf, 0-100)
+     */
+    @Getter
+    @AllArgsConstructor
+    private static class Recognition {
+        private final String text;
+        private final int confidence;
+    }
+    
+    @RequiredArgsConstructor
+    private static class TierStats {
+        private final String name;
+        private final AtomicLong pages = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+        
+        void record(long elapsedNanos) {
+            pages.incrementAndGet();
+            nanos.addAndGet(elapsedNanos);
+        }
+    }
 }
@@ -0,0 +1,99 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.config.LawProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.TreeSet;
+
+/**
+ * Voie rapide des PDFs nativement textuels, appelée au moment du téléchargement
+ * - Classification sur quelques pages échantillonnées (première, dernière, réparties entre les deux) :
+ *   chacune doit porter au moins textLayerMinChars caractères d'une qualité >= ocr.qualityThreshold,
+ *   sauf la dernière page (souvent courte : signatures, ampliations), qui doit seulement ne pas être
+ *   un scan selon la règle de l'OCR par page ({@link TesseractOcrService#needsOcr})
+ * - PDF textuel : le texte complet est extrait par PDFTextStripper (même règle que
+ *   {@link TesseractOcrService#extractText}) et enregistré comme OCR, le document ne passe pas par ocrJob
+ * - PDF scanné (ou illisible) : rien n'est écrit, le document reste dans la file OCR
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TextLayerService {
+
+    private final LawProperties properties;
+    private final FileStorageService fileStorageService;
+    private final TesseractOcrService ocrService;
+
+    /**
+     * @return true si le texte du document est disponible sans OCR (déjà présent, réutilisé ou extrait)
+     */
+    public boolean extractIfTextNative(String type, String documentId, String sha256) {
+        LawProperties.Ocr config = properties.getOcr();
+        if (!config.isTextLayerFastLane()) {
+            return false;
+        }
+        try {
+            if (fileStorageService.ocrExists(type, documentId) || fileStorageService.reuseOcr(type, documentId, sha256)) {
+                return true;
+            }
+            try (PDDocument document = Loader.loadPDF(fileStorageService.pdfPath(type, documentId).toFile())) {
+                int pages = document.getNumberOfPages();
+                if (pages == 0 || !sampledPagesHaveText(document, pages, config)) {
+                    log.debug("text-layer-scanned: documentId={} pages={}", documentId, pages);
+                    return false;
+                }
+
+                String text = new PDFTextStripper().getText(document);
+                double quality = ocrService.calculateTextQuality(text);
+                if (quality < config.getQualityThreshold()) {
+                    log.debug("text-layer-rejected: documentId={} quality={}", documentId, String.format("%.2f", quality));
+                    return false;
+                }
+                fileStorageService.saveOcr(type, documentId, text, sha256);
+                log.info("text-layer-extracted: documentId={} pages={} chars={} quality={}",
+                         documentId, pages, text.length(), String.format("%.2f", quality));
+                return true;
+            }
+        } catch (IOException | RuntimeException e) {
+            // PDF illisible par PDFBox : la file OCR décidera
+            log.warn("text-layer-error: documentId={} error={}", documentId, e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean sampledPagesHaveText(PDDocument document, int pages, LawProperties.Ocr config) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        for (int page : samplePages(pages, config.getTextLayerSamplePages())) {
+            stripper.setStartPage(page);
+            stripper.setEndPage(page);
+            String text = stripper.getText(document).strip();
+            if (page == pages && pages > 1) {
+                if (ocrService.needsOcr(document.getPage(page - 1), text)) {
+                    return false;
+                }
+            } else if (text.length() < config.getTextLayerMinChars()
+                    || ocrService.calculateTextQuality(text) < config.getQualityThreshold()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Pages (1-based) réparties uniformément de la première à la dernière
+     */
+    static TreeSet<Integer> samplePages(int pages, int samples) {
+        TreeSet<Integer> selected = new TreeSet<>();
+        int count = Math.max(1, Math.min(samples, pages));
+        for (int i = 0; i < count; i++) {
+            selected.add(count == 1 ? 1 : 1 + (int) Math.round((double) i * (pages - 1) / (count - 1)));
+        }
+        return selected;
+    }
+}
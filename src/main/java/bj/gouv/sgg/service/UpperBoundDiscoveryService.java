@@ -0,0 +1,254 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.batch.util.LawDocumentFactory;
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.model.FetchResult;
+import bj.gouv.sgg.model.FetchYearBound;
+import bj.gouv.sgg.model.LawDocument;
+import bj.gouv.sgg.repository.FetchResultRepository;
+import bj.gouv.sgg.repository.FetchYearBoundRepository;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Découverte du dernier numéro existant d'une année (recherche galopante + dichotomie)
+ * - Les numéros déjà connus (fetch_results / plages NOT_FOUND, y compris celles pas encore écrites en BD)
+ *   ne sont pas re-sondés
+ * - Les 404 sont ajoutés aux plages NOT_FOUND ({@link NotFoundRangeService}) et, comme les documents trouvés,
+ *   marqués dans l'index du scan dense qui suit : aucun numéro n'est sondé deux fois
+ * - Tolérance aux trous : un numéro "existe" si l'un des boundGapTolerance numéros suivants existe
+ * - Un statut inconnu (429, erreur réseau) est traité comme existant : la borne ne peut
+ *   qu'être surestimée, jamais tronquer des documents
+ * - Sondes HEAD dédiées ({@link AsyncProbeService}), lancées en parallèle pour toute une fenêtre :
+ *   ni les statistiques du fetch ni le modèle de padding ne sont touchés
+ * - Un document trouvé par une sonde est enregistré FETCHED (le job de download le récupérera)
+ * Les bornes sont persistées (fetch_year_bounds) : une année déjà bornée ne coûte plus aucune sonde.
+ * Une borne provisoire (scan frontière de l'année courante) est redécouverte une fois l'année passée.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UpperBoundDiscoveryService {
+
+    private final LawProperties properties;
+    private final FetchYearBoundRepository fetchYearBoundRepository;
+    private final FetchResultRepository fetchResultRepository;
+    private final NotFoundRangeService notFoundRangeService;
+    private final AsyncProbeService asyncProbeService;
+    private final LawDocumentFactory documentFactory;
+    private final UpstreamCircuitBreaker circuitBreaker;
+
+    /**
+     * Numéro le plus haut à scanner densément pour une année
+     * @param verified index du scan dense, complété par les résultats des sondes de découverte (null si aucun)
+     */
+    public int scanLimit(String type, int year, VerifiedDocumentIndexService.Index verified) {
+        LawProperties.Batch batch = properties.getBatch();
+        int max = properties.getMaxNumberPerYear();
+        if (!batch.isBoundDiscoveryEnabled()) {
+            return max;
+        }
+        int margin = Math.max(batch.getBoundMargin(), batch.getBoundGapTolerance());
+        return Math.min(max, upperBound(type, year, verified) + margin);
+    }
+
+    /**
+     * Borne persistée, ou découverte puis persistée si l'année n'a jamais été bornée
+     * (ou seulement de façon provisoire alors qu'elle est maintenant close)
+     */
+    public int upperBound(String type, int year, VerifiedDocumentIndexService.Index verified) {
+        Integer maxFound = fetchResultRepository.findMaxNumber(type, year);
+        int knownMax = maxFound != null ? maxFound : 0;
+
+        FetchYearBound stored = fetchYearBoundRepository.findByDocumentTypeAndYear(type, year).orElse(null);
+        if (stored != null && (stored.isFinal() || year >= LocalDate.now().getYear())) {
+            return Math.max(stored.getUpperBound(), knownMax);
+        }
+        if (stored != null) {
+            knownMax = Math.max(stored.getUpperBound(), knownMax);
+        }
+
+        AtomicInteger probes = new AtomicInteger();
+        AtomicInteger found = new AtomicInteger();
+        AtomicInteger notFound = new AtomicInteger();
+        int bound = findUpperBound(knownMax, properties.getMaxNumberPerYear(),
+            properties.getBatch().getBoundGapTolerance(),
+            (from, to) -> lastExisting(type, year, from, to, verified, probes, found, notFound));
+        if (notFound.get() > 0) {
+            notFoundRangeService.flush();
+        }
+
+        if (circuitBreaker.getState() != UpstreamCircuitBreaker.State.CLOSED) {
+            // Sondes refusées ou en échec pendant la recherche : borne surestimée, non persistée
+            log.warn("bound-not-persisted type={} year={} upperBound={} circuit={}",
+                type, year, bound, circuitBreaker.getState());
+            return bound;
+        }
+
+        FetchYearBound saved = stored != null ? stored : FetchYearBound.builder()
+            .documentType(type)
+            .year(year)
+            .build();
+        saved.setUpperBound(bound);
+        saved.setProbeCount(probes.get());
+        saved.setProvisional(false);
+        saved.setUpdatedAt(LocalDateTime.now());
+        fetchYearBoundRepository.save(saved);
+        log.info("bound-discovered type={} year={} upperBound={} knownMax={} probes={} found={} notFound={}",
+            type, year, bound, knownMax, probes.get(), found.get(), notFound.get());
+        return bound;
+    }
+
+    /**
+     * Plus grand numéro existant de [from, to] : numéros connus lus en base, les autres sondés en parallèle
+     * @return -1 si aucun numéro de la fenêtre n'existe
+     */
+    private int lastExisting(String type, int year, int from, int to, VerifiedDocumentIndexService.Index verified,
+                             AtomicInteger probes, AtomicInteger found, AtomicInteger notFound) {
+        int last = -1;
+        Map<Integer, CompletableFuture<Probe>> pending = new LinkedHashMap<>();
+        for (int number = from; number <= to; number++) {
+            if (fetchResultRepository.existsByDocumentId(String.format("%s-%d-%d", type, year, number))) {
+                last = number;
+            } else if (!notFoundRangeService.isInNotFoundRange(type, year, number)) {
+                probes.incrementAndGet();
+                pending.put(number, probe(documentFactory.create(type, year, number)));
+            }
+        }
+
+        for (Map.Entry<Integer, CompletableFuture<Probe>> entry : pending.entrySet()) {
+            int number = entry.getKey();
+            Probe probe = entry.getValue().join();
+            if (probe.getStatusCode() == 200) {
+                register(type, year, number, probe.getUrl());
+                found.incrementAndGet();
+                if (verified != null) {
+                    verified.markFound(year, number);
+                }
+                last = Math.max(last, number);
+            } else if (probe.getStatusCode() == 404) {
+                // Variantes canonique et paddée absentes (comme un NOT_FOUND du fetch)
+                notFoundRangeService.addNotFoundDocument(documentFactory.create(type, year, number));
+                notFound.incrementAndGet();
+                if (verified != null) {
+                    verified.markNotFound(year, number);
+                }
+            } else {
+                // Rate limit, circuit ouvert ou erreur réseau : statut inconnu, considéré comme existant
+                last = Math.max(last, number);
+            }
+        }
+        return last;
+    }
+
+    /**
+     * HEAD sur l'URL canonique, puis sur la variante paddée (numéros 1-99) si la première répond 404
+     */
+    private CompletableFuture<Probe> probe(LawDocument document) {
+        String url = document.getUrl();
+        CompletableFuture<Probe> unpadded = asyncProbeService.probe(url)
+            .thenApply(statusCode -> new Probe(statusCode, url));
+        String paddedUrl = documentFactory.paddedUrl(document.getType(), document.getYear(), document.getNumber());
+        if (paddedUrl == null) {
+            return unpadded;
+        }
+        return unpadded.thenCompose(first -> first.getStatusCode() != 404
+            ? CompletableFuture.completedFuture(first)
+            : asyncProbeService.probe(paddedUrl).thenApply(statusCode -> new Probe(statusCode, paddedUrl)));
+    }
+
+    /**
+     * Enregistre un document trouvé par une sonde de découverte (même forme que {@code FetchWriter})
+     */
+    private void register(String type, int year, int number, String url) {
+        String documentId = String.format("%s-%d-%d", type, year, number);
+        if (fetchResultRepository.existsByDocumentId(documentId)) {
+            return; // Enregistré pendant la sonde par le fetch
+        }
+        try {
+            fetchResultRepository.save(FetchResult.builder()
+                .documentId(documentId)
+                .documentType(type)
+                .year(year)
+                .number(number)
+                .url(url)
+                .status(LawDocument.ProcessingStatus.FETCHED.name())
+                .fetchedAt(LocalDateTime.now())
+                .build());
+            log.debug("New FOUND document (bound discovery): {}", documentId);
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Already registered: {}", documentId);
+        }
+    }
+
+    /**
+     * Recherche du plus grand numéro existant dans [1, limit]
+     * Phase 1 (galop) : sonde knownMax + gap, + 2*gap, + 4*gap... jusqu'à une fenêtre vide
+     * Phase 2 (dichotomie) : resserre l'intervalle jusqu'à moins de gap numéros
+     * Chaque étape interroge une fenêtre de gap numéros d'un coup
+     * @param knownMax plus grand numéro déjà connu comme existant (0 si aucun)
+     * @param gap nombre de numéros consécutifs absents tolérés
+     * @return plus grand numéro trouvé existant (0 si aucun)
+     */
+    static int findUpperBound(int knownMax, int limit, int gap, WindowProbe probe) {
+        int window = Math.max(1, gap);
+        int lo = Math.max(0, Math.min(knownMax, limit)); // Dernier numéro existant confirmé
+        int hi = limit + 1;                               // Premier numéro au-delà de la borne
+
+        int step = window;
+        while (lo + step < hi) {
+            int from = lo + step;
+            int hit = probe.lastExisting(from, Math.min(from + window - 1, limit));
+            if (hit < 0) {
+                hi = from;
+                break;
+            }
+            lo = hit;
+            step *= 2;
+        }
+
+        while (hi - lo > window) {
+            int mid = lo + (hi - lo) / 2;
+            int hit = probe.lastExisting(mid, Math.min(mid + window - 1, hi - 1));
+            if (hit < 0) {
+                hi = mid;
+            } else {
+                lo = hit;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Sonde d'une fenêtre de numéros
+     */
+    @FunctionalInterface
+    interface WindowProbe {
+        /**
+         * @return plus grand numéro existant de [from, to], -1 si aucun
+         */
+        int lastExisting(int from, int to);
+    }
+
+    /**
+     * Résultat d'une sonde : code HTTP et variante d'URL sondée en dernier
+     */
+    @Getter
+    @AllArgsConstructor
+    private static class Probe {
+        private final int statusCode;
+        private final String url;
+    }
+}
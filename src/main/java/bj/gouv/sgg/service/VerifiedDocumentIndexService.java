@@ -0,0 +1,120 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.repository.FetchNotFoundRangeRepository;
+import bj.gouv.sgg.repository.FetchResultRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Construit un index bitmap des documents déjà vérifiés, par (type, année) :
+ * - found : numéros présents dans fetch_results
+ * - notFound : numéros couverts par une plage de fetch_not_found_ranges
+ * Chargé via des projections d'entiers (aucune entité ni documentId formaté) :
+ * un test d'appartenance est un simple BitSet.get(number).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VerifiedDocumentIndexService {
+
+    private final FetchResultRepository fetchResultRepository;
+    private final FetchNotFoundRangeRepository notFoundRangeRepository;
+
+    /**
+     * Index des documents trouvés uniquement (les NOT_FOUND ne sont pas chargés)
+     */
+    public Index loadFound(String type) {
+        Index index = new Index();
+        for (Object[] row : fetchResultRepository.findYearAndNumberByType(type)) {
+            index.found(((Number) row[0]).intValue()).set(((Number) row[1]).intValue());
+        }
+        log.info("Loaded found index for {}: {} documents over {} years", type, index.foundCount(), index.found.size());
+        return index;
+    }
+
+    /**
+     * Index des documents trouvés et des plages NOT_FOUND
+     */
+    public Index loadVerified(String type) {
+        Index index = loadFound(type);
+        int ranges = 0;
+        for (Object[] row : notFoundRangeRepository.findYearAndBoundsByType(type)) {
+            int year = ((Number) row[0]).intValue();
+            int min = ((Number) row[1]).intValue();
+            int max = ((Number) row[2]).intValue();
+            index.notFound(year).set(min, max + 1);
+            ranges++;
+        }
+        log.info("Loaded not-found index for {}: {} ranges", type, ranges);
+        return index;
+    }
+
+    /**
+     * Index en mémoire : un BitSet par année pour chaque statut
+     */
+    public static class Index {
+        private final Map<Integer, BitSet> found = new HashMap<>();
+        private final Map<Integer, BitSet> notFound = new HashMap<>();
+
+        private BitSet found(int year) {
+            return found.computeIfAbsent(year, y -> new BitSet());
+        }
+
+        private BitSet notFound(int year) {
+            return notFound.computeIfAbsent(year, y -> new BitSet());
+        }
+
+        /**
+         * Document trouvé après le chargement de l'index (découverte de la borne d'une année)
+         */
+        public void markFound(int year, int number) {
+            found(year).set(number);
+        }
+
+        /**
+         * Document NOT_FOUND sondé après le chargement de l'index
+         */
+        public void markNotFound(int year, int number) {
+            notFound(year).set(number);
+        }
+
+        public boolean isFound(int year, int number) {
+            BitSet bits = found.get(year);
+            return bits != null && bits.get(number);
+        }
+
+        public boolean isNotFound(int year, int number) {
+            BitSet bits = notFound.get(year);
+            return bits != null && bits.get(number);
+        }
+
+        /**
+         * @return true si le document est trouvé ou couvert par une plage NOT_FOUND
+         */
+        public boolean isVerified(int year, int number) {
+            return isFound(year, number) || isNotFound(year, number);
+        }
+
+        /**
+         * @return plus grand numéro trouvé pour l'année (0 si aucun)
+         */
+        public int highestFound(int year) {
+            BitSet bits = found.get(year);
+            return bits == null ? 0 : Math.max(0, bits.length() - 1);
+        }
+
+        public int foundCount(int year) {
+            BitSet bits = found.get(year);
+            return bits == null ? 0 : bits.cardinality();
+        }
+
+        public int foundCount() {
+            return found.values().stream().mapToInt(BitSet::cardinality).sum();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package bj.gouv.sgg.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/**
+ * Tokenizer HTML minimal en streaming : extrait les valeurs href des balises &lt;a&gt;
+ * sans construire de DOM ni charger la page en mémoire.
+ * - Noms de balises et d'attributs insensibles à la casse
+ * - Valeurs entre guillemets doubles, simples ou sans guillemets
+ * - Commentaires &lt;!-- --&gt; ignorés, entités &amp;amp; décodées
+ */
+public final class HtmlLinkTokenizer {
+
+    private final Reader reader;
+    private int lookahead = -2; // -2 = aucun caractère en attente
+
+    private HtmlLinkTokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Parcourt le flux et transmet chaque href trouvé au consumer
+     */
+    public static void forEachHref(Reader reader, Consumer<String> consumer) throws IOException {
+        new HtmlLinkTokenizer(reader).run(consumer);
+    }
+
+    private void run(Consumer<String> consumer) throws IOException {
+        int c;
+        while ((c = next()) != -1) {
+            if (c == '<') {
+                readTag(consumer);
+            }
+        }
+    }
+
+    private void readTag(Consumer<String> consumer) throws IOException {
+        int c = next();
+        if (c == '!') {
+            skipDeclarationOrComment();
+            return;
+        }
+
+        StringBuilder name = new StringBuilder();
+        while (c != -1 && Character.isLetterOrDigit(c)) {
+            name.append((char) c);
+            c = next();
+        }
+        pushBack(c);
+
+        if (name.length() == 1 && Character.toLowerCase(name.charAt(0)) == 'a') {
+            readAttributes(consumer);
+        } else {
+            skipTag();
+        }
+    }
+
+    private void readAttributes(Consumer<String> consumer) throws IOException {
+        while (true) {
+            int c = skipWhitespace();
+            if (c == -1 || c == '>') {
+                return;
+            }
+            if (c == '/') {
+                continue;
+            }
+
+            StringBuilder attribute = new StringBuilder();
+            while (c != -1 && c != '=' && c != '>' && !Character.isWhitespace(c)) {
+                attribute.append((char) c);
+                c = next();
+            }
+            if (c != '=') {
+                c = c == -1 || c == '>' ? c : skipWhitespaceFrom(c);
+                if (c != '=') {
+                    pushBack(c); // Attribut sans valeur
+                    continue;
+                }
+            }
+
+            String value = readValue();
+            if ("href".equalsIgnoreCase(attribute.toString()) && value != null) {
+                consumer.accept(decodeEntities(value.trim()));
+            }
+        }
+    }
+
+    private String readValue() throws IOException {
+        int c = skipWhitespace();
+        if (c == -1) {
+            return null;
+        }
+        StringBuilder value = new StringBuilder();
+        if (c == '"' || c == '\'') {
+            int quote = c;
+            while ((c = next()) != -1 && c != quote) {
+                value.append((char) c);
+            }
+            return value.toString();
+        }
+        while (c != -1 && c != '>' && !Character.isWhitespace(c)) {
+            value.append((char) c);
+            c = next();
+        }
+        pushBack(c);
+        return value.toString();
+    }
+
+    private void skipTag() throws IOException {
+        int c;
+        int quote = 0;
+        while ((c = next()) != -1) {
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return;
+            }
+        }
+    }
+
+    private void skipDeclarationOrComment() throws IOException {
+        int first = next();
+        int second = first == '-' ? next() : -2;
+        if (first == '-' && second == '-') {
+            // Commentaire : jusqu'à "-->"
+            int dashes = 0;
+            int c;
+            while ((c = next()) != -1) {
+                if (c == '>' && dashes >= 2) {
+                    return;
+                }
+                dashes = c == '-' ? dashes + 1 : 0;
+            }
+            return;
+        }
+        if (second != -2) {
+            pushBack(second);
+        }
+        if (first != '>') {
+            skipTag();
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        return skipWhitespaceFrom(next());
+    }
+
+    private int skipWhitespaceFrom(int c) throws IOException {
+        while (c != -1 && Character.isWhitespace(c)) {
+            c = next();
+        }
+        return c;
+    }
+
+    private int next() throws IOException {
+        if (lookahead != -2) {
+            int c = lookahead;
+            lookahead = -2;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private void pushBack(int c) {
+        lookahead = c;
+    }
+
+    private static String decodeEntities(String value) {
+        return value.indexOf('&') < 0 ? value : value.replace("&amp;", "&");
+    }
+}
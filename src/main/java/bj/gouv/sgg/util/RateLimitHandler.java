@@ -1,63 +1,89 @@
 package bj.gouv.sgg.util;
 
+import bj.gouv.sgg.config.LawProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpResponse;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Gère intelligemment les erreurs 429 (Too Many Requests) avec :
- * - Backoff exponentiel adaptatif
- * - Suivi du taux de 429
- * - Ralentissement automatique quand trop de 429
- * - Retry avec délais progressifs
+ * - Un token bucket partagé par classe d'endpoint (sondes HEAD / téléchargements PDF)
+ * - Un débit ajusté en AIMD (augmentation additive, diminution multiplicative sur 429)
+ * - Le respect de l'en-tête Retry-After (plafonné par law.rate-limit.max-retry-after-seconds)
+ * - Retry avec délais progressifs, planifiés sans bloquer de thread
+ * Le débit courant de chaque bucket est exposé via Micrometer (law.ratelimit.rate)
  */
 @Slf4j
 @Component
-public class RateLimitHandler {
-    
+public class RateLimitHandler implements MeterBinder {
+
     // Compteurs pour statistiques
     private final AtomicInteger totalRequests = new AtomicInteger(0);
     private final AtomicInteger rate429Count = new AtomicInteger(0);
     private final AtomicLong lastResetTime = new AtomicLong(System.currentTimeMillis());
-    
-    // Configuration du backoff
+
+    // Configuration du backoff (utilisé quand le serveur ne fournit pas de Retry-After)
     private static final int BASE_DELAY_MS = 2000; // 2 secondes de base
     private static final int MAX_DELAY_MS = 30000; // 30 secondes max
     private static final int MAX_RETRIES = 3;
-    
-    // Seuils adaptatifs
-    private static final double HIGH_429_THRESHOLD = 0.3; // Si > 30% de 429, ralentir
-    private static final double CRITICAL_429_THRESHOLD = 0.5; // Si > 50% de 429, pause longue
-    
-    // Délai adaptatif entre requêtes (volatile pour visibilité entre threads)
-    private volatile int currentDelayBetweenRequests = 0;
-    
+
+    private final Map<EndpointClass, TokenBucket> buckets = new EnumMap<>(EndpointClass.class);
+
     // Random instance for jitter
     private final Random random = new Random();
-    
-    public RateLimitHandler() {
+
+    public RateLimitHandler(LawProperties properties) {
+        LawProperties.RateLimit rateLimit = properties.getRateLimit();
+        Duration maxRetryAfter = Duration.ofSeconds(Math.max(0, rateLimit.getMaxRetryAfterSeconds()));
+        buckets.put(EndpointClass.PROBE, new TokenBucket("probe", rateLimit.getProbe(), maxRetryAfter));
+        buckets.put(EndpointClass.DOWNLOAD, new TokenBucket("download", rateLimit.getDownload(), maxRetryAfter));
         resetStats();
     }
-    
+
     /**
-     * Enregistre une requête et applique un délai adaptatif si nécessaire
+     * Attend (en bloquant le thread) un jeton de la classe d'endpoint
      */
-    public void beforeRequest() {
-        totalRequests.incrementAndGet();
-        
-        // Appliquer le délai adaptatif entre requêtes
-        if (currentDelayBetweenRequests > 0) {
+    public void acquire(EndpointClass endpoint) {
+        long waitNanos = reserve(endpoint);
+        if (waitNanos > 0) {
             try {
-                Thread.sleep(currentDelayBetweenRequests);
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
         }
-        
+    }
+
+    /**
+     * Réserve un jeton sans bloquer
+     * @return délai d'attente en nanosecondes avant d'envoyer la requête
+     */
+    private long reserve(EndpointClass endpoint) {
+        recordRequest();
+        return buckets.get(endpoint).reserve();
+    }
+
+    /**
+     * Comptabilise une requête et réinitialise périodiquement les statistiques
+     */
+    private void recordRequest() {
+        totalRequests.incrementAndGet();
+
         // Reset des stats toutes les 5 minutes pour adaptation continue
         long now = System.currentTimeMillis();
         long last = lastResetTime.get();
@@ -65,105 +91,116 @@ public class RateLimitHandler {
             resetStats();
         }
     }
-    
+
     /**
-     * Enregistre une réponse 429 et ajuste automatiquement les délais
+     * Enregistre une réponse du serveur et ajuste le débit (AIMD)
      */
-    public void on429(String url) {
+    public void onResponse(EndpointClass endpoint, int statusCode, Duration retryAfter) {
+        if (statusCode == 429 || (statusCode == 503 && retryAfter != null)) {
+            on429(endpoint, retryAfter);
+        } else if (statusCode > 0) {
+            buckets.get(endpoint).onSuccess();
+        }
+    }
+
+    /**
+     * Enregistre une réponse 429 : diminution du débit et suspension Retry-After
+     */
+    private void on429(EndpointClass endpoint, Duration retryAfter) {
+        TokenBucket bucket = buckets.get(endpoint);
+        bucket.onThrottle(retryAfter);
+
         int count429 = rate429Count.incrementAndGet();
         int total = totalRequests.get();
         double rate = total > 0 ? (double) count429 / total : 0;
-        
-        log.warn("rate-limit-hit url={} count429={} total={} rate={}", 
-                 url, count429, total, String.format("%.2f", rate));
-        
-        // Ajuster le délai adaptatif
-        adjustDelayBetweenRequests(rate);
-    }
-    
-    /**
-     * Exécute une requête avec retry automatique en cas de 429
-     */
-    public int executeWithRetry(String url, ProbeFunction probeFunc) {
-        int attempt = 0;
-        int code;
-        
-        while (attempt < MAX_RETRIES) {
-            beforeRequest();
-            code = probeFunc.probe(url);
-            
-            if (code == 429) {
-                on429(url);
-                attempt++;
-                
-                if (attempt < MAX_RETRIES) {
-                    int delayMs = calculateBackoffDelay(attempt);
-                    log.info("retry-after-429 url={} attempt={} delayMs={}", url, attempt, delayMs);
-                    
-                    try {
-                        Thread.sleep(delayMs);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        return code;
-                    }
+
+        log.warn("rate-limit-hit endpoint={} retryAfter={} count429={} total={} rate429={} newRate={}",
+                 bucket.getName(), retryAfter, count429, total, String.format("%.2f", rate),
+                 String.format("%.2f", bucket.getRate()));
+    }
+
+    /**
+     * Exécute une requête avec retry automatique en cas de 429 : l'attente du jeton et le backoff
+     * sont planifiés au lieu d'endormir le thread appelant.
+     */
+    public CompletableFuture<ProbeResult> executeWithRetryAsync(EndpointClass endpoint, String url,
+                                                                AsyncProbeFunction probeFunc) {
+        return attemptAsync(endpoint, url, probeFunc, 0);
+    }
+
+    private CompletableFuture<ProbeResult> attemptAsync(EndpointClass endpoint, String url,
+                                                        AsyncProbeFunction probeFunc, int attempt) {
+        return delay(TimeUnit.NANOSECONDS.toMillis(reserve(endpoint)))
+            .thenCompose(ignored -> probeFunc.probe(url))
+            .thenCompose(result -> {
+                onResponse(endpoint, result.getStatusCode(), result.getRetryAfter());
+                if (result.getStatusCode() != 429) {
+                    // Succès ou erreur définitive (pas 429)
+                    return CompletableFuture.completedFuture(result);
                 }
-            } else {
-                // Succès ou erreur définitive (pas 429)
-                return code;
-            }
+                int nextAttempt = attempt + 1;
+                if (nextAttempt >= MAX_RETRIES) {
+                    log.warn("retry-exhausted url={} attempts={}", url, MAX_RETRIES);
+                    return CompletableFuture.completedFuture(result);
+                }
+                int delayMs = retryDelayMs(result, nextAttempt);
+                log.info("retry-after-429 url={} attempt={} delayMs={}", url, nextAttempt, delayMs);
+                return delay(delayMs).thenCompose(ignored -> attemptAsync(endpoint, url, probeFunc, nextAttempt));
+            });
+    }
+
+    private static CompletableFuture<Void> delay(long delayMs) {
+        if (delayMs <= 0) {
+            return CompletableFuture.completedFuture(null);
         }
-        
-        // Échec après MAX_RETRIES tentatives
-        log.warn("retry-exhausted url={} attempts={}", url, MAX_RETRIES);
-        return 429;
+        return CompletableFuture.runAsync(() -> { },
+            CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Délai avant retry : si le serveur a fourni Retry-After, le bucket est déjà suspendu
+     * jusqu'à l'échéance et la prochaine réservation attendra ; sinon backoff exponentiel
+     */
+    public int retryDelayMs(ProbeResult result, int attemptNumber) {
+        return result.getRetryAfter() != null ? 0 : calculateBackoffDelay(attemptNumber);
     }
-    
+
     /**
      * Calcule le délai de backoff exponentiel pour un retry donné
      */
     private int calculateBackoffDelay(int attemptNumber) {
         // Backoff exponentiel : 2s, 4s, 8s, 16s...
         int delay = BASE_DELAY_MS * (int) Math.pow(2.0, attemptNumber - 1.0);
-        
+
         // Ajouter un jitter aléatoire pour éviter la synchronisation
         int jitter = random.nextInt(1000);
-        
+
         return Math.min(delay + jitter, MAX_DELAY_MS);
     }
-    
-    /**
-     * Ajuste le délai entre requêtes basé sur le taux de 429
-     */
-    private void adjustDelayBetweenRequests(double rate429) {
-        if (rate429 >= CRITICAL_429_THRESHOLD) {
-            // > 50% de 429 : pause critique de 3 secondes entre requêtes
-            currentDelayBetweenRequests = 3000;
-            log.warn("rate-limit-critical rate={} delayMs={}", 
-                     String.format("%.2f", rate429), currentDelayBetweenRequests);
-        } else if (rate429 >= HIGH_429_THRESHOLD) {
-            // > 30% de 429 : pause élevée de 1 seconde entre requêtes
-            currentDelayBetweenRequests = 1000;
-            log.warn("rate-limit-high rate={} delayMs={}", 
-                     String.format("%.2f", rate429), currentDelayBetweenRequests);
-        } else if (rate429 > 0.2) {
-            // > 20% de 429 : pause modérée de 500ms
-            currentDelayBetweenRequests = 500;
-            log.info("rate-limit-moderate rate={} delayMs={}", 
-                     String.format("%.2f", rate429), currentDelayBetweenRequests);
-        } else if (rate429 > 0.1) {
-            // > 10% de 429 : pause légère de 200ms
-            currentDelayBetweenRequests = 200;
-            log.info("rate-limit-low rate={} delayMs={}", 
-                     String.format("%.2f", rate429), currentDelayBetweenRequests);
-        } else {
-            // < 10% de 429 : pas de délai
-            currentDelayBetweenRequests = 0;
-            if (rate429 > 0) {
-                log.info("rate-limit-ok rate={} delayMs=0", String.format("%.2f", rate429));
+
+    /**
+     * Extrait l'en-tête Retry-After (secondes ou date HTTP)
+     * @return délai demandé, ou null si absent/invalide
+     */
+    public static Duration parseRetryAfter(HttpResponse response) {
+        Header header = response.getFirstHeader("Retry-After");
+        if (header == null || header.getValue() == null || header.getValue().isBlank()) {
+            return null;
+        }
+        String value = header.getValue().trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            Instant date = DateUtils.parseStandardDate(value);
+            if (date == null) {
+                log.debug("Invalid Retry-After header: {}", value);
+                return null;
             }
+            Duration delay = Duration.between(Instant.now(), date);
+            return delay.isNegative() ? Duration.ZERO : delay;
         }
     }
-    
+
     /**
      * Réinitialise les statistiques
      */
@@ -173,7 +210,14 @@ public class RateLimitHandler {
         lastResetTime.set(System.currentTimeMillis());
         log.info("stats-reset timestamp={}", Instant.now());
     }
-    
+
+    /**
+     * Débit courant (requêtes/s) d'une classe d'endpoint
+     */
+    public double getCurrentRate(EndpointClass endpoint) {
+        return buckets.get(endpoint).getRate();
+    }
+
     /**
      * Retourne les statistiques actuelles
      */
@@ -181,17 +225,60 @@ public class RateLimitHandler {
         int total = totalRequests.get();
         int count429 = rate429Count.get();
         double rate = total > 0 ? (double) count429 / total : 0;
-        return new Stats(total, count429, rate, currentDelayBetweenRequests);
+        return new Stats(total, count429, rate,
+                         getCurrentRate(EndpointClass.PROBE), getCurrentRate(EndpointClass.DOWNLOAD));
     }
-    
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        buckets.forEach((endpoint, bucket) ->
+            Gauge.builder("law.ratelimit.rate", bucket, TokenBucket::getRate)
+                .description("Débit autorisé courant (requêtes/s)")
+                .tag("endpoint", bucket.getName())
+                .register(registry));
+    }
+
     /**
-     * Interface fonctionnelle pour la fonction de probe
+     * Classe d'endpoint : chaque classe a son propre bucket
+     */
+    public enum EndpointClass {
+        PROBE,
+        DOWNLOAD
+    }
+
+    /**
+     * Interface fonctionnelle pour une probe asynchrone
      */
     @FunctionalInterface
-    public interface ProbeFunction {
-        int probe(String url);
+    public interface AsyncProbeFunction {
+        CompletableFuture<ProbeResult> probe(String url);
+    }
+
+    /**
+     * Résultat d'une probe : code HTTP (-1 en cas d'erreur réseau) et Retry-After éventuel
+     */
+    public static class ProbeResult {
+        private final int statusCode;
+        private final Duration retryAfter;
+
+        public ProbeResult(int statusCode, Duration retryAfter) {
+            this.statusCode = statusCode;
+            this.retryAfter = retryAfter;
+        }
+
+        public static ProbeResult error() {
+            return new ProbeResult(-1, null);
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public Duration getRetryAfter() {
+            return retryAfter;
+        }
     }
-    
+
     /**
      * Classe pour les statistiques
      */
@@ -199,19 +286,21 @@ public class RateLimitHandler {
         public final int totalRequests;
         public final int count429;
         public final double rate429;
-        public final int currentDelayMs;
-        
-        public Stats(int totalRequests, int count429, double rate429, int currentDelayMs) {
+        public final double probeRate;
+        public final double downloadRate;
+
+        public Stats(int totalRequests, int count429, double rate429, double probeRate, double downloadRate) {
             this.totalRequests = totalRequests;
             this.count429 = count429;
             this.rate429 = rate429;
-            this.currentDelayMs = currentDelayMs;
+            this.probeRate = probeRate;
+            this.downloadRate = downloadRate;
         }
-        
+
         @Override
         public String toString() {
-            return String.format("total=%d 429=%d rate=%.2f delayMs=%d", 
-                                totalRequests, count429, rate429, currentDelayMs);
+            return String.format("total=%d 429=%d rate=%.2f probeRate=%.2f/s downloadRate=%.2f/s",
+                                totalRequests, count429, rate429, probeRate, downloadRate);
         }
     }
 }
@@ -0,0 +1,221 @@
+package bj.gouv.sgg.util;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lecteur tar minimal en streaming (ustar, noms longs GNU et pax), sans dépendance externe.
+ * Seuls les fichiers réguliers sont retournés ; répertoires et liens sont ignorés. Des en-têtes pax,
+ * seul l'enregistrement path d'un en-tête étendu ('x') est lu (nom long tronqué dans le champ ustar) ;
+ * les en-têtes globaux ('g') sont ignorés.
+ * Le contenu d'une entrée se lit via {@link #entryStream()} jusqu'au prochain {@link #nextEntry()}.
+ */
+public final class TarArchiveReader {
+
+    private static final int BLOCK = 512;
+
+    private final InputStream in;
+    private final byte[] header = new byte[BLOCK];
+    private long remaining; // Octets restants de l'entrée courante
+    private long padding;   // Octets de bourrage jusqu'au bloc suivant
+
+    public TarArchiveReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * @return nom de la prochaine entrée fichier, null en fin d'archive
+     */
+    public String nextEntry() throws IOException {
+        String longName = null;
+        while (true) {
+            skipFully(remaining + padding);
+            remaining = 0;
+            padding = 0;
+
+            if (!readBlock() || isZeroBlock()) {
+                return null;
+            }
+            long size = parseOctal(124, 12);
+            char type = (char) header[156];
+            remaining = size;
+            padding = (BLOCK - size % BLOCK) % BLOCK;
+
+            if (type == 'L') { // Nom long GNU : le contenu est le nom de l'entrée suivante
+                longName = cString(readBytes(size));
+                continue;
+            }
+            if (type == 'x') { // En-tête étendu pax de l'entrée suivante (bsdtar, tar --format=posix)
+                String path = paxPath(readBytes(size));
+                if (path != null) {
+                    longName = path;
+                }
+                continue;
+            }
+            if (type != '0' && type != '\0') {
+                longName = null;
+                continue;
+            }
+            return longName != null ? longName : entryName();
+        }
+    }
+
+    /**
+     * Contenu de l'entrée courante (ne ferme pas l'archive)
+     */
+    public InputStream entryStream() {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int b = in.read();
+                if (b >= 0) {
+                    remaining--;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+                if (read > 0) {
+                    remaining -= read;
+                }
+                return read;
+            }
+
+            @Override
+            public void close() {
+                // L'archive reste ouverte pour les entrées suivantes
+            }
+        };
+    }
+
+    private String entryName() {
+        String name = cString(0, 100);
+        if ("ustar".equals(cString(257, 6).trim())) {
+            String prefix = cString(345, 155);
+            if (!prefix.isEmpty()) {
+                name = prefix + "/" + name;
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Contenu (court) de l'en-tête courant : nom long GNU ou enregistrements pax
+     */
+    private byte[] readBytes(long size) throws IOException {
+        byte[] data = in.readNBytes((int) size);
+        if (data.length < size) {
+            throw new EOFException("Truncated tar extended header");
+        }
+        remaining = 0;
+        return data;
+    }
+
+    private static String cString(byte[] data) {
+        int end = 0;
+        while (end < data.length && data[end] != 0) {
+            end++;
+        }
+        return new String(data, 0, end, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Valeur de l'enregistrement path d'un en-tête pax ("{longueur} {clé}={valeur}\n", longueur en octets
+     * de l'enregistrement entier), null s'il est absent
+     */
+    static String paxPath(byte[] data) throws IOException {
+        String path = null;
+        int offset = 0;
+        while (offset < data.length && data[offset] != 0) {
+            int space = offset;
+            int length = 0;
+            while (space < data.length && data[space] >= '0' && data[space] <= '9') {
+                length = length * 10 + (data[space] - '0');
+                space++;
+            }
+            if (space >= data.length || data[space] != ' ' || length <= space - offset || offset + length > data.length) {
+                throw new IOException("Invalid pax extended header");
+            }
+            int end = offset + length - 1; // Sans le '\n' final
+            int equals = space + 1;
+            while (equals < end && data[equals] != '=') {
+                equals++;
+            }
+            if (equals < end && "path".equals(new String(data, space + 1, equals - space - 1, StandardCharsets.UTF_8))) {
+                path = new String(data, equals + 1, end - equals - 1, StandardCharsets.UTF_8);
+            }
+            offset += length;
+        }
+        return path;
+    }
+
+    private boolean readBlock() throws IOException {
+        int read = in.readNBytes(header, 0, BLOCK);
+        if (read == 0) {
+            return false;
+        }
+        if (read < BLOCK) {
+            throw new EOFException("Truncated tar header");
+        }
+        return true;
+    }
+
+    private boolean isZeroBlock() {
+        for (byte b : header) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long parseOctal(int offset, int length) throws IOException {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || b == ' ') {
+                if (value > 0) {
+                    break;
+                }
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Invalid tar header (size field)");
+            }
+            value = value * 8 + (b - '0');
+        }
+        return value;
+    }
+
+    private String cString(int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private void skipFully(long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Truncated tar archive");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package bj.gouv.sgg.util;
+
+import bj.gouv.sgg.config.LawProperties;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket thread-safe à débit adaptatif (AIMD).
+ * - Réservation : le solde peut devenir négatif, l'appelant attend le délai retourné
+ *   (ordre FIFO, fonctionne aussi bien en bloquant qu'en planification asynchrone)
+ * - Succès : augmentation additive de additiveIncrease req/s par seconde écoulée sans 429, jusqu'à maxRate
+ *   (le temps compté entre deux succès est plafonné à une seconde : pas de saut après une période d'inactivité)
+ * - 429 : diminution multiplicative (au plus une fois par seconde pour ne pas sur-réagir
+ *   aux réponses déjà en vol), suspension jusqu'à l'échéance Retry-After si fournie,
+ *   plafonnée à maxRetryAfter
+ */
+public class TokenBucket {
+
+    private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_INCREASE_STEP_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String name;
+    private final double minRate;
+    private final double maxRate;
+    private final double additiveIncrease;
+    private final double decreaseFactor;
+    private final double capacity;
+    private final Duration maxRetryAfter;
+
+    private double rate;
+    private double tokens;
+    // Peut être dans le futur : le bucket est alors suspendu (Retry-After)
+    private long lastRefillNanos;
+    private long lastDecreaseNanos;
+    private long lastIncreaseNanos;
+
+    public TokenBucket(String name, LawProperties.RateLimit.Bucket config, Duration maxRetryAfter) {
+        this.name = name;
+        this.minRate = config.getMinRate();
+        this.maxRate = config.getMaxRate();
+        this.additiveIncrease = config.getAdditiveIncrease();
+        this.decreaseFactor = config.getDecreaseFactor();
+        this.capacity = Math.max(1, config.getBurst());
+        this.maxRetryAfter = maxRetryAfter;
+        this.rate = Math.max(minRate, Math.min(maxRate, config.getInitialRate()));
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+        this.lastDecreaseNanos = lastRefillNanos - DECREASE_COOLDOWN_NANOS;
+        this.lastIncreaseNanos = lastRefillNanos;
+    }
+
+    /**
+     * Réserve un jeton
+     * @return temps d'attente en nanosecondes avant d'envoyer la requête
+     */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        refill(now);
+        tokens -= 1;
+
+        long waitNanos = Math.max(0, lastRefillNanos - now);
+        if (tokens < 0) {
+            waitNanos += (long) (-tokens / rate * 1_000_000_000L);
+        }
+        return waitNanos;
+    }
+
+    /**
+     * Réponse acceptée par le serveur : augmentation additive proportionnelle au temps écoulé
+     * depuis la dernière augmentation (additiveIncrease req/s par seconde)
+     */
+    public synchronized void onSuccess() {
+        long now = System.nanoTime();
+        long elapsed = Math.min(MAX_INCREASE_STEP_NANOS, Math.max(0, now - lastIncreaseNanos));
+        rate = Math.min(maxRate, rate + additiveIncrease * elapsed / 1_000_000_000.0);
+        lastIncreaseNanos = now;
+    }
+
+    /**
+     * Réponse 429 : diminution multiplicative et suspension éventuelle
+     * @param retryAfter délai demandé par le serveur, ou null (plafonné à maxRetryAfter)
+     */
+    public synchronized void onThrottle(Duration retryAfter) {
+        long now = System.nanoTime();
+        refill(now);
+
+        if (now - lastDecreaseNanos >= DECREASE_COOLDOWN_NANOS) {
+            rate = Math.max(minRate, rate * decreaseFactor);
+            lastDecreaseNanos = now;
+        }
+        lastIncreaseNanos = now; // L'augmentation repart de la dernière réponse 429
+
+        if (retryAfter != null && !retryAfter.isNegative()) {
+            Duration suspension = retryAfter.compareTo(maxRetryAfter) > 0 ? maxRetryAfter : retryAfter;
+            long resumeAt = now + suspension.toNanos();
+            if (resumeAt > lastRefillNanos) {
+                lastRefillNanos = resumeAt;
+                tokens = Math.min(tokens, 0);
+            }
+        }
+    }
+
+    private void refill(long now) {
+        if (now > lastRefillNanos) {
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) / 1_000_000_000.0 * rate);
+            lastRefillNanos = now;
+        }
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,254 @@
+package bj.gouv.sgg.util;
+
+import bj.gouv.sgg.config.LawProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker partagé par tous les appels vers le site (sondes HEAD, téléchargements, pages de liste)
+ * - CLOSED : les appels passent, le taux d'échec est mesuré sur les windowSize derniers appels
+ * - OPEN : taux d'échec >= failureRateThreshold, les appels sont refusés sans connexion pendant openSeconds
+ * - HALF_OPEN : au plus halfOpenCalls appels de test ; tous réussis → CLOSED, un échec → OPEN
+ * Un échec = erreur réseau ou 5xx sans Retry-After (les 429/503 avec Retry-After relèvent du rate limiter).
+ * Chaque appel autorisé porte un {@link Permit} : un appel de test n'est compté qu'une fois, même s'il
+ * donne lieu à plusieurs réponses (retries 429, HEAD puis GET), et les réponses tardives d'appels
+ * émis avant l'ouverture ne sont pas prises pour des appels de test. Le permis doit être rendu
+ * ({@link #release}) une fois l'appel terminé, qu'une réponse ait été enregistrée ou non.
+ * L'état est exposé via actuator (health, law.upstream.circuit.state).
+ */
+@Slf4j
+@Component
+public class UpstreamCircuitBreaker implements MeterBinder, HealthIndicator {
+
+    /**
+     * Code retourné à la place d'un code HTTP quand l'appel a été refusé par le circuit
+     */
+    public static final int REJECTED = -2;
+
+    private final LawProperties.CircuitBreaker config;
+    private final boolean[] window; // true = échec
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private Instant openUntil = Instant.EPOCH;
+    private int halfOpenInFlight;
+    private int halfOpenSuccesses;
+    private long halfOpenEpisode; // Incrémenté à chaque passage en HALF_OPEN : les permis d'un épisode précédent sont ignorés
+    private final AtomicLong rejectedCalls = new AtomicLong();
+
+    public UpstreamCircuitBreaker(LawProperties properties) {
+        this.config = properties.getCircuitBreaker();
+        this.window = new boolean[Math.max(1, config.getWindowSize())];
+    }
+
+    /**
+     * Demande l'autorisation d'appeler le site
+     * @return permis à passer à {@link #onResponse}/{@link #onFailure} puis à {@link #release},
+     *         null si le circuit est ouvert (ou si les appels de test sont déjà tous en cours)
+     */
+    public synchronized Permit tryAcquire() {
+        if (!config.isEnabled() || state == State.CLOSED) {
+            return Permit.REGULAR;
+        }
+        if (state == State.OPEN) {
+            if (Instant.now().isBefore(openUntil)) {
+                rejectedCalls.incrementAndGet();
+                return null;
+            }
+            transition(State.HALF_OPEN, "open period elapsed");
+        }
+        if (halfOpenInFlight < config.getHalfOpenCalls()) {
+            halfOpenInFlight++;
+            return new Permit(halfOpenEpisode);
+        }
+        rejectedCalls.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Enregistre l'issue d'une réponse à un appel autorisé
+     * @param statusCode code HTTP, ou valeur négative en cas d'erreur réseau
+     * @param retryAfter Retry-After éventuel (un 5xx avec Retry-After est un throttle, pas une panne)
+     */
+    public void onResponse(Permit permit, int statusCode, Duration retryAfter) {
+        if (statusCode < 0 || (statusCode >= 500 && retryAfter == null)) {
+            onFailure(permit);
+        } else {
+            onSuccess(permit);
+        }
+    }
+
+    public synchronized void onSuccess(Permit permit) {
+        record(permit, false);
+    }
+
+    public synchronized void onFailure(Permit permit) {
+        record(permit, true);
+    }
+
+    /**
+     * Rend un permis : libère la place d'un appel de test resté sans réponse (appel non émis, abandonné)
+     * Sans effet si l'issue de l'appel a déjà été enregistrée.
+     */
+    public synchronized void release(Permit permit) {
+        if (permit != null && isCurrentTrial(permit)) {
+            permit.settled = true;
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+        }
+    }
+
+    private void record(Permit permit, boolean failure) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (permit.trial) {
+            if (!isCurrentTrial(permit)) {
+                return; // Appel de test déjà compté, ou émis lors d'un épisode HALF_OPEN précédent
+            }
+            permit.settled = true;
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+            if (failure) {
+                open("half-open call failed");
+            } else if (++halfOpenSuccesses >= config.getHalfOpenCalls()) {
+                transition(State.CLOSED, "half-open calls succeeded");
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            return; // Réponse tardive d'un appel émis avant l'ouverture
+        }
+
+        if (windowCount == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+
+        int minimumCalls = Math.min(config.getMinimumCalls(), window.length);
+        if (windowCount >= minimumCalls && failureRate() >= config.getFailureRateThreshold()) {
+            open(String.format("failureRate=%.2f over %d calls", failureRate(), windowCount));
+        }
+    }
+
+    private boolean isCurrentTrial(Permit permit) {
+        return permit.trial && !permit.settled && state == State.HALF_OPEN && permit.episode == halfOpenEpisode;
+    }
+
+    private void open(String reason) {
+        openUntil = Instant.now().plusSeconds(config.getOpenSeconds());
+        transition(State.OPEN, reason);
+    }
+
+    private void transition(State next, String reason) {
+        log.warn("circuit-transition from={} to={} reason={} openUntil={}",
+                 state, next, reason, next == State.OPEN ? openUntil : null);
+        state = next;
+        halfOpenInFlight = 0;
+        halfOpenSuccesses = 0;
+        if (next == State.HALF_OPEN) {
+            halfOpenEpisode++;
+        } else {
+            resetWindow();
+        }
+    }
+
+    private void resetWindow() {
+        windowIndex = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+
+    private double failureRate() {
+        return windowCount == 0 ? 0 : (double) windowFailures / windowCount;
+    }
+
+    /**
+     * @return false tant que le circuit est ouvert et que la période d'ouverture n'est pas écoulée
+     */
+    public synchronized boolean isAvailable() {
+        return !config.isEnabled() || state != State.OPEN || !Instant.now().isBefore(openUntil);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Toujours UP : une panne du site n'est pas une panne de l'application,
+     * l'état du circuit est publié dans les détails
+     */
+    @Override
+    public synchronized Health health() {
+        Health.Builder builder = Health.up()
+            .withDetail("state", state)
+            .withDetail("failureRate", failureRate())
+            .withDetail("windowCalls", windowCount)
+            .withDetail("rejectedCalls", rejectedCalls.get());
+        if (state == State.OPEN) {
+            builder.withDetail("openUntil", openUntil.toString());
+        }
+        return builder.build();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("law.upstream.circuit.state", this, breaker -> breaker.getState().ordinal())
+            .description("État du circuit vers le site (0=CLOSED, 1=OPEN, 2=HALF_OPEN)")
+            .register(registry);
+        FunctionCounter.builder("law.upstream.circuit.rejected", rejectedCalls, AtomicLong::get)
+            .description("Appels refusés sans connexion car le circuit était ouvert")
+            .register(registry);
+    }
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Autorisation d'un appel : ordinaire (circuit fermé) ou appel de test (HALF_OPEN)
+     * L'état est protégé par le verrou du circuit breaker.
+     */
+    public static final class Permit {
+
+        private static final Permit REGULAR = new Permit();
+
+        private final boolean trial;
+        private final long episode;
+        private boolean settled;
+
+        private Permit() {
+            this.trial = false;
+            this.episode = -1;
+        }
+
+        private Permit(long episode) {
+            this.trial = true;
+            this.episode = episode;
+        }
+
+        public boolean isTrial() {
+            return trial;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.exception.FileStorageException;
+import bj.gouv.sgg.service.BulkImportService.ImportReport;
+import bj.gouv.sgg.service.BulkImportService.ImportedPdf;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Import hors ligne sur un stockage temporaire (enregistrement en base simulé, pas de contexte Spring)
+ */
+class BulkImportServiceTest {
+    
+    private static final byte[] PDF = "%PDF-1.4\n1 0 obj\n<<>>\nendobj\n%%EOF\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NOT_PDF = "<html>404</html>".getBytes(StandardCharsets.US_ASCII);
+    
+    @TempDir
+    Path tempDir;
+    
+    private FileStorageService storage;
+    private BulkImportService importService;
+    private final List<ImportedPdf> registered = Collections.synchronizedList(new ArrayList<>());
+    
+    @BeforeEach
+    void setUp() {
+        storage = new FileStorageService();
+        ReflectionTestUtils.setField(storage, "baseDataDir", tempDir.resolve("data").toString());
+        
+        LawProperties properties = new LawProperties();
+        properties.getBulkImport().setThreads(2);
+        properties.getBulkImport().setRegisterBatchSize(2);
+        
+        ImportRegistrationService registration = mock(ImportRegistrationService.class);
+        when(registration.register(anyList())).thenAnswer(invocation -> {
+            List<ImportedPdf> batch = invocation.getArgument(0);
+            registered.addAll(batch);
+            return new ImportRegistrationService.Counts(batch.size(), 0);
+        });
+        
+        importService = new BulkImportService(storage, registration, properties, mock(TextLayerService.class));
+    }
+    
+    @Test
+    void importsDirectoryRecursively() throws Exception {
+        Path source = Files.createDirectories(tempDir.resolve("source/2024"));
+        Files.write(source.resolve("loi-2024-1.pdf"), PDF);
+        Files.write(source.resolve("decret-2024-15.PDF"), PDF);
+        Files.write(source.resolve("loi-2024-2.pdf"), NOT_PDF);
+        Files.write(source.resolve("notes.txt"), NOT_PDF);
+        Files.write(source.resolve("arrete-2024-1.pdf"), PDF);
+        
+        ImportReport report = importService.importFrom(tempDir.resolve("source"));
+        
+        assertThat(report.getImported()).hasValue(2);
+        assertThat(report.getInvalidPdf()).hasValue(1);
+        assertThat(report.getIgnored()).hasValue(1);
+        assertThat(report.getInvalidName()).hasValue(1);
+        assertThat(report.getInserted()).hasValue(3);
+        assertThat(storage.readPdf("loi", "loi-2024-1")).isEqualTo(PDF);
+        assertThat(storage.pdfExists("loi", "loi-2024-2")).isFalse();
+        assertThat(Files.exists(source.resolve("loi-2024-1.pdf"))).as("source never modified").isTrue();
+        assertThat(registered)
+            .filteredOn(ImportedPdf::isStored)
+            .extracting(pdf -> pdf.getDocument().getDocumentId())
+            .containsExactlyInAnyOrder("loi-2024-1", "decret-2024-15");
+    }
+    
+    @Test
+    void importsZipUsingEntryFileNames() throws Exception {
+        Path archive = tempDir.resolve("lois.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("lois/"));
+            zip.closeEntry();
+            for (String name : List.of("lois/2024/loi-2024-3.pdf", "autres\\loi-2024-4.pdf", "copie/loi-2024-3.pdf")) {
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(PDF);
+                zip.closeEntry();
+            }
+        }
+        
+        ImportReport report = importService.importFrom(archive);
+        
+        assertThat(report.getImported()).hasValue(2);
+        assertThat(report.getDuplicates()).hasValue(1);
+        assertThat(storage.pdfExists("loi", "loi-2024-3")).isTrue();
+        assertThat(storage.pdfExists("loi", "loi-2024-4")).isTrue();
+        // Même contenu : un seul blob
+        String sha = registered.get(0).getSha256();
+        assertThat(registered).extracting(ImportedPdf::getSha256).containsOnly(sha);
+        assertThat(Files.exists(storage.blobPath(sha, "pdf"))).isTrue();
+    }
+    
+    @Test
+    void importsTarGzAndSkipsDocumentsAlreadyStored() throws Exception {
+        Path partial = storage.partialPdfPath("loi", "loi-2024-5");
+        Files.write(partial, PDF);
+        storage.commitPdf("loi", "loi-2024-5", partial, null);
+        
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("loi-2024-5.pdf", PDF);
+        entries.put("pdfs/loi-2024-6.pdf", PDF);
+        entries.put("pdfs/decret-2024-1.pdf", Arrays.copyOf(PDF, 10)); // Tronqué : pas de %%EOF
+        Path archive = tempDir.resolve("export.tar.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(archive))) {
+            out.write(tar(entries));
+        }
+        
+        ImportReport report = importService.importFrom(archive);
+        
+        assertThat(report.getAlreadyPresent()).hasValue(1);
+        assertThat(report.getImported()).hasValue(1);
+        assertThat(report.getInvalidPdf()).hasValue(1);
+        assertThat(storage.pdfExists("loi", "loi-2024-6")).isTrue();
+        assertThat(storage.pdfExists("decret", "decret-2024-1")).isFalse();
+        assertThat(registered).hasSize(3);
+    }
+    
+    @Test
+    void leavesInProgressDownloadUntouched() throws Exception {
+        // Téléchargement interrompu de loi-2024-7, conservé pour reprise
+        byte[] downloaded = Arrays.copyOf(PDF, 12);
+        Path part = storage.partialPdfPath("loi", "loi-2024-7");
+        Path meta = storage.partialMetaPath("loi", "loi-2024-7");
+        Files.write(part, downloaded);
+        Files.writeString(meta, "etag=\"v1\"");
+        Path source = Files.createDirectories(tempDir.resolve("source"));
+        Files.write(source.resolve("loi-2024-7.pdf"), PDF);
+        Files.write(source.resolve("loi-2024-8.pdf"), NOT_PDF);
+        
+        ImportReport report = importService.importFrom(source);
+        
+        assertThat(report.getImported()).hasValue(1);
+        assertThat(storage.readPdf("loi", "loi-2024-7")).isEqualTo(PDF);
+        assertThat(part).hasBinaryContent(downloaded);
+        assertThat(meta).exists();
+        assertThat(storage.importPdfPath("loi", "loi-2024-7")).doesNotExist();
+        assertThat(storage.importPdfPath("loi", "loi-2024-8")).doesNotExist();
+    }
+    
+    @Test
+    void rejectsUnsupportedOrMissingSource() throws Exception {
+        Path rar = Files.write(tempDir.resolve("lois.rar"), NOT_PDF);
+        
+        assertThatThrownBy(() -> importService.importFrom(rar)).isInstanceOf(FileStorageException.class);
+        assertThatThrownBy(() -> importService.importFrom(tempDir.resolve("absent"))).isInstanceOf(FileStorageException.class);
+    }
+    
+    private static byte[] tar(Map<String, byte[]> entries) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entries.forEach((name, content) -> {
+            byte[] header = new byte[512];
+            byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+            byte[] size = String.format("%011o", content.length).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(size, 0, header, 124, size.length);
+            header[156] = '0';
+            out.writeBytes(header);
+            out.writeBytes(content);
+            out.writeBytes(new byte[(512 - content.length % 512) % 512]);
+        });
+        out.writeBytes(new byte[1024]);
+        return out.toByteArray();
+    }
+}
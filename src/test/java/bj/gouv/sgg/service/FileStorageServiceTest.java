@@ -0,0 +1,111 @@
+package bj.gouv.sgg.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Stockage adressé par contenu : écriture de l'OCR et nettoyage des blobs (pas de contexte Spring)
+ */
+class FileStorageServiceTest {
+
+    private static final String REFERENCED = "a".repeat(64);
+    private static final String REPLACED = "b".repeat(64);
+    private static final String LINKED = "c".repeat(64);
+    private static final Duration MIN_AGE = Duration.ofHours(24);
+
+    @TempDir
+    Path tempDir;
+
+    private FileStorageService storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = new FileStorageService();
+        ReflectionTestUtils.setField(storage, "baseDataDir", tempDir.toString());
+    }
+
+    @Test
+    void deletesOnlyOldUnreferencedBlobs() throws IOException {
+        Path referencedPdf = oldBlob(REFERENCED, "pdf");
+        Path replacedPdf = oldBlob(REPLACED, "pdf");
+        Path replacedOcr = oldBlob(REPLACED, "txt");
+        Path recent = writeBlob("d".repeat(64), "pdf");
+
+        int deleted = storage.deleteUnreferencedBlobs(Set.of(REFERENCED), MIN_AGE);
+
+        assertThat(deleted).isEqualTo(2);
+        assertThat(referencedPdf).exists();
+        assertThat(replacedPdf).doesNotExist();
+        assertThat(replacedOcr).doesNotExist();
+        assertThat(recent).exists(); // Publication en cours : fetch_results pas encore à jour
+    }
+
+    @Test
+    void keepsBlobStillLinkedFromADocument() throws IOException {
+        Path blob = writeBlob(LINKED, "pdf");
+        Path pdf = storage.pdfPath("loi", "loi-2024-5");
+        Files.createDirectories(pdf.getParent());
+        try {
+            Files.createLink(pdf, blob);
+        } catch (UnsupportedOperationException e) {
+            return; // Sans liens physiques, seule la référence en base protège le blob
+        }
+        age(blob);
+
+        assertThat(storage.deleteUnreferencedBlobs(Set.of(), MIN_AGE)).isZero();
+        assertThat(blob).exists();
+    }
+
+    @Test
+    void savingOcrNeverWritesThroughASharedBlob() throws IOException {
+        storage.saveOcr("loi", "loi-2024-5", "texte v1", REFERENCED);
+        assertThat(storage.reuseOcr("loi", "loi-2024-05", REFERENCED)).isTrue();
+
+        // Retraitement de loi-2024-05 (contenu changé, hash pas encore connu)
+        storage.saveOcr("loi", "loi-2024-05", "texte v2");
+
+        assertThat(storage.readOcr("loi", "loi-2024-05")).isEqualTo("texte v2");
+        assertThat(storage.readOcr("loi", "loi-2024-5")).isEqualTo("texte v1");
+        assertThat(storage.blobPath(REFERENCED, "txt")).hasContent("texte v1");
+
+        // Nouveau contenu : nouveau blob, l'ancien reste celui du document jumeau
+        storage.saveOcr("loi", "loi-2024-05", "texte v3", REPLACED);
+        assertThat(storage.readOcr("loi", "loi-2024-05")).isEqualTo("texte v3");
+        assertThat(storage.readOcr("loi", "loi-2024-5")).isEqualTo("texte v1");
+    }
+
+    @Test
+    void ignoresMissingBlobDirectory() throws IOException {
+        assertThat(storage.deleteUnreferencedBlobs(Set.of(), MIN_AGE)).isZero();
+    }
+
+    private Path oldBlob(String sha256, String extension) throws IOException {
+        Path blob = writeBlob(sha256, extension);
+        age(blob);
+        return blob;
+    }
+
+    private Path writeBlob(String sha256, String extension) throws IOException {
+        Path blob = storage.blobPath(sha256, extension);
+        Files.createDirectories(blob.getParent());
+        Files.writeString(blob, sha256, StandardCharsets.UTF_8);
+        return blob;
+    }
+
+    private static void age(Path blob) throws IOException {
+        Files.setLastModifiedTime(blob, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+    }
+}
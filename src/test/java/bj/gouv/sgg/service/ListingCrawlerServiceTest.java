@@ -0,0 +1,122 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.exception.UpstreamUnavailableException;
+import bj.gouv.sgg.model.LawDocument;
+import bj.gouv.sgg.util.RateLimitHandler;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Crawler de pages de liste contre un site local minimal (pas de contexte Spring)
+ */
+class ListingCrawlerServiceTest {
+    
+    private static final String PAGE_1 = """
+        <html><body>
+        <!-- <a href="/doc/loi-1999-1">commenté</a> -->
+        <a class="doc" href="/doc/loi-2024-12/">Loi 2024-12</a>
+        <A HREF='https://sgg.gouv.bj/doc/decret-2023-007'>Décret 2023-007</A>
+        <a href=/doc/loi-2024-12?ref=list>Doublon</a>
+        <a href="/doc/?page=2&amp;sort=date">Suivant</a>
+        <a href="/doc/loi-2024-abc">Invalide</a>
+        </body></html>
+        """;
+    
+    private final AtomicInteger flakyCalls = new AtomicInteger();
+    private final AtomicInteger throttledCalls = new AtomicInteger();
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+    private ListingCrawlerService crawler;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/doc/", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            if ("page=3".equals(query)) {
+                // Toujours limité : l'exécution doit s'arrêter, pas conclure à la dernière page
+                throttledCalls.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", "0");
+                exchange.sendResponseHeaders(503, -1);
+            } else if ("page=4".equals(query) && flakyCalls.getAndIncrement() == 0) {
+                exchange.getResponseHeaders().add("Retry-After", "0");
+                exchange.sendResponseHeaders(429, -1);
+            } else if ("page=1".equals(query) || "page=4".equals(query)) {
+                byte[] body = PAGE_1.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+            }
+            exchange.close();
+        });
+        server.start();
+        
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        LawProperties properties = new LawProperties();
+        properties.setBaseUrl(base + "/doc");
+        properties.getListing().setUrlTemplate(base + "/doc/?page={page}");
+        properties.getHttp().setMaxRetries(2);
+        
+        httpClient = HttpClients.createDefault();
+        crawler = new ListingCrawlerService(properties, httpClient, new RateLimitHandler(properties),
+                                            new UpstreamCircuitBreaker(properties));
+    }
+    
+    @AfterEach
+    void tearDown() throws Exception {
+        httpClient.close();
+        server.stop(0);
+    }
+    
+    @Test
+    void fetchPageExtractsDocumentLinks() throws Exception {
+        List<LawDocument> documents = crawler.fetchPage(1);
+        
+        assertThat(documents).extracting(LawDocument::getDocumentId)
+            .containsExactly("loi-2024-12", "decret-2023-7", "loi-2024-12");
+        
+        LawDocument decret = documents.get(1);
+        assertThat(decret.isExists()).isTrue();
+        assertThat(decret.getStatus()).isEqualTo(LawDocument.ProcessingStatus.FETCHED);
+        assertThat(decret.getUrl()).endsWith("/doc/decret-2023-007/download");
+    }
+    
+    @Test
+    void fetchPageReturnsNullPastLastPage() throws Exception {
+        assertThat(crawler.fetchPage(2)).isNull();
+    }
+    
+    @Test
+    void fetchPageRetriesThrottledPage() throws Exception {
+        List<LawDocument> documents = crawler.fetchPage(4);
+        
+        assertThat(flakyCalls.get()).isEqualTo(2);
+        assertThat(documents).hasSize(3);
+    }
+    
+    @Test
+    void fetchPageAbortsWhenPageKeepsFailing() {
+        assertThatThrownBy(() -> crawler.fetchPage(3))
+            .isInstanceOf(UpstreamUnavailableException.class);
+        assertThat(throttledCalls.get()).isEqualTo(2);
+    }
+}
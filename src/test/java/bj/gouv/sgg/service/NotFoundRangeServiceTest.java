@@ -0,0 +1,40 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.model.FetchNotFoundRange;
+import bj.gouv.sgg.model.LawDocument;
+import bj.gouv.sgg.repository.FetchNotFoundRangeRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Plages NOT_FOUND en mémoire (repository simulé, pas de contexte Spring)
+ */
+class NotFoundRangeServiceTest {
+
+    @Test
+    void unflushedDocumentsAreInNotFoundRange() {
+        FetchNotFoundRangeRepository repository = mock(FetchNotFoundRangeRepository.class);
+        when(repository.findByDocumentTypeAndYearOrderByNumberMinAsc("loi", 2019)).thenReturn(List.of(
+            FetchNotFoundRange.builder().documentType("loi").year(2019).numberMin(40).numberMax(45).documentCount(6).build()));
+        NotFoundRangeService service = new NotFoundRangeService(repository);
+
+        service.addNotFoundDocument(LawDocument.builder().type("loi").year(2019).number(46).build());
+        service.addNotFoundDocument(LawDocument.builder().type("loi").year(2019).number(60).build());
+
+        assertThat(service.isInNotFoundRange("loi", 2019, 40)).isTrue();
+        assertThat(service.isInNotFoundRange("loi", 2019, 46)).isTrue(); // Pas encore écrit en BD
+        assertThat(service.isInNotFoundRange("loi", 2019, 60)).isTrue();
+        assertThat(service.isInNotFoundRange("loi", 2019, 47)).isFalse();
+        assertThat(service.isInNotFoundRange("loi", 2019, 39)).isFalse();
+        verify(repository, never()).isInNotFoundRange(anyString(), anyInt(), anyInt());
+    }
+}
@@ -0,0 +1,198 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.model.LawDocument;
+import bj.gouv.sgg.service.PdfDownloadService.StreamedPdf;
+import bj.gouv.sgg.util.RateLimitHandler;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reprise des téléchargements contre un serveur local minimal (pas de contexte Spring)
+ */
+class ResumableDownloadServiceTest {
+
+    private static final byte[] PDF = pdf("version 1");
+    private static final byte[] PDF_V2 = pdf("version 2 (republiée)");
+    private static final String ETAG = "\"v1\"";
+    private static final String ETAG_V2 = "\"v2\"";
+    private static final int OFFSET = 20;
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+    private FileStorageService storage;
+    private UpstreamCircuitBreaker circuitBreaker;
+    private ResumableDownloadService downloadService;
+    private LawDocument document;
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+
+    // Comportement du serveur, choisi par chaque test
+    private volatile boolean rangesSupported = true;
+    private volatile byte[] served = PDF;
+    private volatile String servedEtag = ETAG;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/loi-2024-5/download", this::serve);
+        server.start();
+
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        LawProperties properties = new LawProperties();
+        properties.setBaseUrl(base);
+
+        storage = new FileStorageService();
+        ReflectionTestUtils.setField(storage, "baseDataDir", tempDir.toString());
+
+        httpClient = HttpClients.createDefault();
+        circuitBreaker = new UpstreamCircuitBreaker(properties);
+        downloadService = new ResumableDownloadService(httpClient, new RateLimitHandler(properties),
+            circuitBreaker, storage, properties);
+        document = LawDocument.builder()
+            .type("loi")
+            .year(2024)
+            .number(5)
+            .url(base + "/loi-2024-5/download")
+            .build();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    void resumesFromPartialFile() throws Exception {
+        writePartial(Arrays.copyOf(PDF, OFFSET), String.valueOf(PDF.length));
+
+        StreamedPdf pdf = downloadService.download(document, circuitBreaker.tryAcquire());
+
+        assertThat(ranges).containsExactly("bytes=" + OFFSET + "-");
+        assertThat(Files.readAllBytes(pdf.getPartialFile())).isEqualTo(PDF);
+        assertThat(pdf.getSha256()).isEqualTo(sha256(PDF));
+        assertThat(pdf.getEtag()).isEqualTo(ETAG);
+        assertThat(storage.partialMetaPath("loi", document.getDocumentId())).doesNotExist();
+    }
+
+    @Test
+    void restartsWhenServerAnswers200ToRange() throws Exception {
+        rangesSupported = false;
+        writePartial("corrupted prefix....".getBytes(StandardCharsets.US_ASCII), String.valueOf(PDF.length));
+
+        StreamedPdf pdf = downloadService.download(document, circuitBreaker.tryAcquire());
+
+        assertThat(ranges).hasSize(1);
+        assertThat(Files.readAllBytes(pdf.getPartialFile())).isEqualTo(PDF);
+        assertThat(pdf.getSha256()).isEqualTo(sha256(PDF));
+    }
+
+    @Test
+    void restartsWhenEtagChanged() throws Exception {
+        writePartial(Arrays.copyOf(PDF, OFFSET), String.valueOf(PDF.length));
+        served = PDF_V2;
+        servedEtag = ETAG_V2;
+
+        StreamedPdf pdf = downloadService.download(document, circuitBreaker.tryAcquire());
+
+        assertThat(Files.readAllBytes(pdf.getPartialFile())).isEqualTo(PDF_V2);
+        assertThat(pdf.getSize()).isEqualTo(PDF_V2.length);
+        assertThat(pdf.getSha256()).isEqualTo(sha256(PDF_V2));
+        assertThat(pdf.getEtag()).isEqualTo(ETAG_V2);
+    }
+
+    @Test
+    void resumesWhenStoredLengthIsInvalid() throws Exception {
+        writePartial(Arrays.copyOf(PDF, OFFSET), "not-a-number");
+
+        StreamedPdf pdf = downloadService.download(document, circuitBreaker.tryAcquire());
+
+        assertThat(ranges).containsExactly("bytes=" + OFFSET + "-");
+        assertThat(Files.readAllBytes(pdf.getPartialFile())).isEqualTo(PDF);
+    }
+
+    @Test
+    void parseLengthTreatsInvalidValuesAsUnknown() {
+        assertThat(ResumableDownloadService.parseLength(" 1024 ")).isEqualTo(1024);
+        assertThat(ResumableDownloadService.parseLength("12, 12")).isEqualTo(-1);
+        assertThat(ResumableDownloadService.parseLength("-5")).isEqualTo(-1);
+        assertThat(ResumableDownloadService.parseLength("99999999999999999999")).isEqualTo(-1);
+        assertThat(ResumableDownloadService.parseLength(null)).isEqualTo(-1);
+    }
+
+    /**
+     * GET avec support optionnel de Range / If-Range (ETag fort)
+     */
+    private void serve(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (range != null) {
+            ranges.add(range);
+        }
+        byte[] body = served;
+        exchange.getResponseHeaders().add("ETag", servedEtag);
+        exchange.getResponseHeaders().add("Accept-Ranges", rangesSupported ? "bytes" : "none");
+
+        if (rangesSupported && range != null && servedEtag.equals(ifRange)) {
+            int start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            byte[] rest = Arrays.copyOfRange(body, start, body.length);
+            exchange.getResponseHeaders().add("Content-Range",
+                "bytes " + start + "-" + (body.length - 1) + "/" + body.length);
+            exchange.sendResponseHeaders(206, rest.length);
+            body = rest;
+        } else {
+            exchange.sendResponseHeaders(200, body.length);
+        }
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        exchange.close();
+    }
+
+    /**
+     * Fichier partiel et son .meta, comme laissés par un téléchargement interrompu
+     */
+    private void writePartial(byte[] content, String length) throws IOException {
+        String documentId = document.getDocumentId();
+        Files.write(storage.partialPdfPath("loi", documentId), content);
+        Files.writeString(storage.partialMetaPath("loi", documentId), String.join("\n",
+            "url=" + document.getUrl().replace(":", "\\:"),
+            "etag=" + ETAG,
+            "length=" + length,
+            "segments=0",
+            "done="));
+    }
+
+    private static byte[] pdf(String text) {
+        return ("%PDF-1.4\n% " + text + "\n1 0 obj\n<<>>\nendobj\n%%EOF\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+}
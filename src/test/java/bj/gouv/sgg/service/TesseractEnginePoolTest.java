@@ -0,0 +1,109 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.config.LawProperties;
+import org.bytedeco.tesseract.TessBaseAPI;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Sous-pools par modèle, réutilisation et arrêt du pool (moteurs alloués sans Init : aucun modèle chargé)
+ */
+class TesseractEnginePoolTest {
+    
+    private RecordingPool pool;
+    
+    @BeforeEach
+    void setUp() {
+        LawProperties properties = new LawProperties();
+        properties.getOcr().setLanguage("fra");
+        properties.getOcr().setThreads(2);
+        pool = new RecordingPool(properties);
+    }
+    
+    @Test
+    void eachLanguageHasItsOwnBoundedSubPool() throws Exception {
+        TessBaseAPI first = pool.acquire("fra");
+        TessBaseAPI second = pool.acquire("fra");
+        TessBaseAPI best = pool.acquire("fra_best"); // Sous-pool distinct : pas d'attente
+        
+        CompletableFuture<TessBaseAPI> waiting = CompletableFuture.supplyAsync(() -> acquire("fra"));
+        assertThatThrownBy(() -> waiting.get(200, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+        
+        pool.release("fra", first);
+        assertThat(waiting.get(5, TimeUnit.SECONDS)).isSameAs(first);
+        assertThat(pool.created).containsExactly("fra", "fra", "fra_best");
+        assertThat(List.of(first, second, best)).doesNotHaveDuplicates();
+    }
+    
+    @Test
+    void releasedEnginesAreClearedAndReused() throws Exception {
+        TessBaseAPI engine = pool.acquire();
+        pool.release(engine);
+        
+        assertThat(pool.acquire()).isSameAs(engine);
+        assertThat(pool.cleared).containsExactly(engine);
+        assertThat(pool.created).containsExactly("fra");
+    }
+    
+    @Test
+    void shutdownEndsIdleEnginesAndBusyOnesOnRelease() throws Exception {
+        TessBaseAPI idle = pool.acquire();
+        TessBaseAPI busy = pool.acquire();
+        pool.release(idle);
+        
+        pool.shutdown();
+        assertThat(pool.ended).containsExactly(idle);
+        
+        pool.release(busy); // OCR terminé pendant l'arrêt
+        assertThat(pool.ended).containsExactly(idle, busy);
+        assertThatThrownBy(() -> pool.acquire()).isInstanceOf(IOException.class);
+    }
+    
+    private TessBaseAPI acquire(String language) {
+        try {
+            return pool.acquire(language);
+        } catch (IOException | InterruptedException e) {
+            throw new CompletionException(e);
+        }
+    }
+    
+    static class RecordingPool extends TesseractEnginePool {
+        
+        final List<String> created = Collections.synchronizedList(new ArrayList<>());
+        final List<TessBaseAPI> cleared = Collections.synchronizedList(new ArrayList<>());
+        final List<TessBaseAPI> ended = Collections.synchronizedList(new ArrayList<>());
+        
+        RecordingPool(LawProperties properties) {
+            super(properties);
+        }
+        
+        @Override
+        TessBaseAPI newEngine(String language) {
+            created.add(language);
+            return new TessBaseAPI();
+        }
+        
+        @Override
+        void clearEngine(TessBaseAPI api) {
+            cleared.add(api);
+        }
+        
+        @Override
+        void endEngine(TessBaseAPI api) {
+            ended.add(api);
+            super.endEngine(api);
+        }
+    }
+}
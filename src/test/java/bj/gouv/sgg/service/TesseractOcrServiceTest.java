@@ -0,0 +1,100 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.service.TesseractOcrService.SecondPass;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.util.Matrix;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Décision de la cascade OCR et détection des scans pleine page (aucun moteur Tesseract nécessaire)
+ */
+class TesseractOcrServiceTest {
+    
+    @Test
+    void cascadeIsInactiveByDefault() {
+        LawProperties.Ocr.Cascade cascade = new LawProperties.Ocr.Cascade();
+        
+        assertThat(cascade.isActive()).isFalse();
+        assertThat(TesseractOcrService.secondPass(cascade, false, 300, 10, 0.9)).isEqualTo(SecondPass.NONE);
+    }
+    
+    @Test
+    void bestModelRerunsUnreliablePagesOnly() {
+        LawProperties.Ocr.Cascade cascade = new LawProperties.Ocr.Cascade();
+        cascade.setBestLanguage("fra_best");
+        
+        assertThat(TesseractOcrService.secondPass(cascade, true, 300, 85, 0.10)).isEqualTo(SecondPass.NONE);
+        assertThat(TesseractOcrService.secondPass(cascade, true, 300, 55, 0.10)).isEqualTo(SecondPass.BEST_MODEL);
+        assertThat(TesseractOcrService.secondPass(cascade, false, 300, 85, 0.60)).isEqualTo(SecondPass.BEST_MODEL);
+        // Aucun texte reconnu (confiance 0) : page reprise
+        assertThat(TesseractOcrService.secondPass(cascade, true, 300, 0, 0.0)).isEqualTo(SecondPass.BEST_MODEL);
+    }
+    
+    @Test
+    void rerenderNeverAppliesToNativeImages() {
+        LawProperties.Ocr.Cascade cascade = new LawProperties.Ocr.Cascade();
+        cascade.setRerenderDpi(400);
+        
+        assertThat(TesseractOcrService.secondPass(cascade, false, 300, 40, 0.10)).isEqualTo(SecondPass.RERENDER);
+        assertThat(TesseractOcrService.secondPass(cascade, true, 300, 40, 0.10)).isEqualTo(SecondPass.NONE);
+        assertThat(TesseractOcrService.secondPass(cascade, false, 400, 40, 0.10)).isEqualTo(SecondPass.NONE);
+    }
+    
+    @Test
+    void fullPageScanCoversCropBox() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = pageWithImage(document, new Matrix(595, 0, 0, 842, 0, 0));
+            
+            Rectangle2D drawn = TesseractOcrService.drawnImageBounds(page);
+            
+            assertThat(drawn).isNotNull();
+            assertThat(TesseractOcrService.coversPage(drawn, page.getCropBox())).isTrue();
+        }
+    }
+    
+    @Test
+    void imageWithPageProportionsButSmallerIsNotAScan() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            // Mêmes proportions que la page, mais dessinée au quart de sa surface (vignette, photo)
+            PDPage page = pageWithImage(document, new Matrix(297.5f, 0, 0, 421, 100, 200));
+            
+            Rectangle2D drawn = TesseractOcrService.drawnImageBounds(page);
+            
+            assertThat(drawn).isNotNull();
+            assertThat(TesseractOcrService.coversPage(drawn, page.getCropBox())).isFalse();
+        }
+    }
+    
+    @Test
+    void rotatedImageIsNotUsedAsIs() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            // Rotation de 90° : l'image décodée ne serait pas dans le sens de lecture
+            PDPage page = pageWithImage(document, new Matrix(0, 842, -595, 0, 595, 0));
+            
+            assertThat(TesseractOcrService.drawnImageBounds(page)).isNull();
+        }
+    }
+    
+    private static PDPage pageWithImage(PDDocument document, Matrix placement) throws IOException {
+        PDPage page = new PDPage(PDRectangle.A4);
+        document.addPage(page);
+        PDImageXObject image = LosslessFactory.createFromImage(document,
+            new BufferedImage(100, 141, BufferedImage.TYPE_BYTE_BINARY));
+        try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+            content.drawImage(image, placement);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,111 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.config.LawProperties;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Classification des PDFs de la voie rapide sur des PDFs générés (ni Tesseract, ni contexte Spring)
+ */
+class TextLayerServiceTest {
+
+    private static final String LINE = "Article 1 La presente loi fixe les regles applicables en la matiere";
+    private static final String SIGNATURE = "Fait a Cotonou, le 5 mars 2024";
+
+    @TempDir
+    Path tempDir;
+
+    private FileStorageService storage;
+    private TextLayerService textLayerService;
+
+    @BeforeEach
+    void setUp() {
+        LawProperties properties = new LawProperties();
+        properties.getOcr().setQualityThreshold(0.7);
+        storage = new FileStorageService();
+        ReflectionTestUtils.setField(storage, "baseDataDir", tempDir.toString());
+        // Ni le pool de moteurs ni le dictionnaire ne servent à la classification
+        textLayerService = new TextLayerService(properties, storage, new TesseractOcrService(properties, null, null));
+    }
+
+    @Test
+    void shortLastPageDoesNotRejectNativePdf() throws IOException {
+        writePdf("loi-2024-5", false);
+
+        assertThat(textLayerService.extractIfTextNative("loi", "loi-2024-5", null)).isTrue();
+        assertThat(storage.readOcr("loi", "loi-2024-5")).contains(SIGNATURE);
+    }
+
+    @Test
+    void scannedLastPageKeepsPdfInOcrQueue() throws IOException {
+        writePdf("loi-2024-6", true);
+
+        assertThat(textLayerService.extractIfTextNative("loi", "loi-2024-6", null)).isFalse();
+        assertThat(storage.ocrExists("loi", "loi-2024-6")).isFalse();
+    }
+
+    @Test
+    void samplePagesIncludeFirstAndLast() {
+        assertThat(TextLayerService.samplePages(10, 3)).containsExactly(1, 6, 10);
+        assertThat(TextLayerService.samplePages(2, 3)).containsExactly(1, 2);
+        assertThat(TextLayerService.samplePages(1, 3)).containsExactly(1);
+    }
+
+    /**
+     * Trois pages de texte puis une dernière page courte : signature textuelle ou page scannée
+     */
+    private void writePdf(String documentId, boolean scannedLastPage) throws IOException {
+        Path path = storage.pdfPath("loi", documentId);
+        Files.createDirectories(path.getParent());
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < 3; i++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                writeLines(document, page, LINE, 6);
+            }
+            PDPage last = new PDPage(PDRectangle.A4);
+            document.addPage(last);
+            if (scannedLastPage) {
+                PDImageXObject image = LosslessFactory.createFromImage(document,
+                    new BufferedImage(100, 141, BufferedImage.TYPE_BYTE_BINARY));
+                try (PDPageContentStream content = new PDPageContentStream(document, last)) {
+                    content.drawImage(image, 0, 0, PDRectangle.A4.getWidth(), PDRectangle.A4.getHeight());
+                }
+            } else {
+                writeLines(document, last, SIGNATURE, 1);
+            }
+            document.save(path.toFile());
+        }
+    }
+
+    private static void writeLines(PDDocument document, PDPage page, String line, int count) throws IOException {
+        try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+            content.beginText();
+            content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 11);
+            content.setLeading(14);
+            content.newLineAtOffset(50, 780);
+            for (int i = 0; i < count; i++) {
+                content.showText(line);
+                content.newLine();
+            }
+            content.endText();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package bj.gouv.sgg.service;
+
+import bj.gouv.sgg.config.LawProperties;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker.Permit;
+import bj.gouv.sgg.util.UpstreamCircuitBreaker.State;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Machine d'états CLOSED / OPEN / HALF_OPEN du circuit vers le site (pas de contexte Spring)
+ */
+class UpstreamCircuitBreakerTest {
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        UpstreamCircuitBreaker breaker = breaker(300, 2);
+
+        fail(breaker);
+        succeed(breaker);
+        fail(breaker);
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED); // minimumCalls pas encore atteint
+
+        succeed(breaker);
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+        assertThat(breaker.isAvailable()).isFalse();
+    }
+
+    @Test
+    void throttlingIsNotAFailure() {
+        UpstreamCircuitBreaker breaker = breaker(300, 2);
+
+        for (int i = 0; i < 4; i++) {
+            Permit permit = breaker.tryAcquire();
+            breaker.onResponse(permit, 503, Duration.ofSeconds(5));
+            breaker.onResponse(permit, 429, null);
+            breaker.release(permit);
+        }
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void halfOpenClosesAfterEnoughTrialCalls() {
+        UpstreamCircuitBreaker breaker = tripped(2);
+
+        Permit first = breaker.tryAcquire();
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        Permit second = breaker.tryAcquire();
+        assertThat(first.isTrial()).isTrue();
+        assertThat(second.isTrial()).isTrue();
+        assertThat(breaker.tryAcquire()).isNull(); // Tous les appels de test sont en cours
+
+        breaker.onResponse(first, 200, null);
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        breaker.onResponse(second, 200, null);
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void trialCallIsCountedOncePerPermit() {
+        UpstreamCircuitBreaker breaker = tripped(2);
+
+        Permit permit = breaker.tryAcquire();
+        // Retries 429 puis succès : plusieurs réponses pour un seul appel de test
+        breaker.onResponse(permit, 429, null);
+        breaker.onResponse(permit, 429, null);
+        breaker.onResponse(permit, 200, null);
+        breaker.release(permit);
+
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isNotNull();
+    }
+
+    @Test
+    void halfOpenReopensOnTrialFailure() {
+        UpstreamCircuitBreaker breaker = tripped(2);
+
+        Permit permit = breaker.tryAcquire();
+        breaker.onResponse(permit, 500, null);
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    }
+
+    @Test
+    void lateResponsesFromBeforeTheOpeningAreIgnored() {
+        UpstreamCircuitBreaker breaker = breaker(0, 1);
+        Permit late = breaker.tryAcquire(); // Émis circuit fermé, réponse après l'ouverture
+        trip(breaker);
+
+        Permit trial = breaker.tryAcquire();
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        breaker.onFailure(late);
+        breaker.onResponse(late, 200, null);
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+
+        breaker.onResponse(trial, 200, null);
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void releasedTrialFreesItsSlot() {
+        UpstreamCircuitBreaker breaker = tripped(1);
+
+        Permit permit = breaker.tryAcquire();
+        assertThat(breaker.tryAcquire()).isNull();
+
+        breaker.release(permit); // Appel abandonné sans réponse
+        Permit next = breaker.tryAcquire();
+        assertThat(next).isNotNull();
+
+        breaker.onResponse(permit, 500, null); // Permis déjà rendu : ignoré
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        breaker.onResponse(next, 200, null);
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+    }
+
+    /**
+     * Circuit ouvert dont la période d'ouverture est déjà écoulée
+     */
+    private static UpstreamCircuitBreaker tripped(int halfOpenCalls) {
+        UpstreamCircuitBreaker breaker = breaker(0, halfOpenCalls);
+        trip(breaker);
+        return breaker;
+    }
+
+    private static UpstreamCircuitBreaker breaker(int openSeconds, int halfOpenCalls) {
+        LawProperties properties = new LawProperties();
+        LawProperties.CircuitBreaker config = properties.getCircuitBreaker();
+        config.setWindowSize(4);
+        config.setMinimumCalls(4);
+        config.setFailureRateThreshold(0.5);
+        config.setOpenSeconds(openSeconds);
+        config.setHalfOpenCalls(halfOpenCalls);
+        return new UpstreamCircuitBreaker(properties);
+    }
+
+    private static void trip(UpstreamCircuitBreaker breaker) {
+        for (int i = 0; i < 4; i++) {
+            fail(breaker);
+        }
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    }
+
+    private static void fail(UpstreamCircuitBreaker breaker) {
+        Permit permit = breaker.tryAcquire();
+        breaker.onResponse(permit, -1, null);
+        breaker.release(permit);
+    }
+
+    private static void succeed(UpstreamCircuitBreaker breaker) {
+        Permit permit = breaker.tryAcquire();
+        breaker.onResponse(permit, 200, null);
+        breaker.release(permit);
+    }
+}
@@ -0,0 +1,173 @@
+package bj.gouv.sgg.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Lecture tar sur des archives construites en mémoire (ustar, noms longs GNU et pax, entrées ignorées)
+ */
+class TarArchiveReaderTest {
+    
+    @Test
+    void readsRegularEntriesInOrder() throws Exception {
+        byte[] tar = new TarBuilder()
+            .file("loi-2024-1.pdf", "%PDF-1.4 un")
+            .file("lois/decret-2023-7.pdf", "contenu de 600 octets".repeat(30))
+            .build();
+        TarArchiveReader reader = new TarArchiveReader(new ByteArrayInputStream(tar));
+        
+        assertThat(reader.nextEntry()).isEqualTo("loi-2024-1.pdf");
+        assertThat(read(reader.entryStream())).isEqualTo("%PDF-1.4 un");
+        assertThat(reader.nextEntry()).isEqualTo("lois/decret-2023-7.pdf");
+        assertThat(read(reader.entryStream())).isEqualTo("contenu de 600 octets".repeat(30));
+        assertThat(reader.nextEntry()).isNull();
+    }
+    
+    @Test
+    void skipsUnreadContentAndNonRegularEntries() throws Exception {
+        byte[] tar = new TarBuilder()
+            .entry("archive/", '5', new byte[0])
+            .file("ignore.pdf", "x".repeat(1500))
+            .entry("lien.pdf", '2', new byte[0])
+            .file("loi-2024-2.pdf", "deuxième")
+            .build();
+        TarArchiveReader reader = new TarArchiveReader(new ByteArrayInputStream(tar));
+        
+        assertThat(reader.nextEntry()).isEqualTo("ignore.pdf");
+        assertThat(reader.entryStream().read()).isEqualTo('x'); // Lecture partielle puis entrée suivante
+        assertThat(reader.nextEntry()).isEqualTo("loi-2024-2.pdf");
+        assertThat(read(reader.entryStream())).isEqualTo("deuxième");
+        assertThat(reader.nextEntry()).isNull();
+    }
+    
+    @Test
+    void resolvesGnuLongNames() throws Exception {
+        String longName = "documents/" + "sous-repertoire/".repeat(10) + "loi-2024-3.pdf";
+        byte[] nameBytes = (longName + "\0").getBytes(StandardCharsets.UTF_8);
+        byte[] tar = new TarBuilder()
+            .entry("././@LongLink", 'L', nameBytes)
+            .file(longName.substring(0, 99), "long")
+            .file("loi-2024-4.pdf", "court")
+            .build();
+        TarArchiveReader reader = new TarArchiveReader(new ByteArrayInputStream(tar));
+        
+        assertThat(reader.nextEntry()).isEqualTo(longName);
+        assertThat(read(reader.entryStream())).isEqualTo("long");
+        assertThat(reader.nextEntry()).isEqualTo("loi-2024-4.pdf");
+    }
+    
+    @Test
+    void resolvesPaxPathRecords() throws Exception {
+        String longName = "exports/" + "répertoire-très-long/".repeat(8) + "loi-2024-7.pdf";
+        byte[] pax = (paxRecord("mtime", "1700000000.5") + paxRecord("path", longName)).getBytes(StandardCharsets.UTF_8);
+        byte[] tar = new TarBuilder()
+            .entry("PaxHeaders/loi-2024-7.pdf", 'x', pax)
+            .file("exports/loi-2024-7.pdf", "pax") // Champ ustar tronqué, le vrai nom est dans le pax
+            .entry("PaxHeaders/loi-2024-8.pdf", 'x', paxRecord("mtime", "1700000000").getBytes(StandardCharsets.UTF_8))
+            .file("loi-2024-8.pdf", "sans path")
+            .build();
+        TarArchiveReader reader = new TarArchiveReader(new ByteArrayInputStream(tar));
+        
+        assertThat(reader.nextEntry()).isEqualTo(longName);
+        assertThat(read(reader.entryStream())).isEqualTo("pax");
+        assertThat(reader.nextEntry()).isEqualTo("loi-2024-8.pdf");
+        assertThat(reader.nextEntry()).isNull();
+    }
+    
+    @Test
+    void rejectsMalformedPaxHeader() {
+        assertThatThrownBy(() -> TarArchiveReader.paxPath("99 path=a\n".getBytes(StandardCharsets.UTF_8)))
+            .isInstanceOf(IOException.class);
+    }
+    
+    @Test
+    void usesUstarPrefix() throws Exception {
+        byte[] tar = new TarBuilder().file("loi-2024-5.pdf", "p").build();
+        byte[] prefix = "archives/2024".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(prefix, 0, tar, 345, prefix.length);
+        
+        assertThat(new TarArchiveReader(new ByteArrayInputStream(tar)).nextEntry()).isEqualTo("archives/2024/loi-2024-5.pdf");
+    }
+    
+    @Test
+    void failsOnTruncatedArchive() {
+        byte[] tar = new TarBuilder().file("loi-2024-6.pdf", "x".repeat(2000)).build();
+        
+        assertThatThrownBy(() -> {
+            TarArchiveReader reader = new TarArchiveReader(new ByteArrayInputStream(Arrays.copyOf(tar, 700)));
+            reader.nextEntry();
+            reader.nextEntry();
+        }).isInstanceOf(EOFException.class);
+        assertThatThrownBy(() -> new TarArchiveReader(new ByteArrayInputStream(Arrays.copyOf(tar, 300))).nextEntry())
+            .isInstanceOf(EOFException.class);
+    }
+    
+    /**
+     * Enregistrement pax "{longueur} {clé}={valeur}\n", la longueur (en octets) comptant ses propres chiffres
+     */
+    private static String paxRecord(String key, String value) {
+        int body = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+        int length = body + String.valueOf(body).length();
+        if (String.valueOf(length).length() != String.valueOf(body).length()) {
+            length++;
+        }
+        return length + " " + key + "=" + value + "\n";
+    }
+    
+    private static String read(InputStream in) throws Exception {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Archive ustar minimale : en-têtes de 512 octets, contenu complété au bloc, deux blocs nuls de fin
+     */
+    static class TarBuilder {
+        
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        
+        TarBuilder file(String name, String content) {
+            return entry(name, '0', content.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        TarBuilder entry(String name, char type, byte[] content) {
+            byte[] header = new byte[512];
+            put(header, 0, name);
+            put(header, 100, "0000644");
+            put(header, 124, String.format("%011o", content.length));
+            put(header, 136, "00000000000");
+            header[156] = (byte) type;
+            put(header, 257, "ustar");
+            put(header, 263, "00");
+            Arrays.fill(header, 148, 156, (byte) ' ');
+            int checksum = 0;
+            for (byte b : header) {
+                checksum += b & 0xFF;
+            }
+            put(header, 148, String.format("%06o", checksum));
+            out.writeBytes(header);
+            out.writeBytes(content);
+            out.writeBytes(new byte[(512 - content.length % 512) % 512]);
+            return this;
+        }
+        
+        byte[] build() {
+            out.writeBytes(new byte[1024]);
+            return out.toByteArray();
+        }
+        
+        private static void put(byte[] header, int offset, String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(bytes, 0, header, offset, bytes.length);
+        }
+    }
+}